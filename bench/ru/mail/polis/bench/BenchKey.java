@@ -0,0 +1,56 @@
+package ru.mail.polis.bench;
+
+import ru.mail.polis.CheckedOpenHashTableEntity;
+
+/**
+ * Ключ для бенчмарков: один и тот же тип подходит и деревьям (Comparable),
+ * и хеш-таблице с открытой адресацией (OpenHashTableEntity),
+ * поэтому все реализации сравниваются на одинаковых данных.
+ */
+public final class BenchKey extends CheckedOpenHashTableEntity implements Comparable<BenchKey> {
+
+    private final int value;
+
+    public BenchKey(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public int hashCode(int tableSize, int probId) throws IllegalArgumentException {
+        if (probId < 0 || probId >= tableSize) {
+            throw new IllegalArgumentException("probId = " + probId + ", tableSize = " + tableSize);
+        }
+        int h1 = mix(value);
+        int h2 = mix(h1) | 1; //Нечётный шаг взаимно прост с размером таблицы (степенью двойки)
+        return (h1 + probId * h2) & (tableSize - 1);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public int compareTo(BenchKey o) {
+        return Integer.compare(value, o.value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof BenchKey && value == ((BenchKey) o).value;
+    }
+
+    @Override
+    public int hashCode() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.mail.polis.bench;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.ConcurrentChainHashTable;
+
+/**
+ * Пропускная способность общей таблицы под нагрузкой из нескольких потоков:
+ * ConcurrentChainHashTable против Collections.synchronizedSet(ChainHashTable) и ConcurrentHashMap.newKeySet().
+ * Число потоков задаётся ключом JMH -t, например {@code -t 1}, {@code -t 4}, {@code -t max}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentHashTableBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedState {
+
+        @Param({"ConcurrentChainHashTable", "SynchronizedChainHashTable", "ConcurrentHashMap"})
+        public String impl;
+
+        @Param({"100000", "1000000"})
+        public int size;
+
+        Set<Object> set;
+        Object[] keys;
+        Object[] queries; //Половина — элементы таблицы, половина — промахи
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(SetState.SEED);
+            keys = HashKeyType.STRING.generate(size, random);
+            Object[] misses = HashKeyType.STRING.misses(size, random);
+            queries = new Object[SetState.QUERY_COUNT];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = random.nextBoolean() ? keys[random.nextInt(size)] : misses[random.nextInt(size)];
+            }
+            switch (impl) {
+                case "ConcurrentChainHashTable":
+                    set = new ConcurrentChainHashTable<>();
+                    break;
+                case "SynchronizedChainHashTable":
+                    set = Collections.synchronizedSet(new ChainHashTable<>());
+                    break;
+                default:
+                    set = ConcurrentHashMap.newKeySet();
+            }
+            for (Object key : keys) {
+                set.add(key);
+            }
+        }
+    }
+
+    /**
+     * Свой курсор у каждого потока, чтобы потоки не делили счётчик запросов
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position = ThreadLocalRandom.current().nextInt();
+    }
+
+    @Benchmark
+    public boolean contains(SharedState state, Cursor cursor) {
+        return state.set.contains(state.queries[cursor.position++ & SetState.QUERY_MASK]);
+    }
+
+    /**
+     * Каждый 16-й запрос — запись: удаление элемента и его возвращение на место, размер таблицы не меняется
+     */
+    @Benchmark
+    public boolean mixed(SharedState state, Cursor cursor) {
+        int position = cursor.position++;
+        Object key = state.queries[position & SetState.QUERY_MASK];
+        if ((position & 15) != 0) {
+            return state.set.contains(key);
+        }
+        if (state.set.remove(key)) {
+            return state.set.add(key);
+        }
+        return false;
+    }
+}
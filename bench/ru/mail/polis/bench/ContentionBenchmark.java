@@ -0,0 +1,132 @@
+package ru.mail.polis.bench;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.ConcurrentSkipList;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.StampedSortedSet;
+
+/**
+ * Общее отсортированное множество под нагрузкой 99% contains / 1% запись на 1, 4, 16 и 64 потоках:
+ * StampedSortedSet (оптимистичное чтение) против Collections.synchronizedSortedSet,
+ * ConcurrentSkipList и ConcurrentSkipListSet.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedState {
+
+        @Param({"StampedAVLTree", "StampedRedBlackTree", "SynchronizedAVLTree", "SynchronizedRedBlackTree",
+                "ConcurrentSkipList", "ConcurrentSkipListSet"})
+        public String impl;
+
+        @Param({"100000", "1000000"})
+        public int size;
+
+        Set<BenchKey> set;
+        BenchKey[] queries; //Половина — элементы множества, половина — промахи
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(SetState.SEED);
+            int[] order = KeyDistribution.RANDOM.insertionOrder(size, random);
+            //В множестве чётные числа, промахи — нечётные между ними, их же добавляют и удаляют писатели
+            BenchKey[] keys = new BenchKey[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = new BenchKey(order[i] * 2);
+            }
+            set = SetState.fill(create(impl), keys);
+            queries = new BenchKey[SetState.QUERY_COUNT];
+            for (int i = 0; i < queries.length; i++) {
+                int value = order[random.nextInt(size)] * 2;
+                queries[i] = random.nextBoolean() ? new BenchKey(value) : new BenchKey(value + 1);
+            }
+        }
+
+        private static Set<BenchKey> create(String impl) {
+            switch (impl) {
+                case "StampedAVLTree":
+                    return new StampedSortedSet<>(new AVLTree<BenchKey>());
+                case "StampedRedBlackTree":
+                    return new StampedSortedSet<>(new RedBlackTree<BenchKey>());
+                case "SynchronizedAVLTree":
+                    return Collections.synchronizedSortedSet(new AVLTree<BenchKey>());
+                case "SynchronizedRedBlackTree":
+                    return Collections.synchronizedSortedSet(new RedBlackTree<BenchKey>());
+                case "ConcurrentSkipList":
+                    return new ConcurrentSkipList<>();
+                default:
+                    return new ConcurrentSkipListSet<>();
+            }
+        }
+    }
+
+    /**
+     * Свой курсор у каждого потока, чтобы потоки не делили счётчик запросов
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position = ThreadLocalRandom.current().nextInt();
+    }
+
+    /**
+     * Каждый сотый запрос — запись: промах добавляется и сразу удаляется, размер множества не меняется
+     */
+    private static boolean readMostly(SharedState state, Cursor cursor) {
+        int position = cursor.position++;
+        BenchKey key = state.queries[position & SetState.QUERY_MASK];
+        if (position % 100 != 0) {
+            return state.set.contains(key);
+        }
+        return state.set.add(key) && state.set.remove(key);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean threads01(SharedState state, Cursor cursor) {
+        return readMostly(state, cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean threads04(SharedState state, Cursor cursor) {
+        return readMostly(state, cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean threads16(SharedState state, Cursor cursor) {
+        return readMostly(state, cursor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean threads64(SharedState state, Cursor cursor) {
+        return readMostly(state, cursor);
+    }
+}
@@ -0,0 +1,65 @@
+package ru.mail.polis.bench;
+
+import java.util.Random;
+
+/**
+ * Печатает, как ключи раскладываются по ячейкам таблицы с цепочками при старом
+ * (Math.abs(hashCode) % length) и новом (перемешивание + маска) способе вычисления индекса.
+ * Длина таблицы — как у ChainHashTable после всех вставок: степень двойки, не меньше 2 * count.
+ * <p>
+ * Запуск: {@code java -cp ... ru.mail.polis.bench.HashDistribution [count]}
+ */
+public class HashDistribution {
+
+    interface IndexFunction {
+        int index(int hashCode, int length);
+    }
+
+    private static final IndexFunction MODULO = (h, length) -> Math.abs(h) % length;
+
+    /**
+     * Та же функция, что ru.mail.polis.Hashing.spread у ChainHashTable: сам класс пакетный и из bench недоступен
+     */
+    private static final IndexFunction SPREAD_MASK = (h, length) -> {
+        h ^= h >>> 16;
+        h *= 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (length - 1);
+    };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int length = Integer.highestOneBit(Math.max(2 * count - 1, 1)) << 1;
+        for (HashKeyType keyType : HashKeyType.values()) {
+            Object[] keys = keyType.generate(count, new Random(SetState.SEED));
+            int[] hashes = new int[count];
+            for (int i = 0; i < count; i++) {
+                hashes[i] = keys[i].hashCode();
+            }
+            report(keyType + " modulo     ", hashes, length, MODULO);
+            report(keyType + " spread&mask", hashes, length, SPREAD_MASK);
+        }
+    }
+
+    /**
+     * Ожидаемое для случайной функции: доля пустых ячеек ~ e^(-count/length),
+     * средняя длина успешного поиска ~ 1 + count / (2 * length)
+     */
+    private static void report(String name, int[] hashes, int length, IndexFunction function) {
+        int[] chains = new int[length];
+        for (int h : hashes) {
+            chains[function.index(h, length)]++;
+        }
+        long empty = 0;
+        long probes = 0;
+        int max = 0;
+        for (int chain : chains) {
+            if (chain == 0) {
+                empty++;
+            }
+            probes += (long) chain * (chain + 1) / 2;
+            max = Math.max(max, chain);
+        }
+        System.out.printf("%s: length=%d, empty=%.3f, avg probes (hit)=%.3f, max chain=%d%n",
+                name, length, (double) empty / length, (double) probes / hashes.length, max);
+    }
+}
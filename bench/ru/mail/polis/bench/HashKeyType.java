@@ -0,0 +1,78 @@
+package ru.mail.polis.bench;
+
+import java.util.Random;
+
+import ru.mail.polis.StudentGenerator;
+
+/**
+ * Ключи для хеш-таблиц: студенты из StudentGenerator (воспроизводимы по seed), строки из строчных латинских букв
+ * и числа с нулевыми младшими битами (идентификаторы с шагом 1024)
+ */
+public enum HashKeyType {
+
+    STUDENT {
+        @Override
+        Object[] generate(int count, Random random) {
+            return new StudentGenerator(random.nextLong()).generateArray(count);
+        }
+
+        /**
+         * id студентов generate — 0..count-1, у промахов id идут следом, чтобы не совпадать с ними
+         */
+        @Override
+        Object[] misses(int count, Random random) {
+            return new StudentGenerator(random.nextLong(), count).generateArray(count);
+        }
+    },
+
+    STRING {
+        @Override
+        Object[] generate(int count, Random random) {
+            Object[] keys = new Object[count];
+            char[] chars = new char[STRING_LENGTH];
+            for (int i = 0; i < count; i++) {
+                for (int j = 0; j < chars.length; j++) {
+                    chars[j] = (char) ('a' + random.nextInt(26));
+                }
+                keys[i] = new String(chars);
+            }
+            return keys;
+        }
+    },
+
+    STRIDED {
+        @Override
+        Object[] generate(int count, Random random) {
+            return strided(random.nextInt(STRIDE), count);
+        }
+
+        /**
+         * generate занимает не больше чем номера [0, STRIDE + count), промахи — сразу за ними
+         */
+        @Override
+        Object[] misses(int count, Random random) {
+            return strided(STRIDE + count, count);
+        }
+    };
+
+    static final int STRING_LENGTH = 6;
+    private static final int STRIDE = 1 << 10;
+
+    abstract Object[] generate(int count, Random random);
+
+    /**
+     * Ключи для запросов-промахов, которых нет среди generate(count, ...) того же типа.
+     * Случайные студенты и строки с вставленными практически не совпадают, поэтому по умолчанию это просто ещё одна выборка
+     */
+    Object[] misses(int count, Random random) {
+        return generate(count, random);
+    }
+
+    private static Object[] strided(int from, int count) {
+        Object[] keys = new Object[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (from + i) * STRIDE;
+        }
+        return keys;
+    }
+}
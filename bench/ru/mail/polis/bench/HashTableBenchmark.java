@@ -0,0 +1,96 @@
+package ru.mail.polis.bench;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.mail.polis.ChainHashTable;
+
+/**
+ * Пропускная способность ChainHashTable на ключах Student, строках из строчных букв и числах с шагом 1024
+ * против прежнего индекса Math.abs(hashCode) % length ({@link ModuloChainHashTable}) и HashSet.
+ * Распределение по ячейкам для тех же ключей печатает {@link HashDistribution}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class HashTableBenchmark {
+
+    @State(Scope.Thread)
+    public static class HashState {
+
+        @Param({"ChainHashTable", "ModuloChainHashTable", "HashSet"})
+        public String impl;
+
+        @Param({"STUDENT", "STRING", "STRIDED"})
+        public HashKeyType keyType;
+
+        @Param({"1000", "100000", "1000000"})
+        public int size;
+
+        Set<Object> set;
+        Object[] keys;
+        Object[] queries; //Половина — элементы таблицы, половина — промахи
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(SetState.SEED);
+            keys = keyType.generate(size, random);
+            Object[] misses = keyType.misses(size, random);
+            queries = new Object[SetState.QUERY_COUNT];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = random.nextBoolean() ? keys[random.nextInt(size)] : misses[random.nextInt(size)];
+            }
+            set = fill();
+        }
+
+        Set<Object> fill() {
+            Set<Object> result;
+            switch (impl) {
+                case "HashSet":
+                    result = new HashSet<>();
+                    break;
+                case "ModuloChainHashTable":
+                    result = new ModuloChainHashTable<>();
+                    break;
+                default:
+                    result = new ChainHashTable<>();
+            }
+            for (Object key : keys) {
+                result.add(key);
+            }
+            return result;
+        }
+    }
+
+    @Benchmark
+    public boolean contains(HashState state) {
+        return state.set.contains(state.queries[state.cursor++ & SetState.QUERY_MASK]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public Set<Object> fill(HashState state) {
+        return state.fill();
+    }
+}
@@ -0,0 +1,140 @@
+package ru.mail.polis.bench;
+
+import java.util.Random;
+
+/**
+ * Распределения ключей запросов.
+ * Ключи, лежащие в множестве, — чётные числа 0, 2, ..., 2 * (size - 1);
+ * запросы выбираются из диапазона [0, 2 * size), так что примерно половина из них — промахи.
+ */
+public enum KeyDistribution {
+
+    /**
+     * Ключи идут подряд по возрастанию (и по кругу)
+     */
+    SEQUENTIAL {
+        @Override
+        int[] queries(int size, int count, Random random) {
+            int[] result = new int[count];
+            int range = 2 * size;
+            for (int i = 0; i < count; i++) {
+                result[i] = i % range;
+            }
+            return result;
+        }
+    },
+
+    /**
+     * Равномерное распределение
+     */
+    RANDOM {
+        @Override
+        int[] queries(int size, int count, Random random) {
+            int[] result = new int[count];
+            int range = 2 * size;
+            for (int i = 0; i < count; i++) {
+                result[i] = random.nextInt(range);
+            }
+            return result;
+        }
+    },
+
+    /**
+     * Распределение Ципфа (theta = 0.99): небольшое число «горячих» ключей получает большую часть запросов.
+     * Горячие ключи разбросаны по всему диапазону, а не собраны в его начале.
+     */
+    ZIPFIAN {
+        @Override
+        int[] queries(int size, int count, Random random) {
+            ZipfianGenerator zipf = new ZipfianGenerator(2 * size, ZIPFIAN_THETA, random);
+            int[] permutation = shuffledRange(2 * size, random);
+            int[] result = new int[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = permutation[zipf.next()];
+            }
+            return result;
+        }
+    };
+
+    static final double ZIPFIAN_THETA = 0.99;
+
+    /**
+     * Генерирует последовательность ключей запросов
+     *
+     * @param size   число ключей в множестве
+     * @param count  длина последовательности запросов
+     * @param random источник случайности (для воспроизводимости — с фиксированным seed)
+     * @return ключи запросов из диапазона [0, 2 * size)
+     */
+    abstract int[] queries(int size, int count, Random random);
+
+    /**
+     * Порядок, в котором ключи вставляются при заполнении множества:
+     * для SEQUENTIAL — по возрастанию, для остальных — перемешанный.
+     */
+    int[] insertionOrder(int size, Random random) {
+        int[] keys = this == SEQUENTIAL ? new int[size] : shuffledRange(size, random);
+        for (int i = 0; i < size; i++) {
+            keys[i] = 2 * (this == SEQUENTIAL ? i : keys[i]);
+        }
+        return keys;
+    }
+
+    static int[] shuffledRange(int n, Random random) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    /**
+     * Генератор рангов по закону Ципфа (Gray et al., "Quickly Generating Billion-Record Synthetic Databases").
+     * Возвращает значения из [0, n), где 0 — самый частый.
+     */
+    static final class ZipfianGenerator {
+
+        private final int n;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+        private final Random random;
+
+        ZipfianGenerator(int n, double theta, Random random) {
+            this.n = n;
+            this.theta = theta;
+            this.random = random;
+            this.zetaN = zeta(n, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        int next() {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            int result = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+            return Math.min(result, n - 1);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.mail.polis.bench;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.CompactRedBlackTree;
+import ru.mail.polis.IntHashSet;
+import ru.mail.polis.LongHashSet;
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * Байт на элемент у IntHashSet / LongHashSet против ChainHashTable и HashSet с упакованными ключами,
+ * а также у RedBlackTree против CompactRedBlackTree (в обоих числах есть 16 байт самого Integer).
+ * Это не JMH-бенчмарк, а отчёт: множество строится из массива int, и занятая куча меряется до и после
+ * (упакованные ключи создаются при вставке и входят в размер, как у настоящего вызывающего кода).
+ * <p>
+ * Запуск: {@code java -Xms2g -Xmx2g -cp ... ru.mail.polis.bench.MemoryFootprint [size ...]}
+ */
+public class MemoryFootprint {
+
+    private static final int[] DEFAULT_SIZES = {100_000, 1_000_000};
+
+    public static void main(String[] args) {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%-30s %10s %14s%n", "impl", "size", "bytes/element");
+        for (int size : sizes) {
+            int[] keys = new Random(SetState.SEED).ints(size).toArray();
+            report("IntHashSet", keys, n -> {
+                IntHashSet set = new IntHashSet();
+                for (int key : keys) {
+                    set.addInt(key);
+                }
+                return set;
+            });
+            report("IntHashSet(0.9)", keys, n -> {
+                IntHashSet set = new IntHashSet(0.9f);
+                for (int key : keys) {
+                    set.addInt(key);
+                }
+                return set;
+            });
+            report("LongHashSet", keys, n -> {
+                LongHashSet set = new LongHashSet();
+                for (int key : keys) {
+                    set.addLong(key);
+                }
+                return set;
+            });
+            report("ChainHashTable<Integer>", keys, n -> fill(new ChainHashTable<>(), keys));
+            report("ChainHashTable<Long>", keys, n -> {
+                Set<Long> set = new ChainHashTable<>();
+                for (int key : keys) {
+                    set.add((long) key);
+                }
+                return set;
+            });
+            report("HashSet<Integer>", keys, n -> fill(new HashSet<>(), keys));
+            report("RedBlackTree<Integer>", keys, n -> fill(new RedBlackTree<>(), keys));
+            report("CompactRedBlackTree<Integer>", keys, n -> fill(new CompactRedBlackTree<>(), keys));
+            report("AVLTree<Integer>", keys, n -> fill(new AVLTree<>(), keys));
+        }
+    }
+
+    private static Set<Integer> fill(Set<Integer> set, int[] keys) {
+        for (int key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    private static void report(String name, int[] keys, IntFunction<Set<?>> factory) {
+        long before = usedHeap();
+        Set<?> set = factory.apply(keys.length);
+        long after = usedHeap();
+        System.out.printf("%-30s %10d %14.1f%n", name, set.size(), (double) (after - before) / set.size());
+    }
+
+    /**
+     * Занятая куча после нескольких полных сборок, чтобы в замер не попал мусор от вставок и перехеширований
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
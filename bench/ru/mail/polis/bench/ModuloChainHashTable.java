@@ -0,0 +1,208 @@
+package ru.mail.polis.bench;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Прежняя ChainHashTable с индексом ячейки Math.abs(hashCode) % length, без перемешивания битов.
+ * Оставлена только как точка отсчёта для сравнения с ru.mail.polis.ChainHashTable (spread + маска):
+ * {@code -p impl=ChainHashTable,ModuloChainHashTable}.
+ */
+class ModuloChainHashTable<E> extends AbstractSet<E> implements Set<E> {
+
+    private final int INITIAL_CAPACITY = 8;
+//    private final float LOAD_FACTOR = 0.5f;
+    private Object[] table;
+    private int size;
+
+    ModuloChainHashTable() {
+        this.table = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Вставляет элемент в хеш-таблицу.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в хеш-таблице отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        int h = value.hashCode();
+        int idx = indexFor(h, table.length);
+        if (table[idx] == null) {
+            table[idx] = new Node<>(value, h);
+        } else {
+            Node<E> curr = getNode(idx);
+            while (curr.next != null && !curr.matches(value, h)) {
+                curr = curr.next;
+            }
+            if (curr.matches(value, h)) {
+                return false;
+            }
+            curr.next = new Node<>(value, h);
+        }
+        size++;
+        resize();
+        return true;
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из хеш-таблицы.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо вставить
+     * @return true, если элемент содержался в хеш-таблице
+     */
+    @Override
+    public boolean remove(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+
+        Node<E> prev = null;
+        int h = value.hashCode();
+        int idx = indexFor(h, table.length);
+        Node<E> curr = getNode(idx);
+        while (curr != null && !curr.matches(value, h)) {
+            prev = curr;
+            curr = curr.next;
+        }
+        if (curr != null) {
+            if (prev == null) { //head
+                table[idx] = getNode(idx).next;
+            } else {
+                prev.next = curr.next;
+            }
+            curr.value = null;
+            curr.next = null;
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ищет элемент с таким же значением в хеш-таблице.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в хеш-таблице
+     */
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+
+        int h = value.hashCode();
+        Node<E> curr = getNode(indexFor(h, table.length));
+        while (curr != null && !curr.matches(value, h)) {
+            curr = curr.next;
+        }
+        //Вышли по второму условию
+        return curr != null;
+    }
+
+    private static int indexFor(int h, int length) {
+        return Math.abs(h) % length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<E> getNode(int idx) {
+        return (Node<E>) table[idx];
+    }
+
+    /**
+     * Удваивает таблицу, перевешивая существующие узлы за один проход.
+     * При удвоении степени двойки цепочка из ячейки i расходится только в ячейки i и i + oldLength,
+     * поэтому каждая цепочка делится на две (lo и hi) с сохранением порядка,
+     * без повторного вычисления hashCode, сравнений equals и новых узлов.
+     */
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        if (size * 2 < table.length) {
+            return;
+        }
+        Object[] old = this.table;
+        int oldLength = old.length;
+        int newLength = oldLength << 1;
+        Object[] newTable = new Object[newLength];
+        for (int i = 0; i < oldLength; i++) {
+            Node<E> curr = (Node<E>) old[i];
+            if (curr == null) {
+                continue;
+            }
+            Node<E> loHead = null;
+            Node<E> loTail = null;
+            Node<E> hiHead = null;
+            Node<E> hiTail = null;
+            while (curr != null) {
+                if (indexFor(curr.hash, newLength) == i) {
+                    if (loTail == null) {
+                        loHead = curr;
+                    } else {
+                        loTail.next = curr;
+                    }
+                    loTail = curr;
+                } else {
+                    if (hiTail == null) {
+                        hiHead = curr;
+                    } else {
+                        hiTail.next = curr;
+                    }
+                    hiTail = curr;
+                }
+                curr = curr.next;
+            }
+            if (loTail != null) {
+                loTail.next = null;
+                newTable[i] = loHead;
+            }
+            if (hiTail != null) {
+                hiTail.next = null;
+                newTable[i + oldLength] = hiHead;
+            }
+            old[i] = null;
+        }
+        this.table = newTable;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static class Node<E> {
+        E value;
+        final int hash; //value.hashCode(), чтобы не пересчитывать при сравнении и перестройке
+        Node<E> next;
+
+        Node(E value, int hash) {
+            this.value = value;
+            this.hash = hash;
+        }
+
+        boolean matches(E value, int hash) {
+            return this.hash == hash && value.equals(this.value);
+        }
+
+        @Override
+        public String toString() {
+            List<E> values = new ArrayList<>();
+            Node<E> curr = this;
+            while (curr != null) {
+                values.add(curr.value);
+                curr = curr.next;
+            }
+            return values.toString();
+        }
+    }
+
+}
\ No newline at end of file
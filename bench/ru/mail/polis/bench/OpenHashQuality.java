@@ -0,0 +1,250 @@
+package ru.mail.polis.bench;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import ru.mail.polis.CheckedOpenHashTableEntity;
+import ru.mail.polis.OffHeapOpenHashTable;
+import ru.mail.polis.OpenHashTableEntity;
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentGenerator;
+
+/**
+ * Качество хеш-функций OpenHashTableEntity на выборке ключей, до того как они попадут в OpenHashTable.
+ * <ul>
+ * <li>перестановка: пробы 0..tableSize-1 обходят все ячейки (isHashFunctionValid) для размеров 2^0..2^22,
+ * размеры проверяются параллельно;</li>
+ * <li>длина пробирования: средняя и максимальная при поиске найденного и отсутствующего ключа
+ * для разных load factor, рядом — ожидаемое при равномерном хешировании;</li>
+ * <li>кластеризация: средняя и наибольшая длина серии подряд занятых ячеек,
+ * для случайного заполнения средняя ~ 1 / (1 - load factor);</li>
+ * <li>лавинный эффект: ключ меняется минимально (одна буква, один бит, одна цифра телефона),
+ * и считается доля изменившихся битов у начальной ячейки и у шага; у хорошей функции каждый бит
+ * меняется с вероятностью 1/2, печатается среднее и наибольшее отклонение отдельного бита от 1/2.</li>
+ * </ul>
+ * Запуск: {@code java -Xmx2g -cp ... ru.mail.polis.bench.OpenHashQuality [count]}
+ */
+public class OpenHashQuality {
+
+    private static final double[] LOAD_FACTORS = {0.25, 0.5, 0.75, 0.9};
+    private static final int MAX_LOG_TABLE_SIZE = 22;
+    private static final int PERMUTATION_SAMPLE = 8; //Ключей на каждый размер таблицы
+    private static final int AVALANCHE_PAIRS = 100_000;
+    private static final int SIGNATURE_BITS = 30; //Начальная ячейка и шаг берутся в таблице размера 2^30
+    private static final int SIGNATURE_SIZE = 1 << SIGNATURE_BITS;
+
+    /**
+     * Выборки ключей: для каждой умеет построить ключи и пару «до / после» минимального изменения ключа
+     */
+    enum Population {
+
+        STUDENT {
+            @Override
+            CheckedOpenHashTableEntity generate(Random random) {
+                return generator(random).generate(0);
+            }
+
+            @Override
+            CheckedOpenHashTableEntity[] generate(int count, Random random) {
+                return generator(random).generateArray(count);
+            }
+
+            /**
+             * Случайный firstId: иначе у всех выборок id начинаются с 0 и ключи и промахи делят идентификаторы
+             */
+            private StudentGenerator generator(Random random) {
+                return new StudentGenerator(random.nextLong(), random.nextLong() >>> 2);
+            }
+
+            @Override
+            void change(Random random, long[] pair) {
+                Student student = generator(random).generate(0);
+                if (student.getMobile() == null) {
+                    student.setMobile(String.valueOf(1_000_000_000 + random.nextInt(1_000_000_000)));
+                }
+                pair[0] = signature(student);
+                char[] mobile = student.getMobile().toCharArray();
+                int i = random.nextInt(mobile.length);
+                mobile[i] = (char) ('0' + (mobile[i] - '0' + 1 + random.nextInt(9)) % 10);
+                student.setMobile(new String(mobile));
+                pair[1] = signature(student);
+            }
+        },
+
+        WORD {
+            @Override
+            CheckedOpenHashTableEntity generate(Random random) {
+                return new OffHeapOpenHashTable.Key(new String(word(random)));
+            }
+
+            @Override
+            void change(Random random, long[] pair) {
+                char[] word = word(random);
+                pair[0] = signature(new OffHeapOpenHashTable.Key(new String(word)));
+                int i = random.nextInt(word.length);
+                word[i] = (char) ('a' + (word[i] - 'a' + 1 + random.nextInt(25)) % 26);
+                pair[1] = signature(new OffHeapOpenHashTable.Key(new String(word)));
+            }
+
+            private char[] word(Random random) {
+                char[] chars = new char[HashKeyType.STRING_LENGTH];
+                for (int j = 0; j < chars.length; j++) {
+                    chars[j] = (char) ('a' + random.nextInt(26));
+                }
+                return chars;
+            }
+        },
+
+        BENCH_KEY {
+            @Override
+            CheckedOpenHashTableEntity generate(Random random) {
+                return new BenchKey(random.nextInt());
+            }
+
+            @Override
+            void change(Random random, long[] pair) {
+                int value = random.nextInt();
+                pair[0] = signature(new BenchKey(value));
+                pair[1] = signature(new BenchKey(value ^ 1 << random.nextInt(32)));
+            }
+        };
+
+        abstract CheckedOpenHashTableEntity generate(Random random);
+
+        /**
+         * Записывает в pair сигнатуры ключа до и после изменения одной буквы / бита / цифры
+         */
+        abstract void change(Random random, long[] pair);
+
+        CheckedOpenHashTableEntity[] generate(int count, Random random) {
+            CheckedOpenHashTableEntity[] keys = new CheckedOpenHashTableEntity[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = generate(random);
+            }
+            return keys;
+        }
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        for (Population population : Population.values()) {
+            Random random = new Random(SetState.SEED);
+            System.out.println("== " + population);
+            checkPermutations(population.generate(PERMUTATION_SAMPLE, random));
+            CheckedOpenHashTableEntity[] keys = population.generate(count, random);
+            CheckedOpenHashTableEntity[] absent = population.generate(Math.max(count / 4, 1), random);
+            for (double loadFactor : LOAD_FACTORS) {
+                reportProbes(keys, absent, loadFactor);
+            }
+            reportAvalanche(population, random);
+        }
+    }
+
+    private static void checkPermutations(CheckedOpenHashTableEntity[] sample) {
+        String failed = IntStream.rangeClosed(0, MAX_LOG_TABLE_SIZE).parallel()
+                .filter(log -> {
+                    for (CheckedOpenHashTableEntity key : sample) {
+                        if (!key.isHashFunctionValid(1 << log)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                })
+                .mapToObj(log -> "2^" + log)
+                .collect(Collectors.joining(", "));
+        System.out.printf("permutation, sizes 2^0..2^%d: %s%n", MAX_LOG_TABLE_SIZE,
+                failed.isEmpty() ? "ok" : "FAILED for " + failed);
+    }
+
+    /**
+     * Вставляет в таблицу из степени двойки ячеек столько ключей, чтобы получился loadFactor, как OpenHashTable
+     * без удалений: ключ занимает первую свободную ячейку своей последовательности проб
+     */
+    private static void reportProbes(CheckedOpenHashTableEntity[] keys, CheckedOpenHashTableEntity[] absent,
+                                     double loadFactor) {
+        int tableSize = Integer.highestOneBit(keys.length);
+        int n = (int) (tableSize * loadFactor);
+        BitSet occupied = new BitSet(tableSize);
+        long hitProbes = 0;
+        int hitMax = 0;
+        for (int i = 0; i < n; i++) {
+            int probes = probe(keys[i], tableSize, occupied);
+            occupied.set(keys[i].hashCode(tableSize, probes - 1));
+            hitProbes += probes;
+            hitMax = Math.max(hitMax, probes);
+        }
+        long missProbes = 0;
+        int missMax = 0;
+        for (OpenHashTableEntity key : absent) {
+            int probes = probe(key, tableSize, occupied);
+            missProbes += probes;
+            missMax = Math.max(missMax, probes);
+        }
+
+        long runs = 0;
+        int longestRun = 0;
+        for (int from = occupied.nextSetBit(0); from >= 0; from = occupied.nextSetBit(from)) {
+            int to = occupied.nextClearBit(from);
+            runs++;
+            longestRun = Math.max(longestRun, to - from);
+            from = to;
+        }
+
+        double a = (double) n / tableSize;
+        System.out.printf("load %.2f (size %d): hit avg %.3f (uniform %.3f) max %d, " +
+                        "miss avg %.3f (uniform %.3f) max %d, run avg %.3f (random %.3f) max %d%n",
+                a, tableSize,
+                (double) hitProbes / n, Math.log(1 / (1 - a)) / a, hitMax,
+                (double) missProbes / absent.length, 1 / (1 - a), missMax,
+                (double) n / runs, 1 / (1 - a), longestRun);
+    }
+
+    /**
+     * Число проб до первой свободной ячейки включительно
+     */
+    private static int probe(OpenHashTableEntity key, int tableSize, BitSet occupied) {
+        int probId = 0;
+        while (occupied.get(key.hashCode(tableSize, probId))) {
+            probId++;
+        }
+        return probId + 1;
+    }
+
+    private static void reportAvalanche(Population population, Random random) {
+        int[] startFlips = new int[SIGNATURE_BITS];
+        int[] stepFlips = new int[SIGNATURE_BITS];
+        long[] pair = new long[2];
+        for (int i = 0; i < AVALANCHE_PAIRS; i++) {
+            population.change(random, pair);
+            long diff = pair[0] ^ pair[1];
+            for (int bit = 0; bit < SIGNATURE_BITS; bit++) {
+                startFlips[bit] += (int) (diff >>> bit) & 1;
+                stepFlips[bit] += (int) (diff >>> (SIGNATURE_BITS + bit)) & 1;
+            }
+        }
+        //У шага младший бит всегда 1 и не меняется, поэтому он не учитывается
+        System.out.printf("avalanche: start %s, step %s%n", bias(startFlips, 0), bias(stepFlips, 1));
+    }
+
+    private static String bias(int[] flips, int fromBit) {
+        double sum = 0;
+        double worst = 0;
+        for (int bit = fromBit; bit < flips.length; bit++) {
+            double p = (double) flips[bit] / AVALANCHE_PAIRS;
+            sum += p;
+            worst = Math.max(worst, Math.abs(p - 0.5));
+        }
+        return String.format("flip avg %.3f, worst bit |p - 0.5| %.3f", sum / (flips.length - fromBit), worst);
+    }
+
+    /**
+     * Начальная ячейка (младшие 30 бит) и шаг (следующие 30) в таблице размера 2^30
+     */
+    private static long signature(OpenHashTableEntity key) {
+        int start = key.hashCode(SIGNATURE_SIZE, 0);
+        int step = (key.hashCode(SIGNATURE_SIZE, 1) - start) & (SIGNATURE_SIZE - 1);
+        return start | (long) step << SIGNATURE_BITS;
+    }
+}
@@ -0,0 +1,136 @@
+package ru.mail.polis.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.IntAVLTree;
+import ru.mail.polis.LongRedBlackTree;
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * AVLTree&lt;Integer&gt; / RedBlackTree&lt;Long&gt; против IntAVLTree / LongRedBlackTree на одних и тех же ключах.
+ * Запросы лежат массивом int, как у вызывающего кода с примитивами, поэтому обобщённые деревья платят
+ * и за упаковку ключа, и за compareTo через интерфейс — ровно то, что убирают примитивные версии.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PrimitiveTreeBenchmark {
+
+    @State(Scope.Thread)
+    public static class Trees {
+
+        @Param({"1000", "100000", "1000000"})
+        public int size;
+
+        @Param({"SEQUENTIAL", "RANDOM"})
+        public KeyDistribution distribution;
+
+        AVLTree<Integer> avlTree;
+        IntAVLTree intAVLTree;
+        RedBlackTree<Long> redBlackTree;
+        LongRedBlackTree longRedBlackTree;
+        int[] queries;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(SetState.SEED);
+            int[] keys = distribution.insertionOrder(size, random);
+            queries = distribution.queries(size, SetState.QUERY_COUNT, random);
+            avlTree = new AVLTree<>();
+            intAVLTree = new IntAVLTree();
+            redBlackTree = new RedBlackTree<>();
+            longRedBlackTree = new LongRedBlackTree();
+            for (int key : keys) {
+                avlTree.add(key);
+                intAVLTree.addInt(key);
+                redBlackTree.add((long) key);
+                longRedBlackTree.addLong(key);
+            }
+        }
+
+        int nextQuery() {
+            return queries[cursor++ & SetState.QUERY_MASK];
+        }
+    }
+
+    @Benchmark
+    public boolean containsAVLTree(Trees trees) {
+        return trees.avlTree.contains(trees.nextQuery());
+    }
+
+    @Benchmark
+    public boolean containsIntAVLTree(Trees trees) {
+        return trees.intAVLTree.containsInt(trees.nextQuery());
+    }
+
+    @Benchmark
+    public boolean containsRedBlackTree(Trees trees) {
+        return trees.redBlackTree.contains((long) trees.nextQuery());
+    }
+
+    @Benchmark
+    public boolean containsLongRedBlackTree(Trees trees) {
+        return trees.longRedBlackTree.containsLong(trees.nextQuery());
+    }
+
+    /**
+     * Вставка ключа; если ключ был новым, он сразу удаляется, так что размер дерева не меняется
+     */
+    @Benchmark
+    public boolean addAVLTree(Trees trees) {
+        Integer key = trees.nextQuery();
+        boolean added = trees.avlTree.add(key);
+        if (added) {
+            trees.avlTree.remove(key);
+        }
+        return added;
+    }
+
+    @Benchmark
+    public boolean addIntAVLTree(Trees trees) {
+        int key = trees.nextQuery();
+        boolean added = trees.intAVLTree.addInt(key);
+        if (added) {
+            trees.intAVLTree.removeInt(key);
+        }
+        return added;
+    }
+
+    @Benchmark
+    public boolean addRedBlackTree(Trees trees) {
+        Long key = (long) trees.nextQuery();
+        boolean added = trees.redBlackTree.add(key);
+        if (added) {
+            trees.redBlackTree.remove(key);
+        }
+        return added;
+    }
+
+    @Benchmark
+    public boolean addLongRedBlackTree(Trees trees) {
+        long key = trees.nextQuery();
+        boolean added = trees.longRedBlackTree.addLong(key);
+        if (added) {
+            trees.longRedBlackTree.removeLong(key);
+        }
+        return added;
+    }
+}
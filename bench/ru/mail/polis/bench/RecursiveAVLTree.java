@@ -0,0 +1,173 @@
+package ru.mail.polis.bench;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+/**
+ * Прежняя рекурсивная реализация вставки и удаления АВЛ-дерева
+ * (анонимный объект на каждую операцию, результат через поля wasAdd / wasRemove).
+ * Оставлена только как точка отсчёта для сравнения с итеративным ru.mail.polis.AVLTree:
+ * {@code -p impl=AVLTree,RecursiveAVLTree}.
+ */
+class RecursiveAVLTree<E extends Comparable<E>> extends AbstractSet<E> {
+
+    private Node root;
+    private int size;
+    private boolean wasAdd;
+    private boolean wasRemove;
+
+    private class Node {
+
+        E value;
+        Node left;
+        Node right;
+        int height = 1;
+
+        Node(E value) {
+            this.value = value;
+        }
+
+        int needBalance() {
+            int heightLeft = this.left != null ? this.left.height : 0;
+            int heightRight = this.right != null ? this.right.height : 0;
+            return heightRight - heightLeft;
+        }
+
+        void fixHeight() {
+            int heightLeft = this.left != null ? this.left.height : 0;
+            int heightRight = this.right != null ? this.right.height : 0;
+            this.height = Math.max(heightLeft, heightRight) + 1;
+        }
+    }
+
+    @Override
+    public boolean add(E value) {
+        wasAdd = true;
+        root = new Object() {
+            Node add(Node tmp, E value) {
+                if (tmp == null) {
+                    return new Node(value);
+                }
+                int cmp = value.compareTo(tmp.value);
+                if (cmp == 0) wasAdd = false;
+                if (cmp < 0) {
+                    tmp.left = add(tmp.left, value);
+                } else if (cmp > 0) {
+                    tmp.right = add(tmp.right, value);
+                }
+                return makeBalanced(tmp);
+            }
+        }.add(root, value);
+        if (wasAdd) {
+            size++;
+        }
+        return wasAdd;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object object) {
+        E value = (E) object;
+        wasRemove = false;
+        root = new Object() {
+            Node findMin(Node tmp) {
+                return tmp.left != null ? findMin(tmp.left) : tmp;
+            }
+
+            Node removeMin(Node tmp) {
+                if (tmp.left == null) {
+                    return tmp.right;
+                }
+                tmp.left = removeMin(tmp.left);
+                return makeBalanced(tmp);
+            }
+
+            Node remove(Node tmp, E value) {
+                if (tmp == null) {
+                    return null;
+                }
+                int cmp = value.compareTo(tmp.value);
+                if (cmp == 0) {
+                    wasRemove = true;
+                    if (tmp.left == null) {
+                        return tmp.right;
+                    } else if (tmp.right == null) {
+                        return tmp.left;
+                    } else {
+                        Node r = tmp;
+                        tmp = findMin(r.right);
+                        tmp.right = removeMin(r.right);
+                        tmp.left = r.left;
+                    }
+                } else if (cmp < 0) {
+                    tmp.left = remove(tmp.left, value);
+                } else {
+                    tmp.right = remove(tmp.right, value);
+                }
+                return makeBalanced(tmp);
+            }
+        }.remove(root, value);
+        if (wasRemove) {
+            size--;
+        }
+        return wasRemove;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object object) {
+        E value = (E) object;
+        Node curr = root;
+        while (curr != null) {
+            int cmp = value.compareTo(curr.value);
+            if (cmp == 0) {
+                return true;
+            }
+            curr = cmp < 0 ? curr.left : curr.right;
+        }
+        return false;
+    }
+
+    private Node rotateRight(Node tmp) {
+        Node n = tmp.left;
+        tmp.left = n.right;
+        n.right = tmp;
+        tmp.fixHeight();
+        n.fixHeight();
+        return n;
+    }
+
+    private Node rotateLeft(Node tmp) {
+        Node n = tmp.right;
+        tmp.right = n.left;
+        n.left = tmp;
+        tmp.fixHeight();
+        n.fixHeight();
+        return n;
+    }
+
+    private Node makeBalanced(Node tmp) {
+        tmp.fixHeight();
+        if (tmp.needBalance() == 2) {
+            if (tmp.right.needBalance() < 0)
+                tmp.right = rotateRight(tmp.right);
+            return rotateLeft(tmp);
+        }
+        if (tmp.needBalance() == -2) {
+            if (tmp.left.needBalance() > 0)
+                tmp.left = rotateLeft(tmp.left);
+            return rotateRight(tmp);
+        }
+        return tmp;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        throw new UnsupportedOperationException("iterator");
+    }
+}
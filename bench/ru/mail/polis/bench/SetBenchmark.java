@@ -0,0 +1,74 @@
+package ru.mail.polis.bench;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * add / contains / remove для всех реализаций {@link SetKind}.
+ * <p>
+ * Размер множества в устоявшемся режиме не меняется: каждая операция вставки
+ * сопровождается удалением того же ключа и наоборот.
+ * <p>
+ * BinarySearchTree на SEQUENTIAL вырождается в список и заполняется за O(n^2), поэтому в набор по умолчанию
+ * не входит; запускать его стоит на небольших размерах: {@code -p impl=BinarySearchTree -p size=1000,10000}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SetBenchmark {
+
+    @Benchmark
+    public boolean contains(SetState state) {
+        return state.set.contains(state.nextQuery());
+    }
+
+    /**
+     * Вставка ключа; если ключ был новым, он сразу удаляется
+     */
+    @Benchmark
+    public boolean add(SetState state) {
+        BenchKey key = state.nextQuery();
+        Set<BenchKey> set = state.set;
+        boolean added = set.add(key);
+        if (added) {
+            set.remove(key);
+        }
+        return added;
+    }
+
+    /**
+     * Удаление ключа; если ключ был в множестве, он возвращается обратно
+     */
+    @Benchmark
+    public boolean remove(SetState state) {
+        BenchKey key = state.nextQuery();
+        Set<BenchKey> set = state.set;
+        boolean removed = set.remove(key);
+        if (removed) {
+            set.add(key);
+        }
+        return removed;
+    }
+
+    /**
+     * Построение множества с нуля в порядке распределения (время загрузки)
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public Set<BenchKey> fill(SetState state) {
+        return SetState.fill(state.impl.create(), state.insertionOrder);
+    }
+}
@@ -0,0 +1,111 @@
+package ru.mail.polis.bench;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BTree;
+import ru.mail.polis.BinarySearchTree;
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.CompactRedBlackTree;
+import ru.mail.polis.ConcurrentSkipList;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.PersistentAVLTree;
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * Все реализации множеств, которые сравниваются в бенчмарках, включая эталонные из JDK.
+ * Имена констант используются как значения {@code @Param}.
+ * PersistentAVLTree, RecursiveAVLTree, CompactRedBlackTree, BinarySearchTree, BTree16 и BTree256 не входят в набор по умолчанию и включаются явно через {@code -p impl=...};
+ * BTree16 и BTree256 — B+-дерево с fanout 16 и 256 против BTree с fanout по умолчанию 64.
+ */
+public enum SetKind {
+
+    AVLTree {
+        @Override
+        Set<BenchKey> create() {
+            return new AVLTree<>();
+        }
+    },
+    RedBlackTree {
+        @Override
+        Set<BenchKey> create() {
+            return new RedBlackTree<>();
+        }
+    },
+    CompactRedBlackTree {
+        @Override
+        Set<BenchKey> create() {
+            return new CompactRedBlackTree<>();
+        }
+    },
+    ConcurrentSkipList {
+        @Override
+        Set<BenchKey> create() {
+            return new ConcurrentSkipList<>();
+        }
+    },
+    BTree {
+        @Override
+        Set<BenchKey> create() {
+            return new BTree<>();
+        }
+    },
+    BTree16 {
+        @Override
+        Set<BenchKey> create() {
+            return new BTree<>(16);
+        }
+    },
+    BTree256 {
+        @Override
+        Set<BenchKey> create() {
+            return new BTree<>(256);
+        }
+    },
+    PersistentAVLTree {
+        @Override
+        Set<BenchKey> create() {
+            return new PersistentAVLTree<>();
+        }
+    },
+    RecursiveAVLTree {
+        @Override
+        Set<BenchKey> create() {
+            return new RecursiveAVLTree<>();
+        }
+    },
+    BinarySearchTree {
+        @Override
+        Set<BenchKey> create() {
+            return new BinarySearchTree<>();
+        }
+    },
+    ChainHashTable {
+        @Override
+        Set<BenchKey> create() {
+            return new ChainHashTable<>();
+        }
+    },
+    OpenHashTable {
+        @Override
+        Set<BenchKey> create() {
+            return new OpenHashTable<>();
+        }
+    },
+    TreeSet {
+        @Override
+        Set<BenchKey> create() {
+            return new TreeSet<>();
+        }
+    },
+    HashSet {
+        @Override
+        Set<BenchKey> create() {
+            return new HashSet<>();
+        }
+    };
+
+    abstract Set<BenchKey> create();
+}
@@ -0,0 +1,126 @@
+package ru.mail.polis.bench;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.mail.polis.AVLTree;
+
+/**
+ * Объединение, пересечение и разность двух AVLTree: поэлементные AbstractSet.addAll / retainAll / removeAll
+ * против операций на join / split, последовательных и в ForkJoinPool.
+ * Каждое измерение меняет копию первого дерева, поэтому копия создаётся заново перед каждым вызовом.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class SetOperationsBenchmark {
+
+    @State(Scope.Thread)
+    public static class TwoTrees {
+
+        @Param({"100000", "1000000", "5000000"})
+        public int size;
+
+        /**
+         * Во сколько раз второе дерево меньше первого
+         */
+        @Param({"1", "100"})
+        public int ratio;
+
+        AVLTree<BenchKey> first;
+        AVLTree<BenchKey> second;
+        AVLTree<BenchKey> target;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(SetState.SEED);
+            first = AVLTree.fromSorted(sorted(size, random).iterator(), null);
+            second = AVLTree.fromSorted(sorted(size / ratio, random).iterator(), null);
+        }
+
+        /**
+         * Ключи из диапазона [0, 2 * size), так что деревья пересекаются примерно наполовину
+         */
+        private TreeSet<BenchKey> sorted(int count, Random random) {
+            TreeSet<BenchKey> keys = new TreeSet<>();
+            while (keys.size() < count) {
+                keys.add(new BenchKey(random.nextInt(2 * size)));
+            }
+            return keys;
+        }
+
+        @Setup(Level.Invocation)
+        public void copy() {
+            target = AVLTree.fromSorted(first.iterator(), null);
+        }
+    }
+
+    @Benchmark
+    public boolean unionPerElement(TwoTrees state) {
+        boolean modified = false;
+        for (BenchKey key : state.second) {
+            modified |= state.target.add(key);
+        }
+        return modified;
+    }
+
+    @Benchmark
+    public boolean union(TwoTrees state) {
+        return state.target.union(state.second);
+    }
+
+    @Benchmark
+    public boolean parallelUnion(TwoTrees state) {
+        return state.target.parallelUnion(state.second);
+    }
+
+    @Benchmark
+    public boolean intersectPerElement(TwoTrees state) {
+        return state.target.removeIf(key -> !state.second.contains(key));
+    }
+
+    @Benchmark
+    public boolean intersect(TwoTrees state) {
+        return state.target.intersect(state.second);
+    }
+
+    @Benchmark
+    public boolean parallelIntersect(TwoTrees state) {
+        return state.target.parallelIntersect(state.second);
+    }
+
+    @Benchmark
+    public boolean subtractPerElement(TwoTrees state) {
+        boolean modified = false;
+        for (BenchKey key : state.second) {
+            modified |= state.target.remove(key);
+        }
+        return modified;
+    }
+
+    @Benchmark
+    public boolean subtract(TwoTrees state) {
+        return state.target.subtract(state.second);
+    }
+
+    @Benchmark
+    public boolean parallelSubtract(TwoTrees state) {
+        return state.target.parallelSubtract(state.second);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.mail.polis.bench;
+
+import java.util.Random;
+import java.util.Set;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Заполненное множество и заранее сгенерированная последовательность запросов.
+ * Ключи создаются в setup, чтобы в измерение не попадали генерация и боксинг.
+ */
+@State(Scope.Thread)
+public class SetState {
+
+    static final long SEED = 42;
+    static final int QUERY_COUNT = 1 << 20;
+    static final int QUERY_MASK = QUERY_COUNT - 1;
+
+    @Param({"AVLTree", "RedBlackTree", "ConcurrentSkipList", "BTree", "ChainHashTable", "OpenHashTable", "TreeSet", "HashSet"})
+    public SetKind impl;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    Set<BenchKey> set;
+    BenchKey[] insertionOrder;
+    BenchKey[] queries;
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        insertionOrder = box(distribution.insertionOrder(size, random));
+        queries = box(distribution.queries(size, QUERY_COUNT, random));
+        set = fill(impl.create(), insertionOrder);
+    }
+
+    BenchKey nextQuery() {
+        return queries[cursor++ & QUERY_MASK];
+    }
+
+    static <S extends Set<BenchKey>> S fill(S set, BenchKey[] keys) {
+        for (BenchKey key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    static BenchKey[] box(int[] keys) {
+        BenchKey[] result = new BenchKey[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = new BenchKey(keys[i]);
+        }
+        return result;
+    }
+}
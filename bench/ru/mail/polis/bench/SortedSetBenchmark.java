@@ -0,0 +1,60 @@
+package ru.mail.polis.bench;
+
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * first / last для упорядоченных реализаций
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SortedSetBenchmark {
+
+    @State(Scope.Thread)
+    public static class SortedSetState {
+
+        @Param({"AVLTree", "RedBlackTree", "ConcurrentSkipList", "BTree", "TreeSet"})
+        public SetKind impl;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+        public KeyDistribution distribution;
+
+        SortedSet<BenchKey> set;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            BenchKey[] keys = SetState.box(distribution.insertionOrder(size, new Random(SetState.SEED)));
+            set = (SortedSet<BenchKey>) SetState.fill(impl.create(), keys);
+        }
+    }
+
+    @Benchmark
+    public BenchKey first(SortedSetState state) {
+        return state.set.first();
+    }
+
+    @Benchmark
+    public BenchKey last(SortedSetState state) {
+        return state.set.last();
+    }
+}
@@ -0,0 +1,79 @@
+package ru.mail.polis.bench;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Поиск в красно-чёрных деревьях на больших размерах, где глубина спуска доходит до 40–50 уровней.
+ * Запросы — отдельные объекты, равные вставленным, но не те же самые, поэтому remove проверяет
+ * именно сравнение через compare, а не совпадение ссылок.
+ * <p>
+ * 50M ключей занимают несколько гигабайт, поэтому куча больше, чем у остальных бенчмарков.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+public class TreeSearchBenchmark {
+
+    @State(Scope.Thread)
+    public static class TreeState {
+
+        @Param({"RedBlackTree", "CompactRedBlackTree", "TreeSet"})
+        public SetKind impl;
+
+        @Param({"1000000", "50000000"})
+        public int size;
+
+        @Param({"SEQUENTIAL", "RANDOM"})
+        public KeyDistribution distribution;
+
+        Set<BenchKey> set;
+        BenchKey[] queries;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(SetState.SEED);
+            set = SetState.fill(impl.create(), SetState.box(distribution.insertionOrder(size, random)));
+            queries = SetState.box(distribution.queries(size, SetState.QUERY_COUNT, random));
+        }
+
+        BenchKey nextQuery() {
+            return queries[cursor++ & SetState.QUERY_MASK];
+        }
+    }
+
+    @Benchmark
+    public boolean contains(TreeState state) {
+        return state.set.contains(state.nextQuery());
+    }
+
+    /**
+     * Удаление равного ключа; если он был в дереве, он тут же вставляется обратно, так что размер не меняется
+     */
+    @Benchmark
+    public boolean removeAndAdd(TreeState state) {
+        BenchKey key = state.nextQuery();
+        boolean removed = state.set.remove(key);
+        if (removed) {
+            state.set.add(key);
+        }
+        return removed;
+    }
+}
@@ -1,18 +1,25 @@
 package ru.mail.polis;
 
-import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.SortedSet;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
-public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements BalancedSortedSet<E> {
+public class AVLTree<E extends Comparable<E>> extends AbstractBalancedSortedSet<E> {
 
     private final Comparator<E> comparator;
 
     private Node root = null; //todo: Создайте новый класс если нужно. Добавьте новые поля, если нужно.
     private int size;
-    //todo: добавьте дополнительные переменные и/или методы если нужно
+    private int modCount; //Число структурных изменений, для fail-fast итераторов
+    private Node[] path = newPath(0); //Переиспользуемый стек пути для add и remove
 
     public AVLTree() {
         this(null);
@@ -28,12 +35,14 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         Node left = null;
         Node right = null;
         int height = 1;
+        int count = 1; //Число узлов в поддереве, для rank / select
 
         Node(E value) {
             this.value = value;
             this.left = null;
             this.right = null;
             this.height = 1;
+            this.count = 1;
         }
 
         @Override
@@ -47,6 +56,7 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
                 sb.append(", r=").append(right);
             }
             sb.append(", h=").append(height);
+            sb.append(", c=").append(count);
             sb.append('}');
             return sb.toString();
         }
@@ -57,10 +67,14 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
             return hieghtRight - heightLeft;
         }
 
-        void fixHeight() {
+        /**
+         * Пересчитывает высоту и размер поддерева по детям
+         */
+        void fix() {
             int heightLeft = this.left != null ? this.left.height : 0;
             int heightRight = this.right != null ? this.right.height : 0;
             this.height = Math.max(heightLeft, heightRight) + 1;
+            this.count = count(this.left) + count(this.right) + 1;
         }
     }
 
@@ -71,43 +85,164 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
      * @param value элемент который необходимо вставить
      * @return true, если элемент в дереве отсутствовал
      */
-
-    private boolean wasAdd;
-
     @Override
     public boolean add(E value) {
         if (value == null) {
             throw new NullPointerException("value is null");
         }
-        wasAdd = true;
-        root = new Object() {
-            Node add(Node tmp, E value) {
-                if (tmp == null) {
-                    return new Node(value);
-                }
-                int cmp = compare(value, tmp.value);
-                if (cmp == 0) wasAdd = false;
-                if (cmp < 0) {
-                    tmp.left = add(tmp.left, value);
-                } else if (cmp > 0) {
-                    tmp.right = add(tmp.right, value);
-                }
-                return makeBalanced(tmp);
-            }
-        }.add(root, value);
-        if (wasAdd) {
+        if (root == null) {
+            root = new Node(value);
             size++;
+            modCount++;
+            return true;
+        }
+        Node[] path = path();
+        int depth = 0;
+        int cmp = 0;
+        Node curr = root;
+        while (curr != null) {
+            cmp = compare(value, curr.value);
+            if (cmp == 0) {
+                Arrays.fill(path, 0, depth, null);
+                return false;
+            }
+            path[depth++] = curr;
+            curr = cmp < 0 ? curr.left : curr.right;
+        }
+        if (cmp < 0) {
+            path[depth - 1].left = new Node(value);
+        } else {
+            path[depth - 1].right = new Node(value);
+        }
+        size++;
+        modCount++;
+        rebalance(path, depth, 1);
+        return true;
+    }
+
+    /**
+     * Строит дерево из строго возрастающей последовательности за O(n) без сравнений и поворотов:
+     * корнем поддерева становится средний элемент отрезка, поэтому высоты поддеревьев отличаются не больше чем на 1.
+     *
+     * @param values элементы по возрастанию в порядке comparator
+     * @throws IllegalArgumentException если элементы идут не по возрастанию или повторяются
+     */
+    public static <E extends Comparable<E>> AVLTree<E> fromSorted(Iterator<? extends E> values, Comparator<E> comparator) {
+        AVLTree<E> tree = new AVLTree<>(comparator);
+        tree.rebuild(toSortedArray(values, comparator));
+        return tree;
+    }
+
+    /**
+     * Вставляет элементы коллекции.
+     * Если коллекция уже отсортирована и достаточно велика относительно дерева,
+     * дерево сливается с ней и собирается заново за O(n + m), иначе элементы вставляются по одному.
+     * Другое AVLTree с тем же компаратором объединяется через {@link #union}.
+     *
+     * @param c элементы, которые необходимо вставить
+     * @return true, если дерево изменилось
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean addAll(Collection<? extends E> c) {
+        if (compatible(c)) {
+            return union((AVLTree<E>) c);
+        }
+        if (worthRebuilding(size, c.size())) {
+            Object[] sorted = sortedElements(c);
+            if (sorted != null) {
+                int oldSize = size;
+                rebuild(isEmpty() ? sorted : mergeWith(sorted));
+                return size != oldSize;
+            }
         }
-        return wasAdd;
+        return super.addAll(c);
     }
 
+    private void rebuild(Object[] sorted) {
+        root = build(sorted, 0, sorted.length);
+        size = sorted.length;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node build(Object[] sorted, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        Node node = new Node((E) sorted[mid]);
+        node.left = build(sorted, from, mid);
+        node.right = build(sorted, mid + 1, to);
+        node.fix();
+        return node;
+    }
+
+    /**
+     * Стек пути от корня, общий для всех вставок и удалений в этом дереве.
+     * Длина пути не превосходит высоты корня, поэтому массив растёт только вместе с деревом.
+     */
+    private Node[] path() {
+        if (path.length < root.height) {
+            path = newPath(root.height + 1);
+        }
+        return path;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node[] newPath(int length) {
+        return (Node[]) new AVLTree<?>.Node[length];
+    }
+
+    /**
+     * Поднимается по пути path[depth - 1] ... path[0] и балансирует узлы.
+     * Балансировка останавливается, как только высота очередного поддерева не изменилась:
+     * выше него высоты и балансы остаются прежними, и остаётся только сдвинуть размеры поддеревьев на delta.
+     *
+     * @param delta на сколько изменилось число узлов (+1 при вставке, -1 при удалении)
+     */
+    private void rebalance(Node[] path, int depth, int delta) {
+        int i = depth - 1;
+        for (; i >= 0; i--) {
+            Node tmp = path[i];
+            int oldHeight = tmp.height;
+            Node balanced = makeBalanced(tmp);
+            if (balanced != tmp) {
+                replaceChild(path, i, tmp, balanced);
+            }
+            if (balanced.height == oldHeight) {
+                break;
+            }
+        }
+        while (--i >= 0) {
+            path[i].count += delta;
+        }
+        Arrays.fill(path, 0, depth, null);
+    }
+
+    private int count(Node node) {
+        return node != null ? node.count : 0;
+    }
+
+    /**
+     * Подвешивает newChild на место oldChild, который лежит на пути на глубине i
+     */
+    private void replaceChild(Node[] path, int i, Node oldChild, Node newChild) {
+        if (i == 0) {
+            root = newChild;
+        } else if (path[i - 1].left == oldChild) {
+            path[i - 1].left = newChild;
+        } else {
+            path[i - 1].right = newChild;
+        }
+    }
 
     private Node rotateRight(Node tmp) {
         Node n = tmp.left;
         tmp.left = n.right;
         n.right = tmp;
-        tmp.fixHeight();
-        n.fixHeight();
+        tmp.fix();
+        n.fix();
         return n;
     }
 
@@ -115,14 +250,13 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         Node n = tmp.right;
         tmp.right = n.left;
         n.left = tmp;
-        tmp.fixHeight();
-        n.fixHeight();
-        tmp.fixHeight();
+        tmp.fix();
+        n.fix();
         return n;
     }
 
     private Node makeBalanced(Node tmp) {
-        tmp.fixHeight();
+        tmp.fix();
         if (tmp.needBalance() == 2) {
             if (tmp.right.needBalance() < 0)
                 tmp.right = rotateRight(tmp.right);
@@ -143,9 +277,6 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
      * @param object элемент который необходимо вставить
      * @return true, если элемент содержался в дереве
      */
-
-    private boolean wasRemove;
-
     @Override
     public boolean remove(Object object) {
         @SuppressWarnings("unchecked")
@@ -153,49 +284,43 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         if (value == null) {
             throw new NullPointerException("value is null");
         }
-        wasRemove = false;
-        root = new Object() {
-            Node findMin(Node tmp) {
-                return tmp.left != null ? findMin(tmp.left) : tmp;
-            }
-
-            Node removeMin(Node tmp) {
-                if (tmp.left == null) {
-                    return tmp.right;
-                }
-                tmp.left = removeMin(tmp.left);
-                return makeBalanced(tmp);
+        if (root == null) {
+            return false;
+        }
+        Node[] path = path();
+        int depth = 0;
+        Node curr = root;
+        while (curr != null) {
+            int cmp = compare(value, curr.value);
+            path[depth++] = curr;
+            if (cmp == 0) {
+                break;
             }
-
-            Node remove(Node tmp, E value) {
-                if (tmp == null) {
-                    return null;
-                }
-                int cmp = compare(value, tmp.value);
-                if (cmp == 0) {
-                    wasRemove = true;
-                    if (tmp.left == null) {
-                        return tmp.right;
-                    } else if (tmp.right == null) {
-                        return tmp.left;
-                    } else {
-                        Node r = tmp;
-                        tmp = findMin(r.right);
-                        tmp.right = removeMin(r.right);
-                        tmp.left = r.left;
-                    }
-                } else if (cmp < 0) {
-                    tmp.left = remove(tmp.left, value);
-                } else {
-                    tmp.right = remove(tmp.right, value);
-                }
-                return makeBalanced(tmp);
+            curr = cmp < 0 ? curr.left : curr.right;
+        }
+        if (curr == null) {
+            Arrays.fill(path, 0, depth, null);
+            return false;
+        }
+        if (curr.left != null && curr.right != null) {
+            //Значение заменяем наименьшим из больших, а удаляем узел, в котором оно лежало
+            Node next = curr.right;
+            while (next != null) {
+                path[depth++] = next;
+                next = next.left;
             }
-        }.remove(root, value);
-        if (wasRemove) {
-            size--;
+            curr.value = path[depth - 1].value;
         }
-        return wasRemove;
+        Node rm = path[--depth];
+        replaceChild(path, depth, rm, rm.left != null ? rm.left : rm.right);
+        rm.value = null;
+        rm.left = null;
+        rm.right = null;
+        path[depth] = null;
+        size--;
+        modCount++;
+        rebalance(path, depth, -1);
+        return true;
     }
 
     /**
@@ -228,6 +353,41 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         return false;
     }
 
+    @Override
+    Boolean containsOptimistic(E value) {
+        Node curr = root;
+        for (int steps = 0; curr != null; steps++) {
+            if (steps == MAX_OPTIMISTIC_STEPS) {
+                return null;
+            }
+            int cmp = compare(curr.value, value);
+            if (cmp == 0) {
+                return Boolean.TRUE;
+            }
+            curr = cmp < 0 ? curr.right : curr.left;
+        }
+        return Boolean.FALSE;
+    }
+
+    @Override
+    Object neighbourOptimistic(E value, boolean inclusive, boolean descending) {
+        Node curr = root;
+        Node found = null;
+        for (int steps = 0; curr != null; steps++) {
+            if (steps == MAX_OPTIMISTIC_STEPS) {
+                return OPTIMISTIC_RETRY;
+            }
+            int cmp = value == null ? (descending ? 1 : -1) : compare(value, curr.value);
+            if (descending ? cmp > 0 || cmp == 0 && inclusive : cmp < 0 || cmp == 0 && inclusive) {
+                found = curr;
+                curr = descending ? curr.right : curr.left;
+            } else {
+                curr = descending ? curr.left : curr.right;
+            }
+        }
+        return found == null ? null : found.value;
+    }
+
     /**
      * Ищет наименьший элемент в дереве
      *
@@ -264,6 +424,454 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         return (E) curr.value;
     }
 
+    /**
+     * Наибольший элемент, строго меньший value
+     *
+     * @return элемент или null, если такого нет
+     */
+    @Override
+    public E lower(E value) {
+        return floor(value, false);
+    }
+
+    /**
+     * Наибольший элемент, не превосходящий value
+     *
+     * @return элемент или null, если такого нет
+     */
+    @Override
+    public E floor(E value) {
+        return floor(value, true);
+    }
+
+    /**
+     * Наименьший элемент, не меньший value
+     *
+     * @return элемент или null, если такого нет
+     */
+    @Override
+    public E ceiling(E value) {
+        return ceiling(value, true);
+    }
+
+    /**
+     * Наименьший элемент, строго больший value
+     *
+     * @return элемент или null, если такого нет
+     */
+    @Override
+    public E higher(E value) {
+        return ceiling(value, false);
+    }
+
+    private E floor(E value, boolean inclusive) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        E result = null;
+        Node curr = root;
+        while (curr != null) {
+            int cmp = compare(value, curr.value);
+            if (cmp == 0 && inclusive) {
+                return curr.value;
+            }
+            if (cmp > 0) {
+                result = curr.value;
+                curr = curr.right;
+            } else {
+                curr = curr.left;
+            }
+        }
+        return result;
+    }
+
+    private E ceiling(E value, boolean inclusive) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        E result = null;
+        Node curr = root;
+        while (curr != null) {
+            int cmp = compare(value, curr.value);
+            if (cmp == 0 && inclusive) {
+                return curr.value;
+            }
+            if (cmp < 0) {
+                result = curr.value;
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ищет позицию элемента в отсортированном порядке
+     *
+     * @return число элементов дерева, строго меньших value
+     */
+    public int rank(E value) {
+        return rank(value, false);
+    }
+
+    /**
+     * Ищет k-й по порядку элемент (нумерация с нуля)
+     *
+     * @return элемент, перед которым в дереве ровно k элементов
+     * @throws IndexOutOfBoundsException если k < 0 или k >= size()
+     */
+    public E select(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("k = " + k + ", size = " + size);
+        }
+        Node curr = root;
+        while (true) {
+            int leftCount = count(curr.left);
+            if (k < leftCount) {
+                curr = curr.left;
+            } else if (k == leftCount) {
+                return curr.value;
+            } else {
+                k -= leftCount + 1;
+                curr = curr.right;
+            }
+        }
+    }
+
+    /**
+     * Число элементов меньших value (при inclusive — не больших)
+     */
+    private int rank(E value, boolean inclusive) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int result = 0;
+        Node curr = root;
+        while (curr != null) {
+            int cmp = compare(value, curr.value);
+            if (cmp < 0) {
+                curr = curr.left;
+            } else if (cmp > 0) {
+                result += count(curr.left) + 1;
+                curr = curr.right;
+            } else {
+                result += count(curr.left) + (inclusive ? 1 : 0);
+                break;
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Операции на основе join / split (Blelloch, Ferizovic, Sun — "Just Join for Parallel Ordered Sets").
+     * Объединение, пересечение и разность двух деревьев размеров m <= n работают за O(m log(n / m + 1)):
+     * дерево-аргумент обходится сверху вниз, а это дерево режется split по ключам его узлов.
+     * Меняются только узлы этого дерева, узлы аргумента не трогаются (в объединение они копируются).
+     */
+
+    /**
+     * Поддеревья меньше этого размера параллельные операции обрабатывают последовательно
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * Результат split: элементы меньше ключа, узел с ключом (или null) и элементы больше ключа
+     */
+    private final class Split {
+        Node left;
+        Node found;
+        Node right;
+    }
+
+    private interface Operation<N> {
+        N apply(N t1, N t2, boolean parallel);
+    }
+
+    private int height(Node node) {
+        return node != null ? node.height : 0;
+    }
+
+    /**
+     * Дерево из l, узла k и r, где все элементы l меньше k, а все элементы r больше.
+     * O(|h(l) - h(r)| + 1): k подвешивается на ту ветвь более высокого дерева, где высоты сравниваются.
+     */
+    private Node join(Node l, Node k, Node r) {
+        if (height(l) > height(r) + 1) {
+            return joinRight(l, k, r);
+        }
+        if (height(r) > height(l) + 1) {
+            return joinLeft(l, k, r);
+        }
+        k.left = l;
+        k.right = r;
+        k.fix();
+        return k;
+    }
+
+    private Node joinRight(Node l, Node k, Node r) {
+        if (height(l.right) <= height(r) + 1) {
+            k.left = l.right;
+            k.right = r;
+            k.fix();
+            l.right = k;
+        } else {
+            l.right = joinRight(l.right, k, r);
+        }
+        return makeBalanced(l);
+    }
+
+    private Node joinLeft(Node l, Node k, Node r) {
+        if (height(r.left) <= height(l) + 1) {
+            k.left = l;
+            k.right = r.left;
+            k.fix();
+            r.left = k;
+        } else {
+            r.left = joinLeft(l, k, r.left);
+        }
+        return makeBalanced(r);
+    }
+
+    /**
+     * Дерево из l и r без среднего узла: средним становится наибольший узел l
+     */
+    private Node join2(Node l, Node r) {
+        if (l == null) {
+            return r;
+        }
+        Split split = new Split();
+        Node rest = splitLast(l, split);
+        return join(rest, split.found, r);
+    }
+
+    private Node splitLast(Node t, Split split) {
+        if (t.right == null) {
+            split.found = t;
+            return t.left;
+        }
+        Node rest = splitLast(t.right, split);
+        return join(t.left, t, rest);
+    }
+
+    /**
+     * Режет поддерево t по ключу за O(log n); узлы t переиспользуются
+     */
+    private Split split(Node t, E key) {
+        if (t == null) {
+            return new Split();
+        }
+        Split split;
+        int cmp = compare(key, t.value);
+        if (cmp == 0) {
+            split = new Split();
+            split.left = t.left;
+            split.right = t.right;
+            t.left = null;
+            t.right = null;
+            t.fix();
+            split.found = t;
+        } else if (cmp < 0) {
+            split = split(t.left, key);
+            split.right = join(split.right, t, t.right);
+        } else {
+            split = split(t.right, key);
+            split.left = join(t.left, t, split.left);
+        }
+        return split;
+    }
+
+    /**
+     * Отрезает от дерева элементы не меньше key и возвращает их новым деревом за O(log n)
+     */
+    public AVLTree<E> split(E key) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        Split split = split(root, key);
+        AVLTree<E> greater = new AVLTree<>(comparator);
+        greater.root = split.found == null ? split.right : join(null, split.found, split.right);
+        greater.size = count(greater.root);
+        root = split.left;
+        size = count(root);
+        modCount++;
+        return greater;
+    }
+
+    /**
+     * Переносит в это дерево все элементы greater, которые должны быть больше всех элементов этого дерева,
+     * за O(log n); greater становится пустым
+     *
+     * @throws IllegalArgumentException если у деревьев разные компараторы или их элементы перекрываются
+     */
+    public void join(AVLTree<E> greater) {
+        if (!Objects.equals(comparator, greater.comparator)) {
+            throw new IllegalArgumentException("Trees must have the same comparator");
+        }
+        if (greater == this || greater.isEmpty()) {
+            return;
+        }
+        if (!isEmpty() && compare(last(), greater.first()) >= 0) {
+            throw new IllegalArgumentException("Elements of the joined tree must be greater than all elements of this tree");
+        }
+        root = join2(root, greater.root);
+        size = count(root);
+        modCount++;
+        greater.root = null;
+        greater.size = 0;
+        greater.modCount++;
+    }
+
+    private Node copy(Node t) {
+        if (t == null) {
+            return null;
+        }
+        Node node = new Node(t.value);
+        node.left = copy(t.left);
+        node.right = copy(t.right);
+        node.height = t.height;
+        node.count = t.count;
+        return node;
+    }
+
+    /**
+     * Применяет операцию к левым и к правым частям: (split.left, t2.left) и (split.right, t2.right).
+     * Части не пересекаются, поэтому большие обрабатываются параллельно в ForkJoinPool
+     */
+    private void both(Operation<Node> operation, Split split, Node t2, boolean parallel) {
+        Node l1 = split.left;
+        Node r1 = split.right;
+        if (parallel && count(l1) + count(r1) + count(t2) >= PARALLEL_THRESHOLD) {
+            ForkJoinTask<Node> left = ForkJoinTask.adapt(() -> operation.apply(l1, t2.left, true)).fork();
+            split.right = operation.apply(r1, t2.right, true);
+            split.left = left.join();
+        } else {
+            split.left = operation.apply(l1, t2.left, parallel);
+            split.right = operation.apply(r1, t2.right, parallel);
+        }
+    }
+
+    private Node union(Node t1, Node t2, boolean parallel) {
+        if (t2 == null) {
+            return t1;
+        }
+        if (t1 == null) {
+            return copy(t2);
+        }
+        Split split = split(t1, t2.value);
+        Node middle = split.found != null ? split.found : new Node(t2.value);
+        both(this::union, split, t2, parallel);
+        return join(split.left, middle, split.right);
+    }
+
+    private Node intersect(Node t1, Node t2, boolean parallel) {
+        if (t1 == null || t2 == null) {
+            return null;
+        }
+        Split split = split(t1, t2.value);
+        both(this::intersect, split, t2, parallel);
+        return split.found != null ? join(split.left, split.found, split.right) : join2(split.left, split.right);
+    }
+
+    private Node subtract(Node t1, Node t2, boolean parallel) {
+        if (t1 == null) {
+            return null;
+        }
+        if (t2 == null) {
+            return t1;
+        }
+        Split split = split(t1, t2.value);
+        both(this::subtract, split, t2, parallel);
+        return join2(split.left, split.right);
+    }
+
+    private boolean apply(Operation<Node> operation, AVLTree<E> other, boolean parallel) {
+        if (!Objects.equals(comparator, other.comparator)) {
+            throw new IllegalArgumentException("Trees must have the same comparator");
+        }
+        Node otherRoot = other == this ? copy(root) : other.root;
+        if (parallel) {
+            root = ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> operation.apply(root, otherRoot, true)));
+        } else {
+            root = operation.apply(root, otherRoot, false);
+        }
+        int oldSize = size;
+        size = count(root);
+        modCount++;
+        return size != oldSize;
+    }
+
+    /**
+     * Добавляет в дерево элементы other (объединение) за O(m log(n / m + 1)). other не меняется
+     *
+     * @return true, если дерево изменилось
+     * @throws IllegalArgumentException если у деревьев разные компараторы
+     */
+    public boolean union(AVLTree<E> other) {
+        return apply(this::union, other, false);
+    }
+
+    /**
+     * Оставляет в дереве только элементы, которые есть в other (пересечение). other не меняется
+     */
+    public boolean intersect(AVLTree<E> other) {
+        return apply(this::intersect, other, false);
+    }
+
+    /**
+     * Удаляет из дерева элементы, которые есть в other (разность). other не меняется
+     */
+    public boolean subtract(AVLTree<E> other) {
+        return apply(this::subtract, other, false);
+    }
+
+    /**
+     * То же, что {@link #union}, но независимые половины больших поддеревьев обрабатываются в ForkJoinPool.commonPool()
+     */
+    public boolean parallelUnion(AVLTree<E> other) {
+        return apply(this::union, other, true);
+    }
+
+    public boolean parallelIntersect(AVLTree<E> other) {
+        return apply(this::intersect, other, true);
+    }
+
+    public boolean parallelSubtract(AVLTree<E> other) {
+        return apply(this::subtract, other, true);
+    }
+
+    /**
+     * Дерево с тем же компаратором можно обработать операциями join / split
+     */
+    private boolean compatible(Collection<?> c) {
+        return c instanceof AVLTree && Objects.equals(comparator, ((AVLTree<?>) c).comparator);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean retainAll(Collection<?> c) {
+        if (compatible(c)) {
+            return intersect((AVLTree<E>) c);
+        }
+        return super.retainAll(c);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean removeAll(Collection<?> c) {
+        if (compatible(c)) {
+            return subtract((AVLTree<E>) c);
+        }
+        return super.removeAll(c);
+    }
+
+    @Override
+    int rangeSize(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+        int upper = hi == null ? size : rank(hi, hiInclusive);
+        int lower = lo == null ? 0 : rank(lo, !loInclusive);
+        return Math.max(upper - lower, 0);
+    }
+
     private int compare(E v1, E v2) {
         return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
     }
@@ -287,23 +895,216 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
     }
 
     @Override
-    public SortedSet<E> subSet(E fromElement, E toElement) {
-        throw new UnsupportedOperationException("subSet");
+    Iterator<E> iterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+        return new TreeIterator(from, fromInclusive, to, toInclusive, descending);
     }
 
+    /**
+     * Возвращает делимый Spliterator, который делит дерево по границам поддеревьев,
+     * поэтому parallelStream() раздаёт потокам части дерева примерно равного размера
+     */
     @Override
-    public SortedSet<E> headSet(E toElement) {
-        throw new UnsupportedOperationException("headSet");
+    public Spliterator<E> spliterator() {
+        return new TreeSpliterator(null, root, size, modCount);
     }
 
-    @Override
-    public SortedSet<E> tailSet(E fromElement) {
-        throw new UnsupportedOperationException("tailSet");
+    @SuppressWarnings("unchecked")
+    private Node[] newStack() {
+        //Высота АВЛ-дерева ограничена, поэтому стека высоты корня хватает на весь обход
+        return (Node[]) new AVLTree<?>.Node[root != null ? root.height : 0];
     }
 
-    @Override
-    public Iterator<E> iterator() {
-        throw new UnsupportedOperationException("iterator");
+    /**
+     * In-order итератор на явном стеке (в узлах нет ссылок на родителя).
+     * На стеке лежат узлы, значения которых ещё не выданы и чьи поддеревья со стороны обхода уже пройдены;
+     * вершина стека — следующий элемент. Обход заканчивается на границе to.
+     */
+    private class TreeIterator implements Iterator<E> {
+
+        private final Node[] stack = newStack();
+        private int depth;
+        private final E to;
+        private final boolean toInclusive;
+        private final boolean descending;
+        private Node lastReturned;
+        private int expectedModCount = modCount;
+
+        TreeIterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+            seek(from, fromInclusive);
+        }
+
+        /**
+         * Спуском от корня кладёт на стек путь к первому элементу после границы from
+         */
+        private void seek(E from, boolean inclusive) {
+            depth = 0;
+            Node curr = root;
+            while (curr != null) {
+                boolean pending = true;
+                if (from != null) {
+                    int cmp = compare(curr.value, from);
+                    pending = descending ? cmp < 0 : cmp > 0;
+                    pending |= cmp == 0 && inclusive;
+                }
+                if (pending) {
+                    stack[depth++] = curr;
+                    curr = descending ? curr.right : curr.left;
+                } else {
+                    curr = descending ? curr.left : curr.right;
+                }
+            }
+            checkBound();
+        }
+
+        private void pushEdge(Node curr) {
+            while (curr != null) {
+                stack[depth++] = curr;
+                curr = descending ? curr.right : curr.left;
+            }
+        }
+
+        private void checkBound() {
+            if (depth > 0 && to != null) {
+                int cmp = compare(stack[depth - 1].value, to);
+                if ((descending ? cmp < 0 : cmp > 0) || cmp == 0 && !toInclusive) {
+                    depth = 0;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            Node curr = stack[--depth];
+            pushEdge(descending ? curr.left : curr.right);
+            checkBound();
+            lastReturned = curr;
+            return curr.value;
+        }
+
+        /**
+         * Удаление перестраивает дерево поворотами, поэтому после него стек
+         * восстанавливается спуском от корня к следующему за удалённым элементу
+         */
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            E value = lastReturned.value;
+            AVLTree.this.remove(value);
+            lastReturned = null;
+            expectedModCount = modCount;
+            seek(value, false);
+        }
+    }
+
+    /**
+     * Spliterator, покрывающий необязательный первый элемент lead и затем всё поддерево subtree.
+     * Деление отдаёт (lead, subtree.left), а себе оставляет (subtree.value, subtree.right),
+     * так что обе половины снова имеют тот же вид. После начала обхода деление не выполняется.
+     */
+    private class TreeSpliterator implements Spliterator<E> {
+
+        private E lead;
+        private Node subtree;
+        private long estimate; //Точный размер: размеры поддеревьев известны
+        private final int expectedModCount;
+        private Node[] stack; //null, пока обход не начат
+        private int depth;
+
+        TreeSpliterator(E lead, Node subtree, long estimate, int expectedModCount) {
+            this.lead = lead;
+            this.subtree = subtree;
+            this.estimate = estimate;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            if (stack != null || subtree == null || estimate < 2) {
+                return null;
+            }
+            Node top = subtree;
+            long prefixSize = count(top.left) + (lead != null ? 1 : 0);
+            TreeSpliterator prefix = new TreeSpliterator(lead, top.left, prefixSize, expectedModCount);
+            estimate -= prefixSize;
+            lead = top.value;
+            subtree = top.right;
+            return prefix;
+        }
+
+        private void start() {
+            stack = newStack();
+            pushLeft(subtree);
+            subtree = null;
+        }
+
+        private void pushLeft(Node curr) {
+            while (curr != null) {
+                stack[depth++] = curr;
+                curr = curr.left;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (stack == null) {
+                start();
+            }
+            E value;
+            if (lead != null) {
+                value = lead;
+                lead = null;
+            } else if (depth > 0) {
+                Node curr = stack[--depth];
+                pushLeft(curr.right);
+                value = curr.value;
+            } else {
+                return false;
+            }
+            estimate--;
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT | Spliterator.SORTED
+                    | Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator;
+        }
     }
 
     /**
@@ -331,7 +1132,7 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
     }
 
     public static void main(String[] args) throws NotBalancedTreeException {
-        AVLTree AVL = new AVLTree<Integer>();
+        AVLTree<Integer> AVL = new AVLTree<>();
     }
 
 }
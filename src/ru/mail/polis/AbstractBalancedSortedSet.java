@@ -0,0 +1,505 @@
+package ru.mail.polis;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Общая часть NavigableSet для деревьев поиска.
+ * Наследнику достаточно реализовать поиск (lower / floor / ceiling / higher), first / last
+ * и ленивый итератор от границы до границы, а представления подмножеств строятся здесь
+ * и ходят напрямую в дерево, без копирования.
+ */
+abstract class AbstractBalancedSortedSet<E> extends AbstractSet<E> implements BalancedSortedSet<E> {
+
+    /**
+     * Ленивый итератор по элементам дерева от границы from до границы to.
+     * null вместо границы означает начало (конец) дерева.
+     * При обратном обходе from — верхняя граница, а to — нижняя.
+     *
+     * @param descending true, если обходить по убыванию
+     */
+    abstract Iterator<E> iterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending);
+
+    /**
+     * Число элементов в диапазоне (null вместо границы — без ограничения).
+     * Здесь считается обходом; деревья, которые хранят размеры поддеревьев, переопределяют за O(log n)
+     */
+    int rangeSize(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+        int size = 0;
+        for (Iterator<E> it = iterator(lo, loInclusive, hi, hiInclusive, false); it.hasNext(); it.next()) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Ограничение длины пути для {@link #containsOptimistic}: у АВЛ- и красно-чёрного дерева из не более чем 2^31 элементов
+     * высота меньше, поэтому более длинный путь означает, что поиск увидел дерево посреди поворота
+     */
+    static final int MAX_OPTIMISTIC_STEPS = 64;
+
+    /**
+     * Поиск для оптимистичного чтения без блокировки (см. {@link StampedSortedSet}):
+     * другой поток может в это время менять дерево, поэтому поиск проходит не больше MAX_OPTIMISTIC_STEPS узлов
+     * и может бросить RuntimeException на несогласованных полях. Результат верен, только если после него
+     * прошла проверка StampedLock.validate.
+     *
+     * @return результат поиска или null, если его надо повторить под блокировкой; здесь — всегда null
+     */
+    Boolean containsOptimistic(E value) {
+        return null;
+    }
+
+    /**
+     * Результат {@link #neighbourOptimistic}, означающий, что поиск надо повторить под блокировкой
+     */
+    static final Object OPTIMISTIC_RETRY = new Object();
+
+    /**
+     * Соседний элемент для оптимистичного обхода без блокировки (см. {@link StampedSortedSet}) с теми же оговорками,
+     * что у {@link #containsOptimistic}: ceiling / higher от value по возрастанию, floor / lower при descending,
+     * а при value == null — first / last.
+     *
+     * @return элемент, null, если такого нет, или OPTIMISTIC_RETRY; здесь — всегда OPTIMISTIC_RETRY
+     */
+    Object neighbourOptimistic(E value, boolean inclusive, boolean descending) {
+        return OPTIMISTIC_RETRY;
+    }
+
+    /*
+     * Общая часть массовой загрузки из отсортированного входа (fromSorted, addAll)
+     */
+
+    @SuppressWarnings("unchecked")
+    static <E> int compare(Comparator<? super E> comparator, E v1, E v2) {
+        return comparator == null ? ((Comparable<? super E>) v1).compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    /**
+     * Собирает вход fromSorted в массив, проверяя, что он строго возрастает
+     *
+     * @throws IllegalArgumentException если элементы идут не по возрастанию или повторяются
+     */
+    static <E> Object[] toSortedArray(Iterator<? extends E> values, Comparator<? super E> comparator) {
+        List<Object> result = new ArrayList<>();
+        E prev = null;
+        while (values.hasNext()) {
+            E value = values.next();
+            if (value == null) {
+                throw new NullPointerException("value is null");
+            }
+            if (prev != null && compare(comparator, prev, value) >= 0) {
+                throw new IllegalArgumentException("Input is not strictly ascending: " + prev + ", " + value);
+            }
+            result.add(value);
+            prev = value;
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Решает, выгоднее ли addAll пересобрать дерево целиком: слияние и сборка стоят O(n + m),
+     * а m вставок по одной — O(m log(n + m))
+     */
+    static boolean worthRebuilding(int size, int added) {
+        long total = (long) size + added;
+        return added > 1 && (long) added * (64 - Long.numberOfLeadingZeros(total)) >= total;
+    }
+
+    /**
+     * Элементы c по возрастанию без повторов или null, если c не отсортирована.
+     * Проверка — один проход сравнений соседних элементов, он обрывается на первой инверсии.
+     */
+    @SuppressWarnings("unchecked")
+    final Object[] sortedElements(Collection<? extends E> c) {
+        Object[] values = c.toArray();
+        int length = 0;
+        for (Object value : values) {
+            if (value == null) {
+                throw new NullPointerException("value is null");
+            }
+            if (length > 0) {
+                int cmp = compare(comparator(), (E) values[length - 1], (E) value);
+                if (cmp > 0) {
+                    return null;
+                }
+                if (cmp == 0) {
+                    continue;
+                }
+            }
+            values[length++] = value;
+        }
+        return length == values.length ? values : Arrays.copyOf(values, length);
+    }
+
+    /**
+     * Сливает элементы дерева с отсортированным массивом без повторов
+     */
+    @SuppressWarnings("unchecked")
+    final Object[] mergeWith(Object[] sorted) {
+        Object[] result = new Object[size() + sorted.length];
+        int length = 0;
+        int i = 0;
+        for (E value : this) {
+            while (i < sorted.length && compare(comparator(), (E) sorted[i], value) < 0) {
+                result[length++] = sorted[i++];
+            }
+            if (i < sorted.length && compare(comparator(), (E) sorted[i], value) == 0) {
+                i++;
+            }
+            result[length++] = value;
+        }
+        while (i < sorted.length) {
+            result[length++] = sorted[i++];
+        }
+        return length == result.length ? result : Arrays.copyOf(result, length);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(null, true, null, true, false);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return iterator(null, true, null, true, true);
+    }
+
+    @Override
+    public E pollFirst() {
+        if (isEmpty()) {
+            return null;
+        }
+        E value = first();
+        remove(value);
+        return value;
+    }
+
+    @Override
+    public E pollLast() {
+        if (isEmpty()) {
+            return null;
+        }
+        E value = last();
+        remove(value);
+        return value;
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new SubSet<>(this, null, true, null, true, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (fromElement == null || toElement == null) {
+            throw new NullPointerException("bound is null");
+        }
+        SubSet<E> view = new SubSet<>(this, fromElement, fromInclusive, toElement, toInclusive, false);
+        if (view.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return view;
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        if (toElement == null) {
+            throw new NullPointerException("bound is null");
+        }
+        return new SubSet<>(this, null, true, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        if (fromElement == null) {
+            throw new NullPointerException("bound is null");
+        }
+        return new SubSet<>(this, fromElement, inclusive, null, true, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Живое представление элементов дерева в диапазоне [lo, hi] (границы могут быть строгими).
+     * Границы хранятся в порядке дерева, а descending только разворачивает операции,
+     * поэтому представление поверх представления снова сводится к одному диапазону.
+     * Поиск границ — O(log n), итерация ленивая.
+     */
+    static final class SubSet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+        private final AbstractBalancedSortedSet<E> tree;
+        private final E lo; //null — без нижней границы
+        private final boolean loInclusive;
+        private final E hi; //null — без верхней границы
+        private final boolean hiInclusive;
+        private final boolean descending;
+
+        SubSet(AbstractBalancedSortedSet<E> tree, E lo, boolean loInclusive, E hi, boolean hiInclusive,
+               boolean descending) {
+            this.tree = tree;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        @SuppressWarnings("unchecked")
+        int compare(E v1, E v2) {
+            Comparator<? super E> comparator = tree.comparator();
+            return comparator == null ? ((Comparable<? super E>) v1).compareTo(v2) : comparator.compare(v1, v2);
+        }
+
+        private boolean tooLow(E value) {
+            if (lo == null) {
+                return false;
+            }
+            int cmp = compare(value, lo);
+            return cmp < 0 || cmp == 0 && !loInclusive;
+        }
+
+        private boolean tooHigh(E value) {
+            if (hi == null) {
+                return false;
+            }
+            int cmp = compare(value, hi);
+            return cmp > 0 || cmp == 0 && !hiInclusive;
+        }
+
+        private boolean inRange(E value) {
+            return !tooLow(value) && !tooHigh(value);
+        }
+
+        /**
+         * Проверка новой границы: включающая граница должна лежать в диапазоне,
+         * а строгая может совпадать с текущей границей
+         */
+        private boolean inRange(E value, boolean inclusive) {
+            if (inclusive) {
+                return inRange(value);
+            }
+            return (lo == null || compare(value, lo) >= 0) && (hi == null || compare(value, hi) <= 0);
+        }
+
+        /*
+         * Операции в порядке дерева; null — такого элемента в диапазоне нет
+         */
+
+        private E absLowest() {
+            E value = lo == null ? (tree.isEmpty() ? null : tree.first())
+                    : loInclusive ? tree.ceiling(lo) : tree.higher(lo);
+            return value == null || tooHigh(value) ? null : value;
+        }
+
+        private E absHighest() {
+            E value = hi == null ? (tree.isEmpty() ? null : tree.last())
+                    : hiInclusive ? tree.floor(hi) : tree.lower(hi);
+            return value == null || tooLow(value) ? null : value;
+        }
+
+        private E absCeiling(E value, boolean inclusive) {
+            if (tooLow(value)) {
+                return absLowest();
+            }
+            E result = inclusive ? tree.ceiling(value) : tree.higher(value);
+            return result == null || tooHigh(result) ? null : result;
+        }
+
+        private E absFloor(E value, boolean inclusive) {
+            if (tooHigh(value)) {
+                return absHighest();
+            }
+            E result = inclusive ? tree.floor(value) : tree.lower(value);
+            return result == null || tooLow(result) ? null : result;
+        }
+
+        @Override
+        public E lower(E value) {
+            return descending ? absCeiling(value, false) : absFloor(value, false);
+        }
+
+        @Override
+        public E floor(E value) {
+            return descending ? absCeiling(value, true) : absFloor(value, true);
+        }
+
+        @Override
+        public E ceiling(E value) {
+            return descending ? absFloor(value, true) : absCeiling(value, true);
+        }
+
+        @Override
+        public E higher(E value) {
+            return descending ? absFloor(value, false) : absCeiling(value, false);
+        }
+
+        @Override
+        public E first() {
+            E value = descending ? absHighest() : absLowest();
+            if (value == null) {
+                throw new NoSuchElementException("first");
+            }
+            return value;
+        }
+
+        @Override
+        public E last() {
+            E value = descending ? absLowest() : absHighest();
+            if (value == null) {
+                throw new NoSuchElementException("last");
+            }
+            return value;
+        }
+
+        @Override
+        public E pollFirst() {
+            E value = descending ? absHighest() : absLowest();
+            if (value != null) {
+                tree.remove(value);
+            }
+            return value;
+        }
+
+        @Override
+        public E pollLast() {
+            E value = descending ? absLowest() : absHighest();
+            if (value != null) {
+                tree.remove(value);
+            }
+            return value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object object) {
+            return inRange((E) object) && tree.contains(object);
+        }
+
+        @Override
+        public boolean add(E value) {
+            if (!inRange(value)) {
+                throw new IllegalArgumentException("value out of range");
+            }
+            return tree.add(value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object object) {
+            return inRange((E) object) && tree.remove(object);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return absLowest() == null;
+        }
+
+        @Override
+        public int size() {
+            return tree.rangeSize(lo, loInclusive, hi, hiInclusive);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return descending ? tree.iterator(hi, hiInclusive, lo, loInclusive, true)
+                    : tree.iterator(lo, loInclusive, hi, hiInclusive, false);
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return descending ? tree.iterator(lo, loInclusive, hi, hiInclusive, false)
+                    : tree.iterator(hi, hiInclusive, lo, loInclusive, true);
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new SubSet<>(tree, lo, loInclusive, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return descending ? Collections.reverseOrder(tree.comparator()) : tree.comparator();
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            if (fromElement == null || toElement == null) {
+                throw new NullPointerException("bound is null");
+            }
+            return descending ? absSubSet(toElement, toInclusive, true, fromElement, fromInclusive, true)
+                    : absSubSet(fromElement, fromInclusive, true, toElement, toInclusive, true);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            if (toElement == null) {
+                throw new NullPointerException("bound is null");
+            }
+            return descending ? absSubSet(toElement, inclusive, true, null, true, false)
+                    : absSubSet(null, true, false, toElement, inclusive, true);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            if (fromElement == null) {
+                throw new NullPointerException("bound is null");
+            }
+            return descending ? absSubSet(null, true, false, fromElement, inclusive, true)
+                    : absSubSet(fromElement, inclusive, true, null, true, false);
+        }
+
+        /**
+         * Сужает диапазон; новые границы в порядке дерева должны лежать внутри текущего
+         */
+        private NavigableSet<E> absSubSet(E newLo, boolean newLoInclusive, boolean hasLo,
+                                          E newHi, boolean newHiInclusive, boolean hasHi) {
+            if (hasLo && !inRange(newLo, newLoInclusive) || hasHi && !inRange(newHi, newHiInclusive)) {
+                throw new IllegalArgumentException("bound out of range");
+            }
+            if (hasLo && hasHi && compare(newLo, newHi) > 0) {
+                throw new IllegalArgumentException("fromElement > toElement");
+            }
+            return new SubSet<>(tree,
+                    hasLo ? newLo : lo, hasLo ? newLoInclusive : loInclusive,
+                    hasHi ? newHi : hi, hasHi ? newHiInclusive : hiInclusive, descending);
+        }
+
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
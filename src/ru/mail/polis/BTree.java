@@ -0,0 +1,690 @@
+package ru.mail.polis;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * B+-дерево: элементы лежат отсортированными массивами в листьях, листья связаны в двусвязный список,
+ * а внутренние страницы хранят только разделители и ссылки на детей.
+ * <p>
+ * В странице до fanout - 1 ключей (у внутренней — до fanout детей), у всех страниц, кроме корня,
+ * не меньше половины от этого; все листья на одной глубине, поэтому высота — O(log_{fanout / 2} n).
+ * По сравнению с АВЛ- и красно-чёрным деревом на один элемент приходится не объект-узел с заголовком
+ * и тремя-четырьмя ссылками, а одна ячейка массива, а поиск внутри страницы — двоичный по массиву
+ * рядом лежащих ссылок, так что промахов кэша на спуске столько же, сколько страниц на пути.
+ * <p>
+ * Разделитель keys[i] внутренней страницы — нижняя граница поддерева children[i + 1]:
+ * все элементы children[i] меньше него, а все элементы children[i + 1] — не меньше.
+ * После удалений разделитель может не совпадать ни с одним элементом, но остаётся верной границей.
+ */
+public class BTree<E extends Comparable<E>> extends AbstractBalancedSortedSet<E> {
+
+    private static final int DEFAULT_FANOUT = 64;
+
+    private final Comparator<E> comparator;
+    private final int maxKeys;
+    private final int minKeys;
+    private Page root;
+    private int size;
+    private int height = 1; //Число уровней, листья — уровень 1
+    private int modCount; //Число структурных изменений, для fail-fast итераторов
+
+    /*
+     * Результат разделения переполненной страницы при вставке: новая правая страница и её разделитель
+     */
+    private Page splitPage;
+    private Object splitKey;
+
+    public BTree() {
+        this(DEFAULT_FANOUT, null);
+    }
+
+    public BTree(Comparator<E> comparator) {
+        this(DEFAULT_FANOUT, comparator);
+    }
+
+    public BTree(int fanout) {
+        this(fanout, null);
+    }
+
+    /**
+     * @param fanout наибольшее число детей внутренней страницы (и ключей листа плюс один), не меньше 3
+     */
+    public BTree(int fanout, Comparator<E> comparator) {
+        if (fanout < 3) {
+            throw new IllegalArgumentException("fanout = " + fanout);
+        }
+        this.comparator = comparator;
+        this.maxKeys = fanout - 1;
+        this.minKeys = maxKeys / 2;
+        this.root = new Leaf(maxKeys);
+    }
+
+    /**
+     * Страница. Массив keys на один элемент длиннее maxKeys, чтобы вставка могла его переполнить
+     * перед разделением
+     */
+    private abstract static class Page {
+        final Object[] keys;
+        int size;
+
+        Page(int maxKeys) {
+            this.keys = new Object[maxKeys + 1];
+        }
+    }
+
+    private static final class Leaf extends Page {
+        Leaf prev;
+        Leaf next;
+
+        Leaf(int maxKeys) {
+            super(maxKeys);
+        }
+    }
+
+    private static final class Inner extends Page {
+        final Page[] children;
+
+        Inner(int maxKeys) {
+            super(maxKeys);
+            this.children = new Page[maxKeys + 2];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object v1, Object v2) {
+        return comparator == null ? ((E) v1).compareTo((E) v2) : comparator.compare((E) v1, (E) v2);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Двоичный поиск среди ключей страницы
+     *
+     * @return индекс ключа, равного value, или -(точка вставки) - 1, как Arrays.binarySearch
+     */
+    private int search(Page page, Object value) {
+        int lo = 0;
+        int hi = page.size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(page.keys[mid], value);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Номер ребёнка внутренней страницы, в поддереве которого должен лежать value
+     */
+    private int childIndex(Inner page, Object value) {
+        int pos = search(page, value);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    private Leaf findLeaf(Object value) {
+        Page page = root;
+        while (page instanceof Inner) {
+            Inner inner = (Inner) page;
+            page = inner.children[childIndex(inner, value)];
+        }
+        return (Leaf) page;
+    }
+
+    /**
+     * Ищет элемент с таким же значением в дереве.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в дереве
+     */
+    @Override
+    public boolean contains(Object object) {
+        if (object == null) {
+            throw new NullPointerException("value is null");
+        }
+        return search(findLeaf(object), object) >= 0;
+    }
+
+    /**
+     * Вставляет элемент в дерево.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в дереве отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (!insert(root, value)) {
+            return false;
+        }
+        if (splitPage != null) {
+            //Корень разделился: дерево растёт вверх на один уровень
+            Inner newRoot = new Inner(maxKeys);
+            newRoot.keys[0] = splitKey;
+            newRoot.children[0] = root;
+            newRoot.children[1] = splitPage;
+            newRoot.size = 1;
+            root = newRoot;
+            height++;
+            splitPage = null;
+            splitKey = null;
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Вставка в поддерево page. Если page переполнилась, она делится пополам,
+     * а правая половина и её разделитель возвращаются через splitPage / splitKey
+     *
+     * @return true, если элемент в дереве отсутствовал
+     */
+    private boolean insert(Page page, E value) {
+        if (page instanceof Leaf) {
+            int pos = search(page, value);
+            if (pos >= 0) {
+                return false;
+            }
+            insertAt(page, -pos - 1, value);
+            if (page.size > maxKeys) {
+                splitLeaf((Leaf) page);
+            }
+            return true;
+        }
+        Inner inner = (Inner) page;
+        int idx = childIndex(inner, value);
+        if (!insert(inner.children[idx], value)) {
+            return false;
+        }
+        if (splitPage != null) {
+            Page right = splitPage;
+            Object key = splitKey;
+            splitPage = null;
+            splitKey = null;
+            insertAt(inner, idx, key);
+            System.arraycopy(inner.children, idx + 1, inner.children, idx + 2, inner.size - idx - 1);
+            inner.children[idx + 1] = right;
+            if (inner.size > maxKeys) {
+                splitInner(inner);
+            }
+        }
+        return true;
+    }
+
+    private static void insertAt(Page page, int pos, Object key) {
+        System.arraycopy(page.keys, pos, page.keys, pos + 1, page.size - pos);
+        page.keys[pos] = key;
+        page.size++;
+    }
+
+    private void splitLeaf(Leaf leaf) {
+        Leaf right = new Leaf(maxKeys);
+        int half = leaf.size / 2;
+        right.size = leaf.size - half;
+        System.arraycopy(leaf.keys, half, right.keys, 0, right.size);
+        Arrays.fill(leaf.keys, half, leaf.size, null);
+        leaf.size = half;
+        right.next = leaf.next;
+        right.prev = leaf;
+        if (leaf.next != null) {
+            leaf.next.prev = right;
+        }
+        leaf.next = right;
+        splitPage = right;
+        splitKey = right.keys[0];
+    }
+
+    /**
+     * Средний ключ уходит в родителя, левая половина ключей и детей остаётся, правая переезжает
+     */
+    private void splitInner(Inner inner) {
+        Inner right = new Inner(maxKeys);
+        int mid = inner.size / 2;
+        splitKey = inner.keys[mid];
+        right.size = inner.size - mid - 1;
+        System.arraycopy(inner.keys, mid + 1, right.keys, 0, right.size);
+        System.arraycopy(inner.children, mid + 1, right.children, 0, right.size + 1);
+        Arrays.fill(inner.keys, mid, inner.size, null);
+        Arrays.fill(inner.children, mid + 1, inner.size + 1, null);
+        inner.size = mid;
+        splitPage = right;
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из дерева.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо удалить
+     * @return true, если элемент содержался в дереве
+     */
+    @Override
+    public boolean remove(Object object) {
+        if (object == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (!delete(root, object)) {
+            return false;
+        }
+        if (root instanceof Inner && root.size == 0) {
+            //У корня остался один ребёнок: дерево становится ниже на один уровень
+            root = ((Inner) root).children[0];
+            height--;
+        }
+        size--;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Удаление из поддерева page. Если ребёнок стал меньше половины, он занимает ключ у соседа
+     * или сливается с ним; тогда уже page может стать меньше половины, и это чинит её родитель
+     */
+    private boolean delete(Page page, Object value) {
+        if (page instanceof Leaf) {
+            int pos = search(page, value);
+            if (pos < 0) {
+                return false;
+            }
+            removeAt(page, pos);
+            return true;
+        }
+        Inner inner = (Inner) page;
+        int idx = childIndex(inner, value);
+        if (!delete(inner.children[idx], value)) {
+            return false;
+        }
+        if (inner.children[idx].size < minKeys) {
+            fixUnderflow(inner, idx);
+        }
+        return true;
+    }
+
+    private static void removeAt(Page page, int pos) {
+        System.arraycopy(page.keys, pos + 1, page.keys, pos, page.size - pos - 1);
+        page.keys[--page.size] = null;
+    }
+
+    private void fixUnderflow(Inner parent, int idx) {
+        Page child = parent.children[idx];
+        Page left = idx > 0 ? parent.children[idx - 1] : null;
+        Page right = idx < parent.size ? parent.children[idx + 1] : null;
+        if (left != null && left.size > minKeys) {
+            borrowFromLeft(parent, idx, left, child);
+        } else if (right != null && right.size > minKeys) {
+            borrowFromRight(parent, idx, child, right);
+        } else if (left != null) {
+            merge(parent, idx - 1, left, child);
+        } else {
+            merge(parent, idx, child, right);
+        }
+    }
+
+    private void borrowFromLeft(Inner parent, int idx, Page left, Page child) {
+        if (child instanceof Leaf) {
+            insertAt(child, 0, left.keys[left.size - 1]);
+            removeAt(left, left.size - 1);
+            parent.keys[idx - 1] = child.keys[0];
+        } else {
+            Inner innerChild = (Inner) child;
+            Inner innerLeft = (Inner) left;
+            System.arraycopy(innerChild.children, 0, innerChild.children, 1, innerChild.size + 1);
+            innerChild.children[0] = innerLeft.children[innerLeft.size];
+            innerLeft.children[innerLeft.size] = null;
+            insertAt(innerChild, 0, parent.keys[idx - 1]);
+            parent.keys[idx - 1] = innerLeft.keys[innerLeft.size - 1];
+            removeAt(innerLeft, innerLeft.size - 1);
+        }
+    }
+
+    private void borrowFromRight(Inner parent, int idx, Page child, Page right) {
+        if (child instanceof Leaf) {
+            child.keys[child.size++] = right.keys[0];
+            removeAt(right, 0);
+            parent.keys[idx] = right.keys[0];
+        } else {
+            Inner innerChild = (Inner) child;
+            Inner innerRight = (Inner) right;
+            innerChild.keys[innerChild.size++] = parent.keys[idx];
+            innerChild.children[innerChild.size] = innerRight.children[0];
+            parent.keys[idx] = innerRight.keys[0];
+            System.arraycopy(innerRight.children, 1, innerRight.children, 0, innerRight.size);
+            innerRight.children[innerRight.size] = null;
+            removeAt(innerRight, 0);
+        }
+    }
+
+    /**
+     * Сливает детей idx и idx + 1 в левого и убирает разделитель keys[idx] из родителя
+     */
+    private void merge(Inner parent, int idx, Page left, Page right) {
+        if (left instanceof Leaf) {
+            Leaf leftLeaf = (Leaf) left;
+            Leaf rightLeaf = (Leaf) right;
+            System.arraycopy(rightLeaf.keys, 0, leftLeaf.keys, leftLeaf.size, rightLeaf.size);
+            leftLeaf.size += rightLeaf.size;
+            leftLeaf.next = rightLeaf.next;
+            if (rightLeaf.next != null) {
+                rightLeaf.next.prev = leftLeaf;
+            }
+        } else {
+            Inner leftInner = (Inner) left;
+            Inner rightInner = (Inner) right;
+            leftInner.keys[leftInner.size] = parent.keys[idx];
+            System.arraycopy(rightInner.keys, 0, leftInner.keys, leftInner.size + 1, rightInner.size);
+            System.arraycopy(rightInner.children, 0, leftInner.children, leftInner.size + 1, rightInner.size + 1);
+            leftInner.size += rightInner.size + 1;
+        }
+        removeAt(parent, idx);
+        System.arraycopy(parent.children, idx + 2, parent.children, idx + 1, parent.size - idx);
+        parent.children[parent.size + 1] = null;
+    }
+
+    @Override
+    public void clear() {
+        root = new Leaf(maxKeys);
+        size = 0;
+        height = 1;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Позиция элемента: лист и индекс в нём. Возвращается из seekCeiling / seekFloor,
+     * а не хранится в полях дерева, чтобы навигация не писала в общее состояние
+     */
+    private static final class Position {
+        final Leaf leaf;
+        final int index;
+
+        Position(Leaf leaf, int index) {
+            this.leaf = leaf;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Ищет первый элемент, не меньший value (больший, если не inclusive); value == null — первый.
+     *
+     * @return позиция элемента или null, если такого элемента нет
+     */
+    private Position seekCeiling(Object value, boolean inclusive) {
+        Leaf leaf;
+        int pos;
+        if (value == null) {
+            leaf = leftmostLeaf();
+            pos = 0;
+        } else {
+            leaf = findLeaf(value);
+            pos = search(leaf, value);
+            pos = pos >= 0 ? (inclusive ? pos : pos + 1) : -pos - 1;
+        }
+        while (leaf != null && pos >= leaf.size) {
+            leaf = leaf.next;
+            pos = 0;
+        }
+        return leaf != null ? new Position(leaf, pos) : null;
+    }
+
+    /**
+     * Ищет последний элемент, не больший value (меньший, если не inclusive); value == null — последний.
+     *
+     * @return позиция элемента или null, если такого элемента нет
+     */
+    private Position seekFloor(Object value, boolean inclusive) {
+        Leaf leaf;
+        int pos;
+        if (value == null) {
+            leaf = rightmostLeaf();
+            pos = leaf.size - 1;
+        } else {
+            leaf = findLeaf(value);
+            pos = search(leaf, value);
+            pos = pos >= 0 ? (inclusive ? pos : pos - 1) : -pos - 2;
+        }
+        while (leaf != null && pos < 0) {
+            leaf = leaf.prev;
+            pos = leaf != null ? leaf.size - 1 : -1;
+        }
+        return leaf != null ? new Position(leaf, pos) : null;
+    }
+
+    private Leaf leftmostLeaf() {
+        Page page = root;
+        while (page instanceof Inner) {
+            page = ((Inner) page).children[0];
+        }
+        return (Leaf) page;
+    }
+
+    private Leaf rightmostLeaf() {
+        Page page = root;
+        while (page instanceof Inner) {
+            page = ((Inner) page).children[page.size];
+        }
+        return (Leaf) page;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E valueAt(Position position) {
+        return position != null ? (E) position.leaf.keys[position.index] : null;
+    }
+
+    private static void checkNotNull(Object value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+    }
+
+    @Override
+    public E lower(E value) {
+        checkNotNull(value);
+        return valueAt(seekFloor(value, false));
+    }
+
+    @Override
+    public E floor(E value) {
+        checkNotNull(value);
+        return valueAt(seekFloor(value, true));
+    }
+
+    @Override
+    public E ceiling(E value) {
+        checkNotNull(value);
+        return valueAt(seekCeiling(value, true));
+    }
+
+    @Override
+    public E higher(E value) {
+        checkNotNull(value);
+        return valueAt(seekCeiling(value, false));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("first");
+        }
+        return (E) leftmostLeaf().keys[0];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("last");
+        }
+        Leaf leaf = rightmostLeaf();
+        return (E) leaf.keys[leaf.size - 1];
+    }
+
+    @Override
+    public String toString() {
+        return "BTree{" +
+                "fanout=" + (maxKeys + 1) +
+                ", height=" + height +
+                ", size=" + size +
+                '}';
+    }
+
+    @Override
+    Iterator<E> iterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+        return new LeafIterator(from, fromInclusive, to, toInclusive, descending);
+    }
+
+    /**
+     * Итератор по списку листьев. remove() может слить или перераспределить листья,
+     * поэтому после него позиция ищется заново спуском от корня
+     */
+    private class LeafIterator implements Iterator<E> {
+
+        private Leaf leaf; //null — обход закончен
+        private int index;
+        private final E to;
+        private final boolean toInclusive;
+        private final boolean descending;
+        private E lastReturned;
+        private int expectedModCount = modCount;
+
+        LeafIterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+            seek(from, fromInclusive);
+        }
+
+        private void seek(E from, boolean inclusive) {
+            Position position = descending ? seekFloor(from, inclusive) : seekCeiling(from, inclusive);
+            leaf = position != null ? position.leaf : null;
+            index = position != null ? position.index : 0;
+            checkBound();
+        }
+
+        private void checkBound() {
+            if (leaf != null && to != null) {
+                int cmp = compare(leaf.keys[index], to);
+                if ((descending ? cmp < 0 : cmp > 0) || cmp == 0 && !toInclusive) {
+                    leaf = null;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (leaf == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = (E) leaf.keys[index];
+            if (descending) {
+                if (--index < 0) {
+                    leaf = leaf.prev;
+                    index = leaf != null ? leaf.size - 1 : 0;
+                }
+            } else if (++index == leaf.size) {
+                leaf = leaf.next;
+                index = 0;
+            }
+            checkBound();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            BTree.this.remove(lastReturned);
+            expectedModCount = modCount;
+            seek(lastReturned, false);
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Проверяет, что все листья на одной глубине, заполненность страниц между minKeys и maxKeys (кроме корня),
+     * порядок ключей, границы разделителей и согласованность списка листьев
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        Leaf[] prevLeaf = new Leaf[1];
+        int count = checkPage(root, 1, null, null, prevLeaf);
+        if (prevLeaf[0] != null && prevLeaf[0].next != null) {
+            throw new NotBalancedTreeException("Last leaf has a next link");
+        }
+        if (count != size) {
+            throw new NotBalancedTreeException("size = " + size + ", but leaves hold " + count + " elements");
+        }
+    }
+
+    /**
+     * @return число элементов в поддереве
+     */
+    private int checkPage(Page page, int depth, Object lo, Object hi, Leaf[] prevLeaf) throws NotBalancedTreeException {
+        if (page != root && (page.size < minKeys || page.size > maxKeys)) {
+            throw new NotBalancedTreeException("Page holds " + page.size + " keys, allowed " + minKeys + ".." + maxKeys
+                    + " (depth " + depth + ")");
+        }
+        for (int i = 0; i < page.size; i++) {
+            Object key = page.keys[i];
+            if (i > 0 && compare(page.keys[i - 1], key) >= 0) {
+                throw new NotBalancedTreeException("Keys are not ascending at depth " + depth + ": " + page.keys[i - 1] + ", " + key);
+            }
+            if (lo != null && compare(key, lo) < 0 || hi != null && compare(key, hi) >= 0) {
+                throw new NotBalancedTreeException("Key " + key + " is out of separator bounds [" + lo + ", " + hi + ")");
+            }
+        }
+        if (page instanceof Leaf) {
+            if (depth != height) {
+                throw NotBalancedTreeException.create("All leaves must be at the same depth", depth, height, page.toString());
+            }
+            Leaf leaf = (Leaf) page;
+            if (leaf.prev != prevLeaf[0] || prevLeaf[0] != null && prevLeaf[0].next != leaf) {
+                throw new NotBalancedTreeException("Leaf list is broken at depth " + depth);
+            }
+            prevLeaf[0] = leaf;
+            return leaf.size;
+        }
+        Inner inner = (Inner) page;
+        int count = 0;
+        for (int i = 0; i <= inner.size; i++) {
+            Object childLo = i == 0 ? lo : inner.keys[i - 1];
+            Object childHi = i == inner.size ? hi : inner.keys[i];
+            count += checkPage(inner.children[i], depth + 1, childLo, childHi, prevLeaf);
+        }
+        return count;
+    }
+
+}
@@ -1,8 +1,8 @@
 package ru.mail.polis;
 
-import java.util.SortedSet;
+import java.util.NavigableSet;
 
-public interface BalancedSortedSet<E> extends SortedSet<E>  {
+public interface BalancedSortedSet<E> extends NavigableSet<E>  {
 
     /**
      * Обходит дерево и проверяет сбалансированность
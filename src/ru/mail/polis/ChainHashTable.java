@@ -1,19 +1,46 @@
 package ru.mail.polis;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Хеш-таблица с цепочками.
+ * Если цепочка становится длиннее treeifyThreshold, а элементы ячейки — одного класса, сравнимого с собой,
+ * ячейка превращается в АВЛ-дерево, упорядоченное по хешу и затем по compareTo,
+ * так что даже при плохих или подобранных злоумышленником хешах поиск остаётся O(log n).
+ * Совпадение элементов всё равно решает equals: элементы с одинаковым хешем и compareTo == 0,
+ * но не равные по equals, лежат цепочкой за одним узлом дерева и перебираются, как в обычной цепочке.
+ * Когда в дереве остаётся не больше половины порога, ячейка снова становится цепочкой.
+ */
 public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
 
     private final int INITIAL_CAPACITY = 8;
+    private static final int DEFAULT_TREEIFY_THRESHOLD = 8;
+    private static final int MIN_TREEIFY_CAPACITY = 64; //В маленькой таблице длинные цепочки лечит перехеширование
 //    private final float LOAD_FACTOR = 0.5f;
-    private Object[] table;
+    private final int treeifyThreshold;
+    private final int untreeifyThreshold;
+    private Object[] table; //Node или TreeBin
     private int size;
 
     public ChainHashTable() {
+        this(DEFAULT_TREEIFY_THRESHOLD);
+    }
+
+    /**
+     * @param treeifyThreshold длина цепочки, после превышения которой ячейка превращается в дерево
+     */
+    public ChainHashTable(int treeifyThreshold) {
+        if (treeifyThreshold < 2) {
+            throw new IllegalArgumentException("treeifyThreshold = " + treeifyThreshold);
+        }
+        this.treeifyThreshold = treeifyThreshold;
+        this.untreeifyThreshold = treeifyThreshold / 2;
         this.table = new Object[INITIAL_CAPACITY];
     }
 
@@ -26,18 +53,42 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
      */
     @Override
     public boolean add(E value) {
-        int idx = hash(value);
-        if (table[idx] == null) {
-            table[idx] = new Node<>(value);
+        int h = Hashing.spread(value.hashCode());
+        int idx = indexFor(h, table.length);
+        Object bin = table[idx];
+        if (bin instanceof TreeBin) {
+            TreeBin<E> treeBin = getTreeBin(idx);
+            if (treeBin.accepts(value)) {
+                if (!treeBin.add(new Node<>(value, h))) {
+                    return false;
+                }
+                size++;
+                resize();
+                return true;
+            }
+            if (treeBin.find(value, h) != null) {
+                return false;
+            }
+            //Элемент другого класса нельзя сравнить с остальными, ячейка снова становится цепочкой
+            table[idx] = untreeify(treeBin);
+            bin = table[idx];
+        }
+        if (bin == null) {
+            table[idx] = new Node<>(value, h);
         } else {
-            Node curr = getNode(idx);
-            while (curr.next != null && !value.equals(curr.value)) {
+            Node<E> curr = getNode(idx);
+            int length = 1;
+            while (curr.next != null && !curr.matches(value, h)) {
                 curr = curr.next;
+                length++;
             }
-            if (value.equals(curr.value)) {
+            if (curr.matches(value, h)) {
                 return false;
             }
-            curr.next = new Node<>(value);
+            curr.next = new Node<>(value, h);
+            if (length >= treeifyThreshold && table.length >= MIN_TREEIFY_CAPACITY) {
+                table[idx] = treeify(getNode(idx));
+            }
         }
         size++;
         resize();
@@ -56,10 +107,22 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
         @SuppressWarnings("unchecked")
         E value = (E) object;
 
-        Node prev = null;
-        int idx = hash(value);
-        Node curr = getNode(idx);
-        while (curr != null && !value.equals(curr.value)) {
+        int h = Hashing.spread(value.hashCode());
+        int idx = indexFor(h, table.length);
+        if (table[idx] instanceof TreeBin) {
+            TreeBin<E> treeBin = getTreeBin(idx);
+            if (!treeBin.remove(value, h)) {
+                return false;
+            }
+            if (treeBin.size <= untreeifyThreshold) {
+                table[idx] = untreeify(treeBin);
+            }
+            size--;
+            return true;
+        }
+        Node<E> prev = null;
+        Node<E> curr = getNode(idx);
+        while (curr != null && !curr.matches(value, h)) {
             prev = curr;
             curr = curr.next;
         }
@@ -89,16 +152,77 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
         @SuppressWarnings("unchecked")
         E value = (E) object;
 
-        Node curr = getNode(hash(value));
-        while (curr != null && !value.equals(curr.value)) {
+        int h = Hashing.spread(value.hashCode());
+        int idx = indexFor(h, table.length);
+        if (table[idx] instanceof TreeBin) {
+            return getTreeBin(idx).find(value, h) != null;
+        }
+        Node<E> curr = getNode(idx);
+        while (curr != null && !curr.matches(value, h)) {
             curr = curr.next;
         }
         //Вышли по второму условию
         return curr != null;
     }
 
-    private int hash(E value) {
-        return Math.abs(value.hashCode()) % table.length;
+    /**
+     * Строит дерево из цепочки, если все её элементы одного класса C, сравнимого с собой (Comparable&lt;C&gt;),
+     * иначе возвращает цепочку как есть
+     */
+    private Object treeify(Node<E> head) {
+        Class<?> type = comparableClassFor(head.value);
+        if (type == null) {
+            return head;
+        }
+        for (Node<E> curr = head; curr != null; curr = curr.next) {
+            if (curr.value.getClass() != type) {
+                return head;
+            }
+        }
+        TreeBin<E> treeBin = new TreeBin<>(type);
+        Node<E> curr = head;
+        while (curr != null) {
+            Node<E> next = curr.next;
+            curr.next = null;
+            treeBin.add(curr);
+            curr = next;
+        }
+        return treeBin;
+    }
+
+    /**
+     * Класс value, если он реализует Comparable&lt;класс value&gt; напрямую, иначе null — как HashMap.comparableClassFor.
+     * Одной проверки Comparable мало: класс с Comparable&lt;другой класс&gt; бросил бы ClassCastException в compareTo узлов
+     */
+    private static Class<?> comparableClassFor(Object value) {
+        if (!(value instanceof Comparable)) {
+            return null;
+        }
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            return type;
+        }
+        for (Type implemented : type.getGenericInterfaces()) {
+            if (implemented instanceof ParameterizedType) {
+                ParameterizedType parameterized = (ParameterizedType) implemented;
+                Type[] arguments = parameterized.getActualTypeArguments();
+                if (parameterized.getRawType() == Comparable.class && arguments.length == 1 && arguments[0] == type) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Node<E> untreeify(TreeBin<E> treeBin) {
+        return treeBin.toChain();
+    }
+
+    /**
+     * Размер таблицы — степень двойки, поэтому индекс — это младшие биты хеша (без деления и без отрицательных индексов)
+     */
+    private static int indexFor(int h, int length) {
+        return h & (length - 1);
     }
 
     @SuppressWarnings("unchecked")
@@ -106,29 +230,86 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
         return (Node<E>) table[idx];
     }
 
+    @SuppressWarnings("unchecked")
+    private TreeBin<E> getTreeBin(int idx) {
+        return (TreeBin<E>) table[idx];
+    }
+
+    /**
+     * Удваивает таблицу, перевешивая существующие узлы за один проход.
+     * При удвоении степени двойки цепочка из ячейки i расходится только в ячейки i и i + oldLength,
+     * поэтому каждая цепочка делится на две (lo и hi) с сохранением порядка,
+     * по биту oldLength хеша, без повторного вычисления hashCode, сравнений equals и новых узлов.
+     * Узлы дерева собираются в цепочку по порядку и так же делятся на две; длинные половины снова становятся деревьями.
+     */
     @SuppressWarnings("unchecked")
     private void resize() {
         if (size * 2 < table.length) {
             return;
         }
         Object[] old = this.table;
-        size = 0;
-        table = new Object[table.length << 1];
-        for (int i = 0; i < old.length; i++) {
-            Node<E> node = (Node<E>) old[i];
-            if (node != null) {
-                Node<E> curr = node;
-                while (curr != null) {
-                    Node next = curr.next;
-                    //FIXME: insert value in head (all unique)
-                    add(curr.value);
-                    curr.next = null;
-                    curr.value = null;
-                    curr = next;
+        int oldLength = old.length;
+        int newLength = oldLength << 1;
+        Object[] newTable = new Object[newLength];
+        for (int i = 0; i < oldLength; i++) {
+            if (old[i] == null) {
+                continue;
+            }
+            TreeBin<E> treeBin = null;
+            Node<E> curr;
+            if (old[i] instanceof TreeBin) {
+                treeBin = (TreeBin<E>) old[i];
+                curr = treeBin.toChain();
+            } else {
+                curr = (Node<E>) old[i];
+            }
+            Node<E> loHead = null;
+            Node<E> loTail = null;
+            Node<E> hiHead = null;
+            Node<E> hiTail = null;
+            while (curr != null) {
+                if ((curr.hash & oldLength) == 0) {
+                    if (loTail == null) {
+                        loHead = curr;
+                    } else {
+                        loTail.next = curr;
+                    }
+                    loTail = curr;
+                } else {
+                    if (hiTail == null) {
+                        hiHead = curr;
+                    } else {
+                        hiTail.next = curr;
+                    }
+                    hiTail = curr;
                 }
-                old[i] = null;
+                curr = curr.next;
             }
+            if (loTail != null) {
+                loTail.next = null;
+                newTable[i] = split(loHead, treeBin);
+            }
+            if (hiTail != null) {
+                hiTail.next = null;
+                newTable[i + oldLength] = split(hiHead, treeBin);
+            }
+            old[i] = null;
         }
+        this.table = newTable;
+    }
+
+    /**
+     * Половина дерева после перехеширования: цепочка, если она короткая, иначе снова дерево
+     */
+    private Object split(Node<E> head, TreeBin<E> treeBin) {
+        if (treeBin == null) {
+            return head;
+        }
+        int length = 0;
+        for (Node<E> curr = head; curr != null; curr = curr.next) {
+            length++;
+        }
+        return length <= untreeifyThreshold ? head : treeify(head);
     }
 
     @Override
@@ -141,12 +322,159 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
         throw new UnsupportedOperationException();
     }
 
-    private static class Node<E> {
+    /**
+     * Ячейка-дерево. Все элементы — Comparable класса type, узлы упорядочены по хешу, затем по compareTo.
+     * В дереве по узлу на ключ (хеш, compareTo); элементы с тем же ключом, но не равные по equals,
+     * идут цепочкой next за этим узлом (в дереве next не нужен), как HashMap различает такие элементы через equals
+     */
+    private static class TreeBin<E> {
+        final Class<?> type;
+        final AVLTree<Node<E>> tree = new AVLTree<>();
+        int size; //Элементов вместе с цепочками
+
+        TreeBin(Class<?> type) {
+            this.type = type;
+        }
+
+        boolean accepts(E value) {
+            return value.getClass() == type;
+        }
+
+        /**
+         * Узел дерева с тем же ключом или null
+         */
+        private Node<E> head(Node<E> probe) {
+            Node<E> node = tree.ceiling(probe);
+            return node != null && node.compareTo(probe) == 0 ? node : null;
+        }
+
+        /**
+         * @return false, если равный по equals элемент уже есть
+         */
+        boolean add(Node<E> node) {
+            Node<E> curr = head(node);
+            if (curr == null) {
+                tree.add(node);
+            } else {
+                while (!curr.matches(node.value, node.hash)) {
+                    if (curr.next == null) {
+                        curr.next = node;
+                        size++;
+                        return true;
+                    }
+                    curr = curr.next;
+                }
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        /**
+         * Поиск за O(log n) плюс цепочка узла; элемент другого класса сравнить с деревом нельзя, его ищем перебором
+         */
+        Node<E> find(E value, int hash) {
+            if (accepts(value)) {
+                return match(head(new Node<>(value, hash)), value, hash);
+            }
+            for (Node<E> head : tree) {
+                Node<E> node = match(head, value, hash);
+                if (node != null) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private Node<E> match(Node<E> head, E value, int hash) {
+            for (Node<E> curr = head; curr != null; curr = curr.next) {
+                if (curr.matches(value, hash)) {
+                    return curr;
+                }
+            }
+            return null;
+        }
+
+        boolean remove(E value, int hash) {
+            if (accepts(value)) {
+                return remove(head(new Node<>(value, hash)), value, hash);
+            }
+            for (Node<E> head : tree) {
+                if (remove(head, value, hash)) {
+                    return true; //Обход дерева дальше не продолжается, так что его изменение не мешает
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Удаляет элемент из цепочки head; если это сам узел дерева, его место в дереве занимает следующий в цепочке
+         */
+        private boolean remove(Node<E> head, E value, int hash) {
+            Node<E> prev = null;
+            for (Node<E> curr = head; curr != null; prev = curr, curr = curr.next) {
+                if (curr.matches(value, hash)) {
+                    if (prev != null) {
+                        prev.next = curr.next;
+                    } else {
+                        tree.remove(curr);
+                        if (curr.next != null) {
+                            tree.add(curr.next);
+                        }
+                    }
+                    curr.next = null;
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Собирает узлы обратно в одну цепочку в порядке дерева
+         */
+        Node<E> toChain() {
+            Node<E> head = null;
+            Node<E> tail = null;
+            for (Node<E> node : tree) {
+                if (tail == null) {
+                    head = node;
+                } else {
+                    tail.next = node;
+                }
+                tail = node;
+                while (tail.next != null) {
+                    tail = tail.next;
+                }
+            }
+            return head;
+        }
+    }
+
+    private static class Node<E> implements Comparable<Node<E>> {
         E value;
+        final int hash; //Hashing.spread(value.hashCode()), чтобы не пересчитывать при сравнении и перестройке
         Node<E> next;
 
-        Node(E value) {
+        Node(E value, int hash) {
             this.value = value;
+            this.hash = hash;
+        }
+
+        boolean matches(E value, int hash) {
+            return this.hash == hash && value.equals(this.value);
+        }
+
+        /**
+         * Порядок в ячейке-дереве: по хешу, затем по compareTo значений одного класса
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compareTo(Node<E> o) {
+            if (hash != o.hash) {
+                return Integer.compare(hash, o.hash);
+            }
+            return ((Comparable<Object>) value).compareTo(o.value);
         }
 
         @Override
@@ -1,8 +1,6 @@
 package ru.mail.polis;
 
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.stream.IntStream;
+import java.util.BitSet;
 
 /**
  * Created by Nechaev Mikhail
@@ -11,13 +9,21 @@ import java.util.stream.IntStream;
 public abstract class CheckedOpenHashTableEntity implements OpenHashTableEntity {
 
     /**
-     * Проверяет корректность хеш-функции
+     * Проверяет корректность хеш-функции.
+     * Занятые ячейки отмечаются в BitSet (tableSize / 8 байт), поэтому проверка подходит и для таблиц в миллионы ячеек
      * @param tableSize размер таблицы
      * @return true, если с помощью хеш-функции можно обойти все ячейки хеш-таблицы за tableSize раз
      */
     public boolean isHashFunctionValid(int tableSize) {
-        SortedSet<Integer> idx = new TreeSet<>();
-        IntStream.range(0, tableSize).forEach((probId) -> idx.add(hashCode(tableSize, probId)));
-        return idx.first() == 0 && idx.last() == tableSize - 1 && idx.size() == tableSize;
+        BitSet idx = new BitSet(tableSize);
+        for (int probId = 0; probId < tableSize; probId++) {
+            int i = hashCode(tableSize, probId);
+            //tableSize различных индексов из [0, tableSize) — это все ячейки
+            if (i < 0 || i >= tableSize || idx.get(i)) {
+                return false;
+            }
+            idx.set(i);
+        }
+        return true;
     }
 }
@@ -0,0 +1,640 @@
+package ru.mail.polis;
+
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Красно-чёрное дерево с компактными узлами: цвет — boolean в самом узле, а не ссылка на enum,
+ * листья — один общий на все деревья неизменяемый узел NIL, а пустое дерево — root == NIL без узла-заглушки.
+ * <p>
+ * NIL никогда не пишется: удаление передаёт балансировке родителя явно, а не через NIL.parent,
+ * поэтому общий узел безопасен и для деревьев в разных потоках.
+ * Как и RedBlackTree, при удалении узла с двумя детьми переставляется сам следующий узел,
+ * поэтому итератор по ссылкам на родителя продолжает обход после remove().
+ * <p>
+ * Выигрыш зависит от раскладки объектов (bench MemoryFootprint): со сжатыми ссылками (куча до 32 ГБ) узел
+ * и так занимает 32 байта из-за выравнивания до 8, и boolean вместо ссылки ничего не меняет;
+ * без сжатых ссылок узел — 48 байт вместо 56. На каждое дерево экономятся узел-заглушка и свой nil.
+ */
+public class CompactRedBlackTree<E extends Comparable<E>> extends AbstractBalancedSortedSet<E> {
+
+    private static final Node<?> NIL = new Node<>(null, null);
+
+    private final Comparator<E> comparator;
+    private Node<E> root = nil();
+    private int size;
+    private int modCount; //Число структурных изменений, для fail-fast итераторов
+
+    public CompactRedBlackTree() {
+        this(null);
+    }
+
+    public CompactRedBlackTree(Comparator<E> comparator) {
+        this.comparator = comparator;
+    }
+
+    static final class Node<E> {
+        E value;
+        Node<E> left;
+        Node<E> right;
+        Node<E> parent;
+        boolean red;
+
+        Node(E value, Node<E> nil) {
+            this.value = value;
+            this.left = nil;
+            this.right = nil;
+            this.parent = nil;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" +
+                    "value=" + value +
+                    ", left=" + (left != NIL ? left : "nil") +
+                    ", right=" + (right != NIL ? right : "nil") +
+                    ", color=" + (red ? "RED" : "BLACK") +
+                    "} \n";
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E> nil() {
+        return (Node<E>) NIL;
+    }
+
+    private int compare(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    /**
+     * Вставляет элемент в дерево.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в дереве отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        Node<E> parent = nil();
+        Node<E> tmp = root;
+        int cmp = 0;
+        while (tmp != NIL) {
+            parent = tmp;
+            cmp = compare(value, tmp.value);
+            if (cmp == 0) {
+                return false;
+            }
+            tmp = cmp < 0 ? tmp.left : tmp.right;
+        }
+        Node<E> z = new Node<>(value, nil());
+        z.parent = parent;
+        if (parent == NIL) {
+            root = z;
+        } else if (cmp < 0) {
+            parent.left = z;
+        } else {
+            parent.right = z;
+        }
+        z.red = true;
+        insertFixup(z);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    private void insertFixup(Node<E> tmp) {
+        while (tmp.parent.red) {
+            Node<E> grand = tmp.parent.parent;
+            boolean flag = tmp.parent == grand.left; //Отец — левый(true) или правый(false) сын деда
+            Node<E> uncle = flag ? grand.right : grand.left;
+            if (uncle.red) {
+                tmp.parent.red = false;
+                uncle.red = false;
+                grand.red = true;
+                tmp = grand;
+            } else {
+                if (tmp == (flag ? tmp.parent.right : tmp.parent.left)) {
+                    tmp = tmp.parent;
+                    if (flag) rotateLeft(tmp);
+                    else rotateRight(tmp);
+                }
+                tmp.parent.red = false;
+                tmp.parent.parent.red = true;
+                if (flag) rotateRight(tmp.parent.parent);
+                else rotateLeft(tmp.parent.parent);
+            }
+        }
+        root.red = false;
+    }
+
+    private void rotateRight(Node<E> tmp) {
+        Node<E> x = tmp.left;
+        tmp.left = x.right;
+        if (x.right != NIL) {
+            x.right.parent = tmp;
+        }
+        x.parent = tmp.parent;
+        if (tmp.parent == NIL) {
+            root = x;
+        } else if (tmp == tmp.parent.right) {
+            tmp.parent.right = x;
+        } else {
+            tmp.parent.left = x;
+        }
+        x.right = tmp;
+        tmp.parent = x;
+    }
+
+    private void rotateLeft(Node<E> tmp) {
+        Node<E> x = tmp.right;
+        tmp.right = x.left;
+        if (x.left != NIL) {
+            x.left.parent = tmp;
+        }
+        x.parent = tmp.parent;
+        if (tmp.parent == NIL) {
+            root = x;
+        } else if (tmp == tmp.parent.left) {
+            tmp.parent.left = x;
+        } else {
+            tmp.parent.right = x;
+        }
+        x.left = tmp;
+        tmp.parent = x;
+    }
+
+    private Node<E> search(E value) {
+        Node<E> curr = root;
+        while (curr != NIL) {
+            int cmp = compare(value, curr.value);
+            if (cmp == 0) {
+                return curr;
+            }
+            curr = cmp < 0 ? curr.left : curr.right;
+        }
+        return curr;
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из дерева.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо удалить
+     * @return true, если элемент содержался в дереве
+     */
+    @Override
+    public boolean remove(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        Node<E> rm = search(value);
+        if (rm == NIL) {
+            return false;
+        }
+        delete(rm);
+        return true;
+    }
+
+    /**
+     * Удаляет узел. Место, с которого начинается балансировка, задаётся парой (balance, parent),
+     * потому что balance может оказаться общим NIL, у которого нет своего родителя
+     */
+    private void delete(Node<E> rm) {
+        Node<E> balance;
+        Node<E> parent;
+        boolean wasBlackRemoved = !rm.red;
+        if (rm.left == NIL) {
+            balance = rm.right;
+            parent = rm.parent;
+            replace(rm, rm.right);
+        } else if (rm.right == NIL) {
+            balance = rm.left;
+            parent = rm.parent;
+            replace(rm, rm.left);
+        } else {
+            Node<E> next = findNext(rm.right);
+            wasBlackRemoved = !next.red;
+            balance = next.right;
+            if (next.parent == rm) {
+                parent = next;
+            } else {
+                parent = next.parent;
+                replace(next, next.right);
+                next.right = rm.right;
+                next.right.parent = next;
+            }
+            replace(rm, next);
+            next.left = rm.left;
+            next.left.parent = next;
+            next.red = rm.red;
+        }
+        if (wasBlackRemoved) {
+            removeFixup(balance, parent);
+        }
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Подвешивает child на место rm; родитель у NIL не запоминается
+     */
+    private void replace(Node<E> rm, Node<E> child) {
+        if (rm.parent == NIL) {
+            root = child;
+        } else if (rm == rm.parent.left) {
+            rm.parent.left = child;
+        } else {
+            rm.parent.right = child;
+        }
+        if (child != NIL) {
+            child.parent = rm.parent;
+        }
+    }
+
+    private void removeFixup(Node<E> tmp, Node<E> parent) {
+        while (tmp != root && !tmp.red) {
+            boolean flag = tmp == parent.left; //Отвечает, левым(true) или правым(false) потомком является узел
+            Node<E> sibling = flag ? parent.right : parent.left;
+            if (sibling.red) {
+                sibling.red = false;
+                parent.red = true;
+                if (flag) rotateLeft(parent);
+                else rotateRight(parent);
+                sibling = flag ? parent.right : parent.left;
+            }
+            if (!sibling.left.red && !sibling.right.red) {
+                sibling.red = true;
+                tmp = parent;
+                parent = tmp.parent;
+            } else {
+                Node<E> near = flag ? sibling.left : sibling.right; //Ближний к tmp племянник
+                Node<E> far = flag ? sibling.right : sibling.left; //Дальний племянник
+                if (!far.red) {
+                    near.red = false;
+                    sibling.red = true;
+                    if (flag) rotateRight(sibling);
+                    else rotateLeft(sibling);
+                    sibling = flag ? parent.right : parent.left;
+                    far = flag ? sibling.right : sibling.left;
+                }
+                sibling.red = parent.red;
+                parent.red = false;
+                far.red = false;
+                if (flag) rotateLeft(parent);
+                else rotateRight(parent);
+                tmp = root;
+            }
+        }
+        if (tmp != NIL) {
+            tmp.red = false;
+        }
+    }
+
+    private Node<E> findNext(Node<E> tmp) {
+        while (tmp.left != NIL) {
+            tmp = tmp.left;
+        }
+        return tmp;
+    }
+
+    private Node<E> findPrev(Node<E> tmp) {
+        while (tmp.right != NIL) {
+            tmp = tmp.right;
+        }
+        return tmp;
+    }
+
+    private Node<E> successor(Node<E> tmp) {
+        if (tmp.right != NIL) {
+            return findNext(tmp.right);
+        }
+        Node<E> parent = tmp.parent;
+        while (parent != NIL && tmp == parent.right) {
+            tmp = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    private Node<E> predecessor(Node<E> tmp) {
+        if (tmp.left != NIL) {
+            return findPrev(tmp.left);
+        }
+        Node<E> parent = tmp.parent;
+        while (parent != NIL && tmp == parent.left) {
+            tmp = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    /**
+     * Ищет элемент с таким же значением в дереве.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в дереве
+     */
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        return search(value) != NIL;
+    }
+
+    @Override
+    Boolean containsOptimistic(E value) {
+        Node<E> curr = root;
+        for (int steps = 0; curr != NIL; steps++) {
+            if (steps == MAX_OPTIMISTIC_STEPS) {
+                return null;
+            }
+            int cmp = compare(value, curr.value);
+            if (cmp == 0) {
+                return Boolean.TRUE;
+            }
+            curr = cmp < 0 ? curr.left : curr.right;
+        }
+        return Boolean.FALSE;
+    }
+
+    @Override
+    Object neighbourOptimistic(E value, boolean inclusive, boolean descending) {
+        Node<E> curr = root;
+        Node<E> found = null;
+        for (int steps = 0; curr != NIL; steps++) {
+            if (steps == MAX_OPTIMISTIC_STEPS) {
+                return OPTIMISTIC_RETRY;
+            }
+            int cmp = value == null ? (descending ? 1 : -1) : compare(value, curr.value);
+            if (descending ? cmp > 0 || cmp == 0 && inclusive : cmp < 0 || cmp == 0 && inclusive) {
+                found = curr;
+                curr = descending ? curr.right : curr.left;
+            } else {
+                curr = descending ? curr.left : curr.right;
+            }
+        }
+        return found == null ? null : found.value;
+    }
+
+    /**
+     * Ищет наименьший элемент в дереве
+     *
+     * @return Возвращает наименьший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E first() {
+        if (root == NIL) {
+            throw new NoSuchElementException("first");
+        }
+        return findNext(root).value;
+    }
+
+    /**
+     * Ищет наибольший элемент в дереве
+     *
+     * @return Возвращает наибольший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E last() {
+        if (root == NIL) {
+            throw new NoSuchElementException("last");
+        }
+        return findPrev(root).value;
+    }
+
+    @Override
+    public E lower(E value) {
+        return floorNode(value, false).value;
+    }
+
+    @Override
+    public E floor(E value) {
+        return floorNode(value, true).value;
+    }
+
+    @Override
+    public E ceiling(E value) {
+        return ceilingNode(value, true).value;
+    }
+
+    @Override
+    public E higher(E value) {
+        return ceilingNode(value, false).value;
+    }
+
+    /**
+     * Узел с наибольшим значением, не превосходящим (при inclusive = false — меньшим) value, или NIL
+     */
+    private Node<E> floorNode(E value, boolean inclusive) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        Node<E> result = nil();
+        Node<E> curr = root;
+        while (curr != NIL) {
+            int cmp = compare(value, curr.value);
+            if (cmp == 0 && inclusive) {
+                return curr;
+            }
+            if (cmp > 0) {
+                result = curr;
+                curr = curr.right;
+            } else {
+                curr = curr.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Узел с наименьшим значением, не меньшим (при inclusive = false — большим) value, или NIL
+     */
+    private Node<E> ceilingNode(E value, boolean inclusive) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        Node<E> result = nil();
+        Node<E> curr = root;
+        while (curr != NIL) {
+            int cmp = compare(value, curr.value);
+            if (cmp == 0 && inclusive) {
+                return curr;
+            }
+            if (cmp < 0) {
+                result = curr;
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public E pollFirst() {
+        if (root == NIL) {
+            return null;
+        }
+        Node<E> tmp = findNext(root);
+        delete(tmp);
+        return tmp.value;
+    }
+
+    @Override
+    public E pollLast() {
+        if (root == NIL) {
+            return null;
+        }
+        Node<E> tmp = findPrev(root);
+        delete(tmp);
+        return tmp.value;
+    }
+
+    @Override
+    public void clear() {
+        root = nil();
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactRBTree{" +
+                "size=" + size + ", " +
+                "tree=" + (root != NIL ? root : "nil") +
+                '}';
+    }
+
+    @Override
+    Iterator<E> iterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+        return new TreeIterator(from, fromInclusive, to, toInclusive, descending);
+    }
+
+    /**
+     * Итератор по ссылкам на родителя, как в RedBlackTree
+     */
+    private class TreeIterator implements Iterator<E> {
+
+        private Node<E> next;
+        private Node<E> lastReturned = nil();
+        private final E to;
+        private final boolean toInclusive;
+        private final boolean descending;
+        private int expectedModCount = modCount;
+
+        TreeIterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+            if (root == NIL) {
+                next = nil();
+            } else if (from == null) {
+                next = descending ? findPrev(root) : findNext(root);
+            } else {
+                next = descending ? floorNode(from, fromInclusive) : ceilingNode(from, fromInclusive);
+            }
+            checkBound();
+        }
+
+        private void checkBound() {
+            if (next != NIL && to != null) {
+                int cmp = compare(next.value, to);
+                if ((descending ? cmp < 0 : cmp > 0) || cmp == 0 && !toInclusive) {
+                    next = nil();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != NIL;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == NIL) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = descending ? predecessor(next) : successor(next);
+            checkBound();
+            return lastReturned.value;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == NIL) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            delete(lastReturned);
+            lastReturned = nil();
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Проверяет свойства красно-чёрного дерева (чёрный корень, у красного узла чёрные дети,
+     * одинаковая чёрная высота), ссылки на родителя и то, что общий NIL не был изменён
+     *
+     * @throws NotBalancedTreeException если какое-либо свойство невыполнено
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        if (NIL.red || NIL.left != null || NIL.right != null || NIL.parent != null || NIL.value != null) {
+            throw new NotBalancedTreeException("Shared NIL was modified");
+        }
+        if (root.red) {
+            throw new NotBalancedTreeException("Root must be black");
+        }
+        check(root, nil());
+    }
+
+    private int check(Node<E> node, Node<E> parent) throws NotBalancedTreeException {
+        if (node == NIL) {
+            return 1;
+        }
+        if (node.parent != parent) {
+            throw new NotBalancedTreeException("Wrong parent link\n" + node);
+        }
+        if (node.red && (node.left.red || node.right.red)) {
+            throw new NotBalancedTreeException("If a node is red, then its children must be black.\n" + node);
+        }
+        int leftBlackHeight = check(node.left, node);
+        int rightBlackHeight = check(node.right, node);
+        if (leftBlackHeight != rightBlackHeight) {
+            throw NotBalancedTreeException.create("Black height must be equal.", leftBlackHeight, rightBlackHeight, node.toString());
+        }
+        return node.red ? leftBlackHeight : leftBlackHeight + 1;
+    }
+
+}
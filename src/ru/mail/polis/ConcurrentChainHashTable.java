@@ -0,0 +1,439 @@
+package ru.mail.polis;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасная хеш-таблица с цепочками.
+ * <p>
+ * Чтение (contains) идёт без блокировок: голова цепочки читается из AtomicReferenceArray,
+ * поля value и hash узла неизменяемы, а next — volatile, поэтому читатель видит согласованную цепочку.
+ * Запись блокирует только свою ячейку — монитор её головного узла, пустая ячейка заполняется через CAS.
+ * <p>
+ * Перехеширование кооперативное: таблица делится на отрезки по stride ячеек, каждый поток,
+ * который пишет в таблицу во время перехеширования, забирает себе отрезок и переносит его.
+ * Перенесённая ячейка заменяется узлом-указателем {@link Forward} на новую таблицу,
+ * по которому читатели и писатели переходят в неё. Старые узлы не меняются,
+ * а копируются (кроме общего хвоста), поэтому читатель, уже идущий по старой цепочке, доходит до конца.
+ * <p>
+ * Итератор слабо согласован, как у ConcurrentHashMap: не бросает ConcurrentModificationException
+ * и может как увидеть, так и не увидеть изменения, сделанные после его создания.
+ */
+public class ConcurrentChainHashTable<E> extends AbstractSet<E> implements Set<E> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int MIN_TRANSFER_STRIDE = 16;
+    private static final int MOVED = -1; //Хеш узла-указателя, у обычных узлов хеш неотрицателен
+    private static final int HASH_BITS = 0x7fffffff;
+
+    private final AtomicReference<AtomicReferenceArray<Node<E>>> table; //Меняется только CAS с ожидаемой таблицей
+    private final AtomicReference<Resize<E>> resize = new AtomicReference<>(); //Текущее перехеширование или null
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentChainHashTable() {
+        this.table = new AtomicReference<>(new AtomicReferenceArray<>(INITIAL_CAPACITY));
+    }
+
+    /**
+     * Вставляет элемент в хеш-таблицу.
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в хеш-таблице отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        int h = hash(value);
+        AtomicReferenceArray<Node<E>> tab = table.get();
+        while (true) {
+            int idx = h & (tab.length() - 1);
+            Node<E> head = tab.get(idx);
+            if (head == null) {
+                if (tab.compareAndSet(idx, null, new Node<>(value, h, null))) {
+                    break;
+                }
+            } else if (head.hash == MOVED) {
+                tab = helpResize((Forward<E>) head);
+            } else {
+                Boolean added = null; //null — ячейка поменялась, пока ждали блокировку
+                synchronized (head) {
+                    if (tab.get(idx) == head) {
+                        Node<E> curr = head;
+                        while (!curr.matches(value, h) && curr.next != null) {
+                            curr = curr.next;
+                        }
+                        if (curr.matches(value, h)) {
+                            added = false;
+                        } else {
+                            curr.next = new Node<>(value, h, null);
+                            added = true;
+                        }
+                    }
+                }
+                if (added != null) {
+                    if (!added) {
+                        return false;
+                    }
+                    break;
+                }
+            }
+        }
+        size.increment();
+        checkResize();
+        return true;
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из хеш-таблицы.
+     *
+     * @param object элемент который необходимо удалить
+     * @return true, если элемент содержался в хеш-таблице
+     */
+    @Override
+    public boolean remove(Object object) {
+        int h = hash(object);
+        AtomicReferenceArray<Node<E>> tab = table.get();
+        while (true) {
+            int idx = h & (tab.length() - 1);
+            Node<E> head = tab.get(idx);
+            if (head == null) {
+                return false;
+            }
+            if (head.hash == MOVED) {
+                tab = helpResize((Forward<E>) head);
+                continue;
+            }
+            Boolean removed = null;
+            synchronized (head) {
+                if (tab.get(idx) == head) {
+                    Node<E> prev = null;
+                    Node<E> curr = head;
+                    while (curr != null && !curr.matches(object, h)) {
+                        prev = curr;
+                        curr = curr.next;
+                    }
+                    if (curr == null) {
+                        removed = false;
+                    } else {
+                        if (prev == null) {
+                            tab.set(idx, curr.next);
+                        } else {
+                            prev.next = curr.next;
+                        }
+                        removed = true;
+                    }
+                }
+            }
+            if (removed != null) {
+                if (removed) {
+                    size.decrement();
+                }
+                return removed;
+            }
+        }
+    }
+
+    /**
+     * Ищет элемент с таким же значением в хеш-таблице без блокировок.
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в хеш-таблице
+     */
+    @Override
+    public boolean contains(Object object) {
+        int h = hash(object);
+        AtomicReferenceArray<Node<E>> tab = table.get();
+        while (true) {
+            Node<E> curr = tab.get(h & (tab.length() - 1));
+            if (curr != null && curr.hash == MOVED) {
+                tab = ((Forward<E>) curr).resize.to;
+                continue;
+            }
+            while (curr != null) {
+                if (curr.matches(object, h)) {
+                    return true;
+                }
+                curr = curr.next;
+            }
+            return false;
+        }
+    }
+
+    private static int hash(Object value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        return Hashing.spread(value.hashCode()) & HASH_BITS;
+    }
+
+    /**
+     * Начинает перехеширование, если элементов стало больше 3/4 таблицы, или помогает уже идущему.
+     * Если после него таблица снова переполнена, следующее перехеширование начнёт следующая вставка.
+     * <p>
+     * Перехеширование r действующее, пока resize == r и table == r.from: table меняется только при его завершении,
+     * поэтому r, установленное в resize после того, как таблица уже сменилась, устарело — к нему никто не
+     * присоединяется, а установивший его поток снимает его. resize читается раньше table, поэтому
+     * увидевший устаревшее r увидит и новую таблицу.
+     */
+    private void checkResize() {
+        while (true) {
+            Resize<E> current = resize.get();
+            AtomicReferenceArray<Node<E>> tab = table.get();
+            int length = tab.length();
+            if (size.sum() < length - (length >>> 2) || length >= MAX_CAPACITY) {
+                return;
+            }
+            if (current != null) {
+                if (current.from == tab) {
+                    transfer(current);
+                }
+                return; //Иначе перехеширование уже заканчивается, таблица вот-вот сменится
+            }
+            Resize<E> started = new Resize<>(tab);
+            if (!resize.compareAndSet(null, started)) {
+                continue;
+            }
+            if (table.get() != tab) {
+                //Пока создавали, другое перехеширование успело закончиться, tab устарела
+                resize.compareAndSet(started, null);
+                continue;
+            }
+            transfer(started);
+            return;
+        }
+    }
+
+    private AtomicReferenceArray<Node<E>> helpResize(Forward<E> forward) {
+        transfer(forward.resize);
+        return forward.resize.to;
+    }
+
+    /**
+     * Забирает отрезки ещё не перенесённых ячеек, пока они есть.
+     * Поток, перенёсший последний отрезок, публикует новую таблицу CAS-ом с ожидаемой r.from,
+     * поэтому запоздавший поток не может вернуть уже заменённую таблицу.
+     */
+    private void transfer(Resize<E> r) {
+        while (true) {
+            int hi = r.transferIndex.get();
+            if (hi <= 0) {
+                return;
+            }
+            int lo = Math.max(hi - r.stride, 0);
+            if (!r.transferIndex.compareAndSet(hi, lo)) {
+                continue;
+            }
+            for (int idx = hi - 1; idx >= lo; idx--) {
+                if (!moveBin(r, idx)) {
+                    return; //Ячейку уже перенесло другое перехеширование: r устарело и не публикуется
+                }
+            }
+            if (r.remaining.addAndGet(lo - hi) == 0) {
+                table.compareAndSet(r.from, r.to);
+                resize.compareAndSet(r, null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Делит цепочку ячейки idx на две по биту oldLength хеша: в idx и idx + oldLength новой таблицы.
+     * Общий хвост, все узлы которого попадают в одну половину, переиспользуется, остальные узлы копируются.
+     *
+     * @return false, если в ячейке уже указатель другого перехеширования
+     */
+    private boolean moveBin(Resize<E> r, int idx) {
+        AtomicReferenceArray<Node<E>> from = r.from;
+        int oldLength = from.length();
+        while (true) {
+            Node<E> head = from.get(idx);
+            if (head == null) {
+                if (from.compareAndSet(idx, null, r.forward)) {
+                    return true;
+                }
+                continue;
+            }
+            if (head.hash == MOVED) {
+                //Указатель — не узел с элементом, копировать его нельзя
+                return head == r.forward;
+            }
+            synchronized (head) {
+                if (from.get(idx) != head) {
+                    continue;
+                }
+                Node<E> lastRun = head;
+                int runBit = head.hash & oldLength;
+                for (Node<E> curr = head.next; curr != null; curr = curr.next) {
+                    int bit = curr.hash & oldLength;
+                    if (bit != runBit) {
+                        runBit = bit;
+                        lastRun = curr;
+                    }
+                }
+                Node<E> lo = runBit == 0 ? lastRun : null;
+                Node<E> hi = runBit == 0 ? null : lastRun;
+                for (Node<E> curr = head; curr != lastRun; curr = curr.next) {
+                    if ((curr.hash & oldLength) == 0) {
+                        lo = new Node<>(curr.value, curr.hash, lo);
+                    } else {
+                        hi = new Node<>(curr.value, curr.hash, hi);
+                    }
+                }
+                r.to.set(idx, lo);
+                r.to.set(idx + oldLength, hi);
+                from.set(idx, r.forward);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        long sum = size.sum();
+        return sum < 0 ? 0 : (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.sum() <= 0;
+    }
+
+    /**
+     * Слабо согласованный итератор: обходит ячейки таблицы, текущей на момент создания,
+     * и переходит по указателям Forward в новые таблицы. remove() удаляет элемент через remove(Object).
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final AtomicReferenceArray<Node<E>> base = table.get();
+            private int baseIdx;
+            private final Deque<Bin<E>> pending = new ArrayDeque<>(); //Ячейки новых таблиц, куда переехала ячейка base
+            private Node<E> next = advance(null);
+            private E lastReturned;
+
+            private Node<E> advance(Node<E> curr) {
+                if (curr != null) {
+                    curr = curr.next;
+                }
+                while (curr == null) {
+                    if (!pending.isEmpty()) {
+                        Bin<E> bin = pending.pop();
+                        curr = bin.table.get(bin.idx);
+                        if (curr != null && curr.hash == MOVED) {
+                            forward((Forward<E>) curr, bin.idx);
+                            curr = null;
+                        }
+                    } else if (baseIdx < base.length()) {
+                        int idx = baseIdx++;
+                        curr = base.get(idx);
+                        if (curr != null && curr.hash == MOVED) {
+                            forward((Forward<E>) curr, idx);
+                            curr = null;
+                        }
+                    } else {
+                        return null;
+                    }
+                }
+                return curr;
+            }
+
+            private void forward(Forward<E> forward, int idx) {
+                AtomicReferenceArray<Node<E>> to = forward.resize.to;
+                pending.push(new Bin<>(to, idx + forward.resize.from.length()));
+                pending.push(new Bin<>(to, idx));
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next.value;
+                next = advance(next);
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                ConcurrentChainHashTable.this.remove(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    private static class Node<E> {
+        final E value;
+        final int hash; //Hashing.spread(value.hashCode()) без знакового бита
+        volatile Node<E> next;
+
+        Node(E value, int hash, Node<E> next) {
+            this.value = value;
+            this.hash = hash;
+            this.next = next;
+        }
+
+        boolean matches(Object value, int hash) {
+            return this.hash == hash && value.equals(this.value);
+        }
+    }
+
+    /**
+     * Голова перенесённой ячейки: элементы этой ячейки надо искать в resize.to
+     */
+    private static final class Forward<E> extends Node<E> {
+        final Resize<E> resize;
+
+        Forward(Resize<E> resize) {
+            super(null, MOVED, null);
+            this.resize = resize;
+        }
+    }
+
+    /**
+     * Состояние одного перехеширования from -> to (вдвое больше)
+     */
+    private static final class Resize<E> {
+        final AtomicReferenceArray<Node<E>> from;
+        final AtomicReferenceArray<Node<E>> to;
+        final Forward<E> forward = new Forward<>(this);
+        final int stride;
+        final AtomicInteger transferIndex; //Ячейки [0, transferIndex) ещё никто не взял
+        final AtomicInteger remaining; //Сколько ячеек ещё не перенесено
+
+        Resize(AtomicReferenceArray<Node<E>> from) {
+            int length = from.length();
+            this.from = from;
+            this.to = new AtomicReferenceArray<>(length << 1);
+            this.stride = Math.max(MIN_TRANSFER_STRIDE, length / (Runtime.getRuntime().availableProcessors() << 3));
+            this.transferIndex = new AtomicInteger(length);
+            this.remaining = new AtomicInteger(length);
+        }
+    }
+
+    private static final class Bin<E> {
+        final AtomicReferenceArray<Node<E>> table;
+        final int idx;
+
+        Bin(AtomicReferenceArray<Node<E>> table, int idx) {
+            this.table = table;
+            this.idx = idx;
+        }
+    }
+
+}
@@ -0,0 +1,567 @@
+package ru.mail.polis;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Потокобезопасный список с пропусками без блокировок (Herlihy, Shavit — "The Art of Multiprocessor Programming", 14.4).
+ * <p>
+ * Каждый узел лежит в нижнем списке и в topLevel - 1 списках выше; уровень выбирается случайно с вероятностью 1/2
+ * на каждый следующий, поэтому поиск спускается по уровням за O(log n) в среднем.
+ * Ссылка next на каждом уровне — AtomicMarkableReference: пометка означает, что узел удаляется.
+ * Удаление сначала помечает ссылки узла сверху вниз; узел удалён в момент пометки ссылки нижнего уровня,
+ * после чего его физически вырезают CAS-ом на предшественнике — любой поток, который проходит мимо, в find.
+ * Вставка связывает узел снизу вверх, элемент появляется в момент CAS на нижнем уровне.
+ * <p>
+ * contains, lower / floor / ceiling / higher, first / last не пишут в память и проходят помеченные узлы насквозь.
+ * size() — сумма счётчиков и при одновременных изменениях приблизительна. Итераторы слабо согласованы
+ * и не бросают ConcurrentModificationException. Элементы null не поддерживаются.
+ */
+public class ConcurrentSkipList<E extends Comparable<E>> extends AbstractBalancedSortedSet<E> {
+
+    private static final int MAX_LEVEL = 32;
+
+    private final Comparator<E> comparator;
+    private final Node<E> head = new Node<>(null, MAX_LEVEL); //Значение head меньше любого элемента
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentSkipList() {
+        this(null);
+    }
+
+    public ConcurrentSkipList(Comparator<E> comparator) {
+        this.comparator = comparator;
+    }
+
+    private static final class Node<E> {
+        final E value;
+        final AtomicMarkableReference<Node<E>>[] next; //next[level]; null в ссылке — конец списка
+
+        @SuppressWarnings("unchecked")
+        Node(E value, int topLevel) {
+            this.value = value;
+            this.next = (AtomicMarkableReference<Node<E>>[]) new AtomicMarkableReference<?>[topLevel];
+            for (int level = 0; level < topLevel; level++) {
+                next[level] = new AtomicMarkableReference<>(null, false);
+            }
+        }
+
+        int topLevel() {
+            return next.length;
+        }
+
+        boolean isDeleted() {
+            return next[0].isMarked();
+        }
+
+        @Override
+        public String toString() {
+            return "Node{value=" + value + ", topLevel=" + next.length + '}';
+        }
+    }
+
+    private int compare(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Уровень нового узла: 1 + число подряд идущих единичных бит случайного числа, не больше MAX_LEVEL
+     */
+    private static int randomLevel() {
+        return Integer.numberOfTrailingZeros(ThreadLocalRandom.current().nextInt() | (1 << (MAX_LEVEL - 1))) + 1;
+    }
+
+    /**
+     * Спускается к value, вырезая по дороге помеченные узлы.
+     * preds[level] — последний узел уровня со значением меньше value, succs[level] — следующий за ним.
+     *
+     * @return true, если на нижнем уровне найден узел с таким значением
+     */
+    private boolean find(E value, Node<E>[] preds, Node<E>[] succs) {
+        boolean[] marked = {false};
+        retry:
+        while (true) {
+            Node<E> pred = head;
+            for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+                Node<E> curr = pred.next[level].getReference();
+                while (curr != null) {
+                    Node<E> succ = curr.next[level].get(marked);
+                    if (marked[0]) {
+                        if (!pred.next[level].compareAndSet(curr, succ, false, false)) {
+                            continue retry; //pred сам удаляется или за ним вставили узел
+                        }
+                        curr = succ;
+                    } else if (compare(curr.value, value) < 0) {
+                        pred = curr;
+                        curr = succ;
+                    } else {
+                        break;
+                    }
+                }
+                preds[level] = pred;
+                succs[level] = curr;
+            }
+            return succs[0] != null && compare(succs[0].value, value) == 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E>[] newPath() {
+        return (Node<E>[]) new Node<?>[MAX_LEVEL];
+    }
+
+    /**
+     * Вставляет элемент в список.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в списке отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int topLevel = randomLevel();
+        Node<E>[] preds = newPath();
+        Node<E>[] succs = newPath();
+        while (true) {
+            if (find(value, preds, succs)) {
+                return false;
+            }
+            Node<E> node = new Node<>(value, topLevel);
+            for (int level = 0; level < topLevel; level++) {
+                node.next[level].set(succs[level], false);
+            }
+            if (!preds[0].next[0].compareAndSet(succs[0], node, false, false)) {
+                continue;
+            }
+            size.increment();
+            linkUpperLevels(node, topLevel, preds, succs);
+            return true;
+        }
+    }
+
+    /**
+     * Связывает уже вставленный узел на верхних уровнях.
+     * Если узел тем временем начали удалять, останавливается: недостающие уровни только ускоряют поиск.
+     */
+    private void linkUpperLevels(Node<E> node, int topLevel, Node<E>[] preds, Node<E>[] succs) {
+        boolean[] marked = {false};
+        for (int level = 1; level < topLevel; level++) {
+            while (true) {
+                Node<E> succ = succs[level];
+                Node<E> next = node.next[level].get(marked);
+                if (marked[0]) {
+                    return;
+                }
+                if (next != succ && !node.next[level].compareAndSet(next, succ, false, false)) {
+                    continue;
+                }
+                if (preds[level].next[level].compareAndSet(succ, node, false, false)) {
+                    break;
+                }
+                if (!find(node.value, preds, succs) || succs[0] != node) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из списка.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо удалить
+     * @return true, если элемент содержался в списке
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object object) {
+        if (object == null) {
+            throw new NullPointerException("value is null");
+        }
+        E value = (E) object;
+        Node<E>[] preds = newPath();
+        Node<E>[] succs = newPath();
+        if (!find(value, preds, succs)) {
+            return false;
+        }
+        return delete(succs[0], preds, succs);
+    }
+
+    /**
+     * Помечает ссылки узла сверху вниз; выигравший пометку нижнего уровня удалил элемент
+     */
+    private boolean delete(Node<E> node, Node<E>[] preds, Node<E>[] succs) {
+        boolean[] marked = {false};
+        for (int level = node.topLevel() - 1; level >= 1; level--) {
+            Node<E> succ = node.next[level].get(marked);
+            while (!marked[0]) {
+                node.next[level].compareAndSet(succ, succ, false, true);
+                succ = node.next[level].get(marked);
+            }
+        }
+        Node<E> succ = node.next[0].get(marked);
+        while (true) {
+            if (marked[0]) {
+                return false; //Другой поток удалил раньше
+            }
+            if (node.next[0].compareAndSet(succ, succ, false, true)) {
+                size.decrement();
+                find(node.value, preds, succs); //Вырезает узел со всех уровней
+                return true;
+            }
+            succ = node.next[0].get(marked);
+        }
+    }
+
+    /**
+     * Ищет элемент без записи в память.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в списке
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object object) {
+        if (object == null) {
+            throw new NullPointerException("value is null");
+        }
+        Node<E> node = successor((E) object, true);
+        return node != null && compare(node.value, (E) object) == 0;
+    }
+
+    /**
+     * Последний неудалённый узел со значением меньше value (не больше, если inclusive) или head.
+     * value == null означает «больше всех» — тогда это последний узел списка.
+     */
+    private Node<E> predecessor(E value, boolean inclusive) {
+        boolean[] marked = {false};
+        while (true) {
+            Node<E> pred = head;
+            for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+                Node<E> curr = pred.next[level].getReference();
+                while (curr != null) {
+                    Node<E> succ = curr.next[level].get(marked);
+                    if (!marked[0]) {
+                        if (value != null) {
+                            int cmp = compare(curr.value, value);
+                            if (cmp > 0 || cmp == 0 && !inclusive) {
+                                break;
+                            }
+                        }
+                        pred = curr;
+                    }
+                    curr = succ;
+                }
+            }
+            if (pred == head || !pred.isDeleted()) {
+                return pred;
+            }
+            //pred удалили, пока мы шли дальше; ищем заново
+        }
+    }
+
+    /**
+     * Первый неудалённый узел со значением не меньше value (больше, если не inclusive) или null.
+     * value == null означает «меньше всех» — тогда это первый узел списка.
+     */
+    private Node<E> successor(E value, boolean inclusive) {
+        Node<E> curr = value == null ? head : predecessor(value, !inclusive);
+        curr = curr.next[0].getReference();
+        while (curr != null) {
+            if (!curr.isDeleted()) {
+                if (value == null) {
+                    return curr;
+                }
+                int cmp = compare(curr.value, value);
+                if (cmp > 0 || cmp == 0 && inclusive) {
+                    return curr;
+                }
+            }
+            curr = curr.next[0].getReference();
+        }
+        return null;
+    }
+
+    private static <E> E valueOf(Node<E> node) {
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public E lower(E value) {
+        return valueOf(predecessor(value, false));
+    }
+
+    @Override
+    public E floor(E value) {
+        return valueOf(predecessor(value, true));
+    }
+
+    @Override
+    public E ceiling(E value) {
+        return valueOf(successor(value, true));
+    }
+
+    @Override
+    public E higher(E value) {
+        return valueOf(successor(value, false));
+    }
+
+    @Override
+    public E first() {
+        Node<E> node = successor(null, true);
+        if (node == null) {
+            throw new NoSuchElementException("first");
+        }
+        return node.value;
+    }
+
+    @Override
+    public E last() {
+        Node<E> node = predecessor(null, true);
+        if (node == head) {
+            throw new NoSuchElementException("last");
+        }
+        return node.value;
+    }
+
+    /**
+     * Извлекает первый элемент атомарно: если его удалил другой поток, пробует следующий
+     */
+    @Override
+    public E pollFirst() {
+        Node<E>[] preds = newPath();
+        Node<E>[] succs = newPath();
+        for (Node<E> node = successor(null, true); node != null; node = successor(null, true)) {
+            if (delete(node, preds, succs)) {
+                return node.value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public E pollLast() {
+        Node<E>[] preds = newPath();
+        Node<E>[] succs = newPath();
+        for (Node<E> node = predecessor(null, true); node != head; node = predecessor(null, true)) {
+            if (delete(node, preds, succs)) {
+                return node.value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return successor(null, true) == null;
+    }
+
+    @Override
+    public int size() {
+        long sum = size.sum();
+        return sum < 0 ? 0 : (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void clear() {
+        while (pollFirst() != null) {
+            /* empty */
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentSkipList{" +
+                "size=" + size() +
+                '}';
+    }
+
+    @Override
+    Iterator<E> iterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+        return new SkipListIterator(from, fromInclusive, to, toInclusive, descending);
+    }
+
+    /**
+     * Размер неизвестен заранее, поэтому делится пачками из итератора.
+     * Элементы идут по возрастанию, так что Spliterator — SORTED с компаратором множества (null для естественного порядка)
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new SkipListSpliterator(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED
+                        | Spliterator.NONNULL | Spliterator.CONCURRENT));
+    }
+
+    /**
+     * Обёртка над пачками Spliterators: их getComparator для SORTED всегда возвращает null,
+     * а у множества с компаратором он должен быть comparator()
+     */
+    private class SkipListSpliterator implements Spliterator<E> {
+
+        private final Spliterator<E> batches;
+
+        SkipListSpliterator(Spliterator<E> batches) {
+            this.batches = batches;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            return batches.tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            batches.forEachRemaining(action);
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            Spliterator<E> prefix = batches.trySplit();
+            return prefix == null ? null : new SkipListSpliterator(prefix);
+        }
+
+        @Override
+        public long estimateSize() {
+            return batches.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return batches.characteristics();
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator;
+        }
+    }
+
+    /**
+     * Слабо согласованный итератор. По возрастанию идёт по нижнему уровню, пропуская помеченные узлы;
+     * по убыванию каждый шаг — поиск предшественника за O(log n), как у ConcurrentSkipListSet.
+     */
+    private class SkipListIterator implements Iterator<E> {
+
+        private final E to;
+        private final boolean toInclusive;
+        private final boolean descending;
+        private Node<E> next;
+        private E lastReturned;
+
+        SkipListIterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+            if (descending) {
+                Node<E> node = predecessor(from, fromInclusive);
+                next = check(node == head ? null : node);
+            } else {
+                next = check(successor(from, fromInclusive));
+            }
+        }
+
+        /**
+         * Обрывает обход на границе to
+         */
+        private Node<E> check(Node<E> node) {
+            if (node == null || to == null) {
+                return node;
+            }
+            int cmp = compare(node.value, to);
+            if (descending ? cmp < 0 || cmp == 0 && !toInclusive : cmp > 0 || cmp == 0 && !toInclusive) {
+                return null;
+            }
+            return node;
+        }
+
+        private Node<E> advance(Node<E> node) {
+            if (descending) {
+                Node<E> prev = predecessor(node.value, false);
+                return prev == head ? null : prev;
+            }
+            Node<E> curr = node.next[0].getReference();
+            while (curr != null && curr.isDeleted()) {
+                curr = curr.next[0].getReference();
+            }
+            return curr;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next.value;
+            next = check(advance(next));
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentSkipList.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Проверяет инварианты уровней (в отсутствие одновременных изменений):
+     * на каждом уровне неудалённые узлы идут строго по возрастанию, узел на уровне level имеет topLevel > level,
+     * и каждый узел уровня level есть и на уровне level - 1 (верхние списки — подпоследовательности нижних).
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        for (int level = 0; level < MAX_LEVEL; level++) {
+            Node<E> lowerCurr = level == 0 ? null : head.next[level - 1].getReference();
+            Node<E> prev = null;
+            for (Node<E> curr = head.next[level].getReference(); curr != null;
+                 curr = curr.next[level].getReference()) {
+                if (curr.isDeleted()) {
+                    continue;
+                }
+                if (curr.topLevel() <= level) {
+                    throw new NotBalancedTreeException("Node is linked above its top level " + level
+                            + "\nnodeInfo = " + curr);
+                }
+                if (prev != null && compare(prev.value, curr.value) >= 0) {
+                    throw new NotBalancedTreeException("Level " + level + " is not strictly ascending"
+                            + "\nnodeInfo = " + prev + " -> " + curr);
+                }
+                if (level > 0) {
+                    while (lowerCurr != null && lowerCurr != curr) {
+                        lowerCurr = lowerCurr.next[level - 1].getReference();
+                    }
+                    if (lowerCurr == null) {
+                        throw new NotBalancedTreeException("Node of level " + level + " is missing on level " + (level - 1)
+                                + "\nnodeInfo = " + curr);
+                    }
+                }
+                prev = curr;
+            }
+        }
+    }
+
+}
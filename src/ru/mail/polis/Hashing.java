@@ -0,0 +1,20 @@
+package ru.mail.polis;
+
+/**
+ * Общая хеш-функция хеш-таблиц пакета: ChainHashTable, ConcurrentChainHashTable, IntHashSet, LongHashSet
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * Перемешивает биты hashCode, чтобы старшие биты влияли на младшие,
+     * по которым берётся индекс ячейки: у ключей вроде Student младшие биты hashCode распределены плохо.
+     */
+    static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
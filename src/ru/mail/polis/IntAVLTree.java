@@ -0,0 +1,525 @@
+package ru.mail.polis;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * АВЛ-дерево int в естественном порядке. Ключ лежит в узле примитивом и сравнивается прямо в цикле (==, <, Integer.compare),
+ * так что addInt / containsInt / removeInt не создают Integer и не вызывают compareTo через интерфейс.
+ * <p>
+ * Методы NavigableSet&lt;Integer&gt; тоже работают (значение распаковывается на входе и упаковывается
+ * только на выходе), поэтому дерево можно передавать туда, где ждут обычное множество.
+ * Итератор — PrimitiveIterator.OfInt: nextInt() обходит дерево без упаковки.
+ */
+public class IntAVLTree extends AbstractBalancedSortedSet<Integer> {
+
+    private Node root;
+    private int size;
+    private int modCount; //Число структурных изменений, для fail-fast итераторов
+    private Node[] path = new Node[0]; //Переиспользуемый стек пути для add и remove
+
+    private static final class Node {
+        int value;
+        Node left;
+        Node right;
+        int height = 1;
+
+        Node(int value) {
+            this.value = value;
+        }
+
+        int needBalance() {
+            return height(right) - height(left);
+        }
+
+        void fix() {
+            height = Math.max(height(left), height(right)) + 1;
+        }
+
+        @Override
+        public String toString() {
+            return "N{d=" + value + (left != null ? ", l=" + left : "") + (right != null ? ", r=" + right : "") + ", h=" + height + '}';
+        }
+    }
+
+    private static int height(Node node) {
+        return node != null ? node.height : 0;
+    }
+
+    /**
+     * Вставляет значение в дерево
+     *
+     * @return true, если значения в дереве не было
+     */
+    public boolean addInt(int value) {
+        if (root == null) {
+            root = new Node(value);
+            size++;
+            modCount++;
+            return true;
+        }
+        Node[] path = path();
+        int depth = 0;
+        int cmp = 0;
+        Node curr = root;
+        while (curr != null) {
+            cmp = Integer.compare(value, curr.value);
+            if (cmp == 0) {
+                Arrays.fill(path, 0, depth, null);
+                return false;
+            }
+            path[depth++] = curr;
+            curr = cmp < 0 ? curr.left : curr.right;
+        }
+        if (cmp < 0) {
+            path[depth - 1].left = new Node(value);
+        } else {
+            path[depth - 1].right = new Node(value);
+        }
+        size++;
+        modCount++;
+        rebalance(path, depth);
+        return true;
+    }
+
+    /**
+     * @return true, если значение есть в дереве
+     */
+    public boolean containsInt(int value) {
+        Node curr = root;
+        while (curr != null) {
+            if (value == curr.value) {
+                return true;
+            }
+            curr = value < curr.value ? curr.left : curr.right;
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет значение из дерева
+     *
+     * @return true, если значение было в дереве
+     */
+    public boolean removeInt(int value) {
+        if (root == null) {
+            return false;
+        }
+        Node[] path = path();
+        int depth = 0;
+        Node curr = root;
+        while (curr != null) {
+            path[depth++] = curr;
+            if (value == curr.value) {
+                break;
+            }
+            curr = value < curr.value ? curr.left : curr.right;
+        }
+        if (curr == null) {
+            Arrays.fill(path, 0, depth, null);
+            return false;
+        }
+        if (curr.left != null && curr.right != null) {
+            //Значение заменяем наименьшим из больших, а удаляем узел, в котором оно лежало
+            Node next = curr.right;
+            while (next != null) {
+                path[depth++] = next;
+                next = next.left;
+            }
+            curr.value = path[depth - 1].value;
+        }
+        Node rm = path[--depth];
+        replaceChild(path, depth, rm, rm.left != null ? rm.left : rm.right);
+        path[depth] = null;
+        size--;
+        modCount++;
+        rebalance(path, depth);
+        return true;
+    }
+
+    /**
+     * @return наименьшее значение
+     * @throws NoSuchElementException если дерево пустое
+     */
+    public int firstInt() {
+        if (root == null) {
+            throw new NoSuchElementException("first");
+        }
+        Node curr = root;
+        while (curr.left != null) {
+            curr = curr.left;
+        }
+        return curr.value;
+    }
+
+    /**
+     * @return наибольшее значение
+     * @throws NoSuchElementException если дерево пустое
+     */
+    public int lastInt() {
+        if (root == null) {
+            throw new NoSuchElementException("last");
+        }
+        Node curr = root;
+        while (curr.right != null) {
+            curr = curr.right;
+        }
+        return curr.value;
+    }
+
+    private Node[] path() {
+        if (path.length < root.height) {
+            path = new Node[root.height + 1];
+        }
+        return path;
+    }
+
+    /**
+     * Поднимается по пути и балансирует узлы, пока высота очередного поддерева меняется
+     */
+    private void rebalance(Node[] path, int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            Node tmp = path[i];
+            int oldHeight = tmp.height;
+            Node balanced = makeBalanced(tmp);
+            if (balanced != tmp) {
+                replaceChild(path, i, tmp, balanced);
+            }
+            if (balanced.height == oldHeight) {
+                break;
+            }
+        }
+        Arrays.fill(path, 0, depth, null);
+    }
+
+    private void replaceChild(Node[] path, int i, Node oldChild, Node newChild) {
+        if (i == 0) {
+            root = newChild;
+        } else if (path[i - 1].left == oldChild) {
+            path[i - 1].left = newChild;
+        } else {
+            path[i - 1].right = newChild;
+        }
+    }
+
+    private static Node rotateRight(Node tmp) {
+        Node n = tmp.left;
+        tmp.left = n.right;
+        n.right = tmp;
+        tmp.fix();
+        n.fix();
+        return n;
+    }
+
+    private static Node rotateLeft(Node tmp) {
+        Node n = tmp.right;
+        tmp.right = n.left;
+        n.left = tmp;
+        tmp.fix();
+        n.fix();
+        return n;
+    }
+
+    private static Node makeBalanced(Node tmp) {
+        tmp.fix();
+        if (tmp.needBalance() == 2) {
+            if (tmp.right.needBalance() < 0)
+                tmp.right = rotateRight(tmp.right);
+            return rotateLeft(tmp);
+        }
+        if (tmp.needBalance() == -2) {
+            if (tmp.left.needBalance() > 0)
+                tmp.left = rotateLeft(tmp.left);
+            return rotateRight(tmp);
+        }
+        return tmp;
+    }
+
+    /*
+     * NavigableSet<Integer>: распаковка на входе, упаковка на выходе
+     */
+
+    private static int unbox(Object object) {
+        if (object == null) {
+            throw new NullPointerException("value is null");
+        }
+        return (Integer) object;
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return addInt(unbox(value));
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return containsInt(unbox(object));
+    }
+
+    @Override
+    Boolean containsOptimistic(Integer boxed) {
+        int value = boxed;
+        Node curr = root;
+        for (int steps = 0; curr != null; steps++) {
+            if (steps == MAX_OPTIMISTIC_STEPS) {
+                return null;
+            }
+            if (value == curr.value) {
+                return Boolean.TRUE;
+            }
+            curr = value < curr.value ? curr.left : curr.right;
+        }
+        return Boolean.FALSE;
+    }
+
+    @Override
+    Object neighbourOptimistic(Integer boxed, boolean inclusive, boolean descending) {
+        Node curr = root;
+        Node found = null;
+        for (int steps = 0; curr != null; steps++) {
+            if (steps == MAX_OPTIMISTIC_STEPS) {
+                return OPTIMISTIC_RETRY;
+            }
+            int cmp = boxed == null ? (descending ? 1 : -1) : Integer.compare(boxed, curr.value);
+            if (descending ? cmp > 0 || cmp == 0 && inclusive : cmp < 0 || cmp == 0 && inclusive) {
+                found = curr;
+                curr = descending ? curr.right : curr.left;
+            } else {
+                curr = descending ? curr.left : curr.right;
+            }
+        }
+        return found == null ? null : found.value;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        return removeInt(unbox(object));
+    }
+
+    @Override
+    public Integer first() {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() {
+        return lastInt();
+    }
+
+    @Override
+    public Integer lower(Integer value) {
+        return valueOf(floorNode(unbox(value), false));
+    }
+
+    @Override
+    public Integer floor(Integer value) {
+        return valueOf(floorNode(unbox(value), true));
+    }
+
+    @Override
+    public Integer ceiling(Integer value) {
+        return valueOf(ceilingNode(unbox(value), true));
+    }
+
+    @Override
+    public Integer higher(Integer value) {
+        return valueOf(ceilingNode(unbox(value), false));
+    }
+
+    private static Integer valueOf(Node node) {
+        return node != null ? node.value : null;
+    }
+
+    private Node floorNode(int value, boolean inclusive) {
+        Node result = null;
+        Node curr = root;
+        while (curr != null) {
+            if (value == curr.value && inclusive) {
+                return curr;
+            }
+            if (value > curr.value) {
+                result = curr;
+                curr = curr.right;
+            } else {
+                curr = curr.left;
+            }
+        }
+        return result;
+    }
+
+    private Node ceilingNode(int value, boolean inclusive) {
+        Node result = null;
+        Node curr = root;
+        while (curr != null) {
+            if (value == curr.value && inclusive) {
+                return curr;
+            }
+            if (value < curr.value) {
+                result = curr;
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Естественный порядок int
+     */
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "IntAVLTree{" +
+                "tree=" + root +
+                "size=" + size + ", " +
+                '}';
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return iterator(null, true, null, true, false);
+    }
+
+    @Override
+    PrimitiveIterator.OfInt iterator(Integer from, boolean fromInclusive, Integer to, boolean toInclusive, boolean descending) {
+        return new TreeIterator(from, fromInclusive, to, toInclusive, descending);
+    }
+
+    /**
+     * In-order итератор на явном стеке, как в AVLTree; граница to хранится примитивом
+     */
+    private class TreeIterator implements PrimitiveIterator.OfInt {
+
+        private final Node[] stack = new Node[root != null ? root.height : 0];
+        private int depth;
+        private final boolean bounded;
+        private final int to;
+        private final boolean toInclusive;
+        private final boolean descending;
+        private Node lastReturned;
+        private int expectedModCount = modCount;
+
+        TreeIterator(Integer from, boolean fromInclusive, Integer to, boolean toInclusive, boolean descending) {
+            this.bounded = to != null;
+            this.to = bounded ? to : 0;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+            seek(from != null, from != null ? from : 0, fromInclusive);
+        }
+
+        private void seek(boolean hasFrom, int from, boolean inclusive) {
+            depth = 0;
+            Node curr = root;
+            while (curr != null) {
+                boolean pending = true;
+                if (hasFrom) {
+                    int cmp = Integer.compare(curr.value, from);
+                    pending = descending ? cmp < 0 : cmp > 0;
+                    pending |= cmp == 0 && inclusive;
+                }
+                if (pending) {
+                    stack[depth++] = curr;
+                    curr = descending ? curr.right : curr.left;
+                } else {
+                    curr = descending ? curr.left : curr.right;
+                }
+            }
+            checkBound();
+        }
+
+        private void checkBound() {
+            if (depth > 0 && bounded) {
+                int cmp = Integer.compare(stack[depth - 1].value, to);
+                if ((descending ? cmp < 0 : cmp > 0) || cmp == 0 && !toInclusive) {
+                    depth = 0;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            Node curr = stack[--depth];
+            for (Node edge = descending ? curr.left : curr.right; edge != null; edge = descending ? edge.right : edge.left) {
+                stack[depth++] = edge;
+            }
+            checkBound();
+            lastReturned = curr;
+            return curr.value;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            int value = lastReturned.value;
+            removeInt(value);
+            lastReturned = null;
+            expectedModCount = modCount;
+            seek(true, value, false);
+        }
+    }
+
+    /**
+     * Проверяет, что высоты поддеревьев отличаются не больше чем на 1, сохранённые высоты верны,
+     * а значения идут по возрастанию
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        check(root, Integer.MIN_VALUE, false, Integer.MAX_VALUE, false);
+    }
+
+    private int check(Node node, int lo, boolean hasLo, int hi, boolean hasHi) throws NotBalancedTreeException {
+        if (node == null) {
+            return 0;
+        }
+        if (hasLo && node.value <= lo || hasHi && node.value >= hi) {
+            throw new NotBalancedTreeException("Value " + node.value + " is out of order");
+        }
+        int leftHeight = check(node.left, lo, hasLo, node.value, true);
+        int rightHeight = check(node.right, node.value, true, hi, hasHi);
+        if (Math.abs(leftHeight - rightHeight) > 1) {
+            throw NotBalancedTreeException.create("Subtree heights differ by more than 1.", leftHeight, rightHeight, node.toString());
+        }
+        int height = Math.max(leftHeight, rightHeight) + 1;
+        if (height != node.height) {
+            throw new NotBalancedTreeException("Stored height " + node.height + " != " + height + "\n" + node);
+        }
+        return height;
+    }
+
+}
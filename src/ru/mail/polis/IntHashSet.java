@@ -0,0 +1,304 @@
+package ru.mail.polis;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * Множество int с открытой адресацией и линейным пробированием.
+ * Значения лежат прямо в массиве int[], поэтому на элемент приходится 4 / loadFactor байт
+ * вместо узла и упакованного ключа в ChainHashTable, а проба — последовательный проход по соседним ячейкам.
+ * <p>
+ * Пустая ячейка — 0; сам 0 хранится отдельным флагом containsZero.
+ * Удаление сдвигает следующие элементы кластера назад (backward shift), так что удалённых ячеек (tombstone) нет
+ * и поиск промаха всегда останавливается на первой пустой ячейке.
+ * Методы Set&lt;Integer&gt; тоже работают, распаковывая значение на входе.
+ */
+public class IntHashSet extends AbstractSet<Integer> implements Set<Integer> {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+    private static final int EMPTY = 0;
+
+    private final float loadFactor;
+    private int[] table;
+    private int mask;
+    private int threshold; //Если ненулевых элементов стало больше, таблица удваивается
+    private boolean containsZero;
+    private int size;
+    private int modCount;
+
+    public IntHashSet() {
+        this(DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * @param loadFactor доля занятых ячеек, при которой таблица удваивается, от 0 до 1 не включая
+     */
+    public IntHashSet(float loadFactor) {
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("loadFactor = " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int length) {
+        table = new int[length];
+        mask = length - 1;
+        threshold = Math.min(length - 1, (int) (length * loadFactor));
+    }
+
+    private int slot(int value) {
+        return Hashing.spread(value) & mask;
+    }
+
+    /**
+     * Вставляет значение в множество
+     *
+     * @return true, если значения в множестве не было
+     */
+    public boolean addInt(int value) {
+        if (value == EMPTY) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+        } else {
+            int idx = slot(value);
+            for (int curr = table[idx]; curr != EMPTY; curr = table[idx]) {
+                if (curr == value) {
+                    return false;
+                }
+                idx = (idx + 1) & mask;
+            }
+            table[idx] = value;
+            if (size - (containsZero ? 1 : 0) >= threshold) {
+                rehash(table.length << 1);
+            }
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * @return true, если значение есть в множестве
+     */
+    public boolean containsInt(int value) {
+        if (value == EMPTY) {
+            return containsZero;
+        }
+        int idx = slot(value);
+        for (int curr = table[idx]; curr != EMPTY; curr = table[idx]) {
+            if (curr == value) {
+                return true;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет значение из множества
+     *
+     * @return true, если значение было в множестве
+     */
+    public boolean removeInt(int value) {
+        if (value == EMPTY) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+        } else {
+            int idx = slot(value);
+            for (int curr = table[idx]; curr != value; curr = table[idx]) {
+                if (curr == EMPTY) {
+                    return false;
+                }
+                idx = (idx + 1) & mask;
+            }
+            shiftBack(idx, null);
+        }
+        size--;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Освобождает ячейку idx и сдвигает на её место следующие элементы кластера,
+     * чей домашний слот не лежит циклически между освободившейся ячейкой и их текущей.
+     * Элементы, перенесённые из начала таблицы в её конец, передаются итератору: он уже прошёл эти ячейки
+     */
+    private void shiftBack(int idx, KeyIterator iterator) {
+        int free = idx;
+        int curr = (free + 1) & mask;
+        for (int value = table[curr]; value != EMPTY; value = table[curr]) {
+            int home = slot(value);
+            //Элемент можно перенести в free, если free лежит на его пути от home до curr
+            boolean reachable = free <= curr ? home <= free || home > curr : home <= free && home > curr;
+            if (reachable) {
+                table[free] = value;
+                if (iterator != null && curr < free) {
+                    iterator.wrapped(value);
+                }
+                free = curr;
+            }
+            curr = (curr + 1) & mask;
+        }
+        table[free] = EMPTY;
+    }
+
+    /**
+     * Перекладывает элементы в таблицу новой длины: все различны, поэтому каждый занимает первую пустую ячейку
+     */
+    private void rehash(int newLength) {
+        int[] old = table;
+        allocate(newLength);
+        for (int value : old) {
+            if (value != EMPTY) {
+                int idx = slot(value);
+                while (table[idx] != EMPTY) {
+                    idx = (idx + 1) & mask;
+                }
+                table[idx] = value;
+            }
+        }
+    }
+
+    /*
+     * Set<Integer>: распаковка на входе
+     */
+
+    private static int unbox(Object object) {
+        if (object == null) {
+            throw new NullPointerException("value is null");
+        }
+        return (Integer) object;
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return addInt(unbox(value));
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return containsInt(unbox(object));
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        return removeInt(unbox(object));
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        containsZero = false;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * Обходит таблицу с конца к началу, затем 0.
+     * remove() сдвигает элементы кластера назад, то есть в уже пройденные ячейки с большими индексами
+     * или в ещё не пройденные с меньшими; только элементы, перенесённые из начала таблицы в её конец,
+     * попадают в пройденную часть — их итератор запоминает и выдаёт в самом конце.
+     */
+    private class KeyIterator implements PrimitiveIterator.OfInt {
+
+        private int index = table.length; //Ячейки от index и дальше пройдены
+        private boolean zeroPending = containsZero;
+        private int[] wrapped; //Элементы, перенесённые remove() в пройденные ячейки
+        private int wrappedCount;
+        private int wrappedNext;
+        private boolean fromTable; //Последний элемент выдан из ячейки index, а не из wrapped и не 0
+        private boolean canRemove;
+        private int lastValue;
+        private int expectedModCount = modCount;
+
+        /**
+         * Следующая непустая непройденная ячейка; после remove() ячейка могла опустеть, поэтому ищется заново
+         */
+        private int peek() {
+            int idx = index;
+            do {
+                idx--;
+            } while (idx >= 0 && table[idx] == EMPTY);
+            return idx;
+        }
+
+        void wrapped(int value) {
+            if (wrapped == null) {
+                wrapped = new int[4];
+            } else if (wrappedCount == wrapped.length) {
+                wrapped = Arrays.copyOf(wrapped, wrappedCount * 2);
+            }
+            wrapped[wrappedCount++] = value;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peek() >= 0 || zeroPending || wrappedNext < wrappedCount;
+        }
+
+        @Override
+        public int nextInt() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            int idx = peek();
+            fromTable = idx >= 0;
+            if (fromTable) {
+                index = idx;
+                lastValue = table[idx];
+            } else if (zeroPending) {
+                index = 0;
+                zeroPending = false;
+                lastValue = EMPTY;
+            } else if (wrappedNext < wrappedCount) {
+                index = 0;
+                lastValue = wrapped[wrappedNext++];
+            } else {
+                throw new NoSuchElementException();
+            }
+            canRemove = true;
+            return lastValue;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (fromTable) {
+                shiftBack(index, this);
+                size--;
+                modCount++;
+            } else {
+                //Таблица уже пройдена целиком, сдвиги больше не важны
+                removeInt(lastValue);
+            }
+            canRemove = false;
+            expectedModCount = modCount;
+        }
+    }
+
+}
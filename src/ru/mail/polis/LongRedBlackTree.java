@@ -0,0 +1,578 @@
+package ru.mail.polis;
+
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Красно-чёрное дерево long в естественном порядке. Ключ лежит в узле примитивом и сравнивается прямо в цикле,
+ * так что addLong / containsLong / removeLong не создают Long и не вызывают compareTo через интерфейс.
+ * Цвет — boolean, пустое дерево — root == nil, листья — один nil-узел этого дерева.
+ * <p>
+ * Методы NavigableSet&lt;Long&gt; тоже работают (значение распаковывается на входе и упаковывается
+ * только на выходе). Итератор — PrimitiveIterator.OfLong: nextLong() обходит дерево без упаковки.
+ */
+public class LongRedBlackTree extends AbstractBalancedSortedSet<Long> {
+
+    private final Node nil = new Node(0, null);
+    private Node root = nil;
+    private int size;
+    private int modCount; //Число структурных изменений, для fail-fast итераторов
+
+    private static final class Node {
+        long value;
+        Node left;
+        Node right;
+        Node parent;
+        boolean red;
+
+        Node(long value, Node nil) {
+            this.value = value;
+            this.left = nil;
+            this.right = nil;
+            this.parent = nil;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" +
+                    "value=" + value +
+                    ", left=" + (left.left != null ? left : "nil") +
+                    ", right=" + (right.left != null ? right : "nil") +
+                    ", color=" + (red ? "RED" : "BLACK") +
+                    "} \n";
+        }
+    }
+
+    /**
+     * Вставляет значение в дерево
+     *
+     * @return true, если значения в дереве не было
+     */
+    public boolean addLong(long value) {
+        Node parent = nil;
+        Node tmp = root;
+        while (tmp != nil) {
+            parent = tmp;
+            if (value == tmp.value) {
+                return false;
+            }
+            tmp = value < tmp.value ? tmp.left : tmp.right;
+        }
+        Node z = new Node(value, nil);
+        z.parent = parent;
+        if (parent == nil) {
+            root = z;
+        } else if (value < parent.value) {
+            parent.left = z;
+        } else {
+            parent.right = z;
+        }
+        z.red = true;
+        insertFixup(z);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * @return true, если значение есть в дереве
+     */
+    public boolean containsLong(long value) {
+        return search(value) != nil;
+    }
+
+    /**
+     * Удаляет значение из дерева
+     *
+     * @return true, если значение было в дереве
+     */
+    public boolean removeLong(long value) {
+        Node rm = search(value);
+        if (rm == nil) {
+            return false;
+        }
+        delete(rm);
+        return true;
+    }
+
+    /**
+     * @return наименьшее значение
+     * @throws NoSuchElementException если дерево пустое
+     */
+    public long firstLong() {
+        if (root == nil) {
+            throw new NoSuchElementException("first");
+        }
+        return findNext(root).value;
+    }
+
+    /**
+     * @return наибольшее значение
+     * @throws NoSuchElementException если дерево пустое
+     */
+    public long lastLong() {
+        if (root == nil) {
+            throw new NoSuchElementException("last");
+        }
+        return findPrev(root).value;
+    }
+
+    private Node search(long value) {
+        Node curr = root;
+        while (curr != nil && value != curr.value) {
+            curr = value < curr.value ? curr.left : curr.right;
+        }
+        return curr;
+    }
+
+    private void insertFixup(Node tmp) {
+        while (tmp.parent.red) {
+            Node grand = tmp.parent.parent;
+            boolean flag = tmp.parent == grand.left; //Отец — левый(true) или правый(false) сын деда
+            Node uncle = flag ? grand.right : grand.left;
+            if (uncle.red) {
+                tmp.parent.red = false;
+                uncle.red = false;
+                grand.red = true;
+                tmp = grand;
+            } else {
+                if (tmp == (flag ? tmp.parent.right : tmp.parent.left)) {
+                    tmp = tmp.parent;
+                    if (flag) rotateLeft(tmp);
+                    else rotateRight(tmp);
+                }
+                tmp.parent.red = false;
+                tmp.parent.parent.red = true;
+                if (flag) rotateRight(tmp.parent.parent);
+                else rotateLeft(tmp.parent.parent);
+            }
+        }
+        root.red = false;
+    }
+
+    private void rotateRight(Node tmp) {
+        Node x = tmp.left;
+        tmp.left = x.right;
+        if (x.right != nil) {
+            x.right.parent = tmp;
+        }
+        x.parent = tmp.parent;
+        if (tmp.parent == nil) {
+            root = x;
+        } else if (tmp == tmp.parent.right) {
+            tmp.parent.right = x;
+        } else {
+            tmp.parent.left = x;
+        }
+        x.right = tmp;
+        tmp.parent = x;
+    }
+
+    private void rotateLeft(Node tmp) {
+        Node x = tmp.right;
+        tmp.right = x.left;
+        if (x.left != nil) {
+            x.left.parent = tmp;
+        }
+        x.parent = tmp.parent;
+        if (tmp.parent == nil) {
+            root = x;
+        } else if (tmp == tmp.parent.left) {
+            tmp.parent.left = x;
+        } else {
+            tmp.parent.right = x;
+        }
+        x.left = tmp;
+        tmp.parent = x;
+    }
+
+    /**
+     * Удаляет узел; при двух детях на его место переставляется следующий узел, как в RedBlackTree,
+     * поэтому остальные узлы остаются на месте и итераторы продолжают обход
+     */
+    private void delete(Node rm) {
+        Node balance;
+        boolean wasBlackRemoved = !rm.red;
+        if (rm.left == nil) {
+            balance = rm.right;
+            changeRelationBetween(rm, rm.right);
+        } else if (rm.right == nil) {
+            balance = rm.left;
+            changeRelationBetween(rm, rm.left);
+        } else {
+            Node next = findNext(rm.right);
+            wasBlackRemoved = !next.red;
+            balance = next.right;
+            if (next.parent == rm) {
+                balance.parent = next;
+            } else {
+                changeRelationBetween(next, next.right);
+                next.right = rm.right;
+                next.right.parent = next;
+            }
+            changeRelationBetween(rm, next);
+            next.left = rm.left;
+            next.left.parent = next;
+            next.red = rm.red;
+        }
+        if (wasBlackRemoved) {
+            removeFixup(balance);
+        }
+        size--;
+        modCount++;
+    }
+
+    private void changeRelationBetween(Node rm, Node child) {
+        if (rm.parent == nil) {
+            root = child;
+        } else if (rm == rm.parent.left) {
+            rm.parent.left = child;
+        } else {
+            rm.parent.right = child;
+        }
+        child.parent = rm.parent;
+    }
+
+    private void removeFixup(Node tmp) {
+        while (tmp != root && !tmp.red) {
+            boolean flag = tmp == tmp.parent.left; //Отвечает, левым(true) или правым(false) потомком является узел
+            Node sibling = flag ? tmp.parent.right : tmp.parent.left;
+            if (sibling.red) {
+                sibling.red = false;
+                tmp.parent.red = true;
+                if (flag) rotateLeft(tmp.parent);
+                else rotateRight(tmp.parent);
+                sibling = flag ? tmp.parent.right : tmp.parent.left;
+            }
+            if (!sibling.left.red && !sibling.right.red) {
+                sibling.red = true;
+                tmp = tmp.parent;
+            } else {
+                Node near = flag ? sibling.left : sibling.right; //Ближний к tmp племянник
+                Node far = flag ? sibling.right : sibling.left; //Дальний племянник
+                if (!far.red) {
+                    near.red = false;
+                    sibling.red = true;
+                    if (flag) rotateRight(sibling);
+                    else rotateLeft(sibling);
+                    sibling = flag ? tmp.parent.right : tmp.parent.left;
+                    far = flag ? sibling.right : sibling.left;
+                }
+                sibling.red = tmp.parent.red;
+                tmp.parent.red = false;
+                far.red = false;
+                if (flag) rotateLeft(tmp.parent);
+                else rotateRight(tmp.parent);
+                tmp = root;
+            }
+        }
+        tmp.red = false;
+    }
+
+    private Node findNext(Node tmp) {
+        while (tmp.left != nil) {
+            tmp = tmp.left;
+        }
+        return tmp;
+    }
+
+    private Node findPrev(Node tmp) {
+        while (tmp.right != nil) {
+            tmp = tmp.right;
+        }
+        return tmp;
+    }
+
+    private Node successor(Node tmp) {
+        if (tmp.right != nil) {
+            return findNext(tmp.right);
+        }
+        Node parent = tmp.parent;
+        while (parent != nil && tmp == parent.right) {
+            tmp = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    private Node predecessor(Node tmp) {
+        if (tmp.left != nil) {
+            return findPrev(tmp.left);
+        }
+        Node parent = tmp.parent;
+        while (parent != nil && tmp == parent.left) {
+            tmp = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    /*
+     * NavigableSet<Long>: распаковка на входе, упаковка на выходе
+     */
+
+    private static long unbox(Object object) {
+        if (object == null) {
+            throw new NullPointerException("value is null");
+        }
+        return (Long) object;
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return addLong(unbox(value));
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return containsLong(unbox(object));
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        return removeLong(unbox(object));
+    }
+
+    @Override
+    public Long first() {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() {
+        return lastLong();
+    }
+
+    @Override
+    public Long pollFirst() {
+        if (root == nil) {
+            return null;
+        }
+        Node tmp = findNext(root);
+        delete(tmp);
+        return tmp.value;
+    }
+
+    @Override
+    public Long pollLast() {
+        if (root == nil) {
+            return null;
+        }
+        Node tmp = findPrev(root);
+        delete(tmp);
+        return tmp.value;
+    }
+
+    @Override
+    public Long lower(Long value) {
+        return valueOf(floorNode(unbox(value), false));
+    }
+
+    @Override
+    public Long floor(Long value) {
+        return valueOf(floorNode(unbox(value), true));
+    }
+
+    @Override
+    public Long ceiling(Long value) {
+        return valueOf(ceilingNode(unbox(value), true));
+    }
+
+    @Override
+    public Long higher(Long value) {
+        return valueOf(ceilingNode(unbox(value), false));
+    }
+
+    private Long valueOf(Node node) {
+        return node != nil ? node.value : null;
+    }
+
+    /**
+     * Узел с наибольшим значением, не превосходящим (при inclusive = false — меньшим) value, или nil
+     */
+    private Node floorNode(long value, boolean inclusive) {
+        Node result = nil;
+        Node curr = root;
+        while (curr != nil) {
+            if (value == curr.value && inclusive) {
+                return curr;
+            }
+            if (value > curr.value) {
+                result = curr;
+                curr = curr.right;
+            } else {
+                curr = curr.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Узел с наименьшим значением, не меньшим (при inclusive = false — большим) value, или nil
+     */
+    private Node ceilingNode(long value, boolean inclusive) {
+        Node result = nil;
+        Node curr = root;
+        while (curr != nil) {
+            if (value == curr.value && inclusive) {
+                return curr;
+            }
+            if (value < curr.value) {
+                result = curr;
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        root = nil;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Естественный порядок long
+     */
+    @Override
+    public Comparator<? super Long> comparator() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "LongRBTree{" +
+                "size=" + size + ", " +
+                "tree=" + (root != nil ? root : "nil") +
+                '}';
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return iterator(null, true, null, true, false);
+    }
+
+    @Override
+    PrimitiveIterator.OfLong iterator(Long from, boolean fromInclusive, Long to, boolean toInclusive, boolean descending) {
+        return new TreeIterator(from, fromInclusive, to, toInclusive, descending);
+    }
+
+    /**
+     * Итератор по ссылкам на родителя, как в RedBlackTree; граница to хранится примитивом
+     */
+    private class TreeIterator implements PrimitiveIterator.OfLong {
+
+        private Node next;
+        private Node lastReturned = nil;
+        private final boolean bounded;
+        private final long to;
+        private final boolean toInclusive;
+        private final boolean descending;
+        private int expectedModCount = modCount;
+
+        TreeIterator(Long from, boolean fromInclusive, Long to, boolean toInclusive, boolean descending) {
+            this.bounded = to != null;
+            this.to = bounded ? to : 0;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+            if (root == nil) {
+                next = nil;
+            } else if (from == null) {
+                next = descending ? findPrev(root) : findNext(root);
+            } else {
+                next = descending ? floorNode(from, fromInclusive) : ceilingNode(from, fromInclusive);
+            }
+            checkBound();
+        }
+
+        private void checkBound() {
+            if (next != nil && bounded) {
+                int cmp = Long.compare(next.value, to);
+                if ((descending ? cmp < 0 : cmp > 0) || cmp == 0 && !toInclusive) {
+                    next = nil;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != nil;
+        }
+
+        @Override
+        public long nextLong() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == nil) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = descending ? predecessor(next) : successor(next);
+            checkBound();
+            return lastReturned.value;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == nil) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            delete(lastReturned);
+            lastReturned = nil;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Проверяет свойства красно-чёрного дерева (чёрный корень, у красного узла чёрные дети,
+     * одинаковая чёрная высота), порядок значений и ссылки на родителя
+     *
+     * @throws NotBalancedTreeException если какое-либо свойство невыполнено
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        if (root.red) {
+            throw new NotBalancedTreeException("Root must be black");
+        }
+        if (nil.red) {
+            throw new NotBalancedTreeException("nil must be black");
+        }
+        check(root, nil, 0, false, 0, false);
+    }
+
+    private int check(Node node, Node parent, long lo, boolean hasLo, long hi, boolean hasHi) throws NotBalancedTreeException {
+        if (node == nil) {
+            return 1;
+        }
+        if (node.parent != parent) {
+            throw new NotBalancedTreeException("Wrong parent link\n" + node);
+        }
+        if (hasLo && node.value <= lo || hasHi && node.value >= hi) {
+            throw new NotBalancedTreeException("Value " + node.value + " is out of order");
+        }
+        if (node.red && (node.left.red || node.right.red)) {
+            throw new NotBalancedTreeException("If a node is red, then its children must be black.\n" + node);
+        }
+        int leftBlackHeight = check(node.left, node, lo, hasLo, node.value, true);
+        int rightBlackHeight = check(node.right, node, node.value, true, hi, hasHi);
+        if (leftBlackHeight != rightBlackHeight) {
+            throw NotBalancedTreeException.create("Black height must be equal.", leftBlackHeight, rightBlackHeight, node.toString());
+        }
+        return node.red ? leftBlackHeight : leftBlackHeight + 1;
+    }
+
+}
@@ -0,0 +1,515 @@
+package ru.mail.polis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Хеш-таблица строк из строчных латинских букв с открытой адресацией и двойным хешированием,
+ * целиком лежащая вне кучи: в direct ByteBuffer или в файле, отображённом в память.
+ * В куче остаётся только сам объект таблицы, поэтому сборщик мусора не обходит элементы,
+ * а таблица из файла открывается заново без перестроения — заголовок и ячейки уже на месте.
+ * <p>
+ * Ячейка фиксированной ширины: байт состояния (пустая / занята / удалена), байт длины и до maxKeyLength
+ * байт строки (ASCII). Последовательность проб та же, что у {@link Key#hashCode(int, int)}:
+ * размер таблицы — степень двойки (изначально 8), перехеширование при load factor = 1/2,
+ * а при удалённых ячейках больше четверти таблица перестраивается без них, как OpenHashTable:
+ * порог проверяют add и remove, а удаление через итератор откладывает перестройку до следующего изменения.
+ * <p>
+ * Один ByteBuffer адресует не больше 2 ГБ, поэтому ячеек не больше (2^31 - HEADER_SIZE) / (maxKeyLength + 2).
+ * Перехеширование переписывает файл на месте и не защищено от падения процесса посередине.
+ */
+public class OffHeapOpenHashTable extends AbstractSet<String> implements Set<String>, Closeable {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int MAX_KEY_LENGTH = 255;
+
+    /*
+     * Заголовок: магическое число, maxKeyLength, число ячеек, size, число удалённых ячеек, версия формата
+     */
+    private static final int MAGIC = 0x4F484854; //"OHHT"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int KEY_LENGTH_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int TOMBSTONES_OFFSET = 16;
+    private static final int VERSION_OFFSET = 20;
+    private static final int VERSION = 1; //Меняется вместе с раскладкой ячеек или функцией проб
+    private static final int HEADER_SIZE = 32;
+
+    private static final byte EMPTY = 0;
+    private static final byte OCCUPIED = 1;
+    private static final byte DELETED = 2;
+
+    private final int maxKeyLength;
+    private final int slotWidth;
+    private final FileChannel channel; //null — таблица в direct ByteBuffer
+    private ByteBuffer buffer;
+    private int capacity;
+    private int size;
+    private int tombstones;
+    private int modCount;
+
+    /**
+     * Таблица в direct ByteBuffer
+     *
+     * @param maxKeyLength наибольшая длина строки, от 1 до 255
+     */
+    public OffHeapOpenHashTable(int maxKeyLength) {
+        this(null, checkKeyLength(maxKeyLength));
+        this.buffer = ByteBuffer.allocateDirect(bytesFor(INITIAL_CAPACITY));
+        format(INITIAL_CAPACITY);
+    }
+
+    private OffHeapOpenHashTable(FileChannel channel, int maxKeyLength) {
+        this.channel = channel;
+        this.maxKeyLength = maxKeyLength;
+        this.slotWidth = maxKeyLength + 2;
+    }
+
+    /**
+     * Открывает таблицу из файла, отображая его в память, или создаёт новую, если файл пустой или его нет.
+     * Изменения пишутся прямо в отображение; {@link #close()} сбрасывает их на диск.
+     *
+     * @param maxKeyLength наибольшая длина строки; у существующего файла должна совпадать с записанной
+     * @throws IOException если файл не удалось открыть или он не является такой таблицей
+     */
+    public static OffHeapOpenHashTable open(Path file, int maxKeyLength) throws IOException {
+        checkKeyLength(maxKeyLength);
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            OffHeapOpenHashTable table = new OffHeapOpenHashTable(channel, maxKeyLength);
+            if (channel.size() == 0) {
+                table.buffer = table.map(INITIAL_CAPACITY);
+                table.format(INITIAL_CAPACITY);
+            } else {
+                table.load();
+            }
+            return table;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int checkKeyLength(int maxKeyLength) {
+        if (maxKeyLength < 1 || maxKeyLength > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("maxKeyLength = " + maxKeyLength);
+        }
+        return maxKeyLength;
+    }
+
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) {
+            throw new IOException("File is too short: " + fileSize);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not an OffHeapOpenHashTable file");
+        }
+        if (header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Format version " + header.getInt(VERSION_OFFSET) + " in file, " + VERSION + " supported");
+        }
+        if (header.getInt(KEY_LENGTH_OFFSET) != maxKeyLength) {
+            throw new IOException("maxKeyLength = " + header.getInt(KEY_LENGTH_OFFSET) + " in file, " + maxKeyLength + " requested");
+        }
+        int storedCapacity = header.getInt(CAPACITY_OFFSET);
+        if (Integer.bitCount(storedCapacity) != 1 || fileSize < bytesFor(storedCapacity)) {
+            throw new IOException("Corrupted header: capacity = " + storedCapacity + ", file size = " + fileSize);
+        }
+        buffer = map(storedCapacity);
+        capacity = storedCapacity;
+        size = buffer.getInt(SIZE_OFFSET);
+        tombstones = buffer.getInt(TOMBSTONES_OFFSET);
+    }
+
+    private MappedByteBuffer map(int newCapacity) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytesFor(newCapacity));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map " + newCapacity + " slots", e);
+        }
+    }
+
+    private int bytesFor(int slots) {
+        long bytes = HEADER_SIZE + (long) slots * slotWidth;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Table of " + slots + " slots does not fit into a ByteBuffer");
+        }
+        return (int) bytes;
+    }
+
+    /**
+     * Записывает заголовок и помечает все ячейки пустыми
+     */
+    private void format(int newCapacity) {
+        capacity = newCapacity;
+        size = 0;
+        tombstones = 0;
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(KEY_LENGTH_OFFSET, maxKeyLength);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        for (int idx = 0; idx < capacity; idx++) {
+            buffer.put(offset(idx), EMPTY);
+        }
+        writeCounters();
+    }
+
+    private void writeCounters() {
+        buffer.putInt(SIZE_OFFSET, size);
+        buffer.putInt(TOMBSTONES_OFFSET, tombstones);
+    }
+
+    private int offset(int idx) {
+        return HEADER_SIZE + idx * slotWidth;
+    }
+
+    /**
+     * Строка в той же обёртке, что и элементы OpenHashTable: её hashCode(tableSize, probId) задаёт пробы этой таблицы
+     */
+    public static final class Key extends CheckedOpenHashTableEntity {
+
+        private final String value;
+
+        public Key(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode(int tableSize, int probId) throws IllegalArgumentException {
+            if (probId < 0 || probId >= tableSize) {
+                throw new IllegalArgumentException("probId = " + probId);
+            }
+            return probe(value.hashCode(), tableSize, probId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && value.equals(((Key) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    /**
+     * Двойное хеширование, как у Student и BenchKey: начальная ячейка и шаг — перемешанный String.hashCode(),
+     * иначе у коротких строк различаются только младшие биты. h2 нечётный, поэтому при размере-степени двойки
+     * пробы обходят все ячейки
+     *
+     * @param h String.hashCode() ключа
+     */
+    static int probe(int h, int tableSize, int probId) {
+        int h1 = mix(h);
+        int h2 = mix(h1) | 1;
+        return (h1 + probId * h2) & (tableSize - 1);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return true, если строка состоит из строчных латинских букв и помещается в ячейку
+     */
+    private boolean fits(String value) {
+        if (value.length() > maxKeyLength) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(int offset, String value) {
+        if ((buffer.get(offset + 1) & 0xFF) != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer.get(offset + 2 + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(int offset, String value) {
+        buffer.put(offset, OCCUPIED);
+        buffer.put(offset + 1, (byte) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put(offset + 2 + i, (byte) value.charAt(i));
+        }
+    }
+
+    private String read(int offset) {
+        int length = buffer.get(offset + 1) & 0xFF;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer.get(offset + 2 + i);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Вставляет строку в хеш-таблицу.
+     *
+     * @param value строка из строчных латинских букв длиной не больше maxKeyLength
+     * @return true, если строка в хеш-таблице отсутствовала
+     * @throws IllegalArgumentException если строка не из алфавита или длиннее maxKeyLength
+     */
+    @Override
+    public boolean add(String value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (!fits(value)) {
+            throw new IllegalArgumentException("Only lowercase latin strings up to " + maxKeyLength + " chars: " + value);
+        }
+        compactIfNeeded();
+        int h = value.hashCode();
+        int free = -1; //Первая удалённая ячейка на пути пробы
+        for (int probId = 0; probId < capacity; probId++) {
+            int offset = offset(probe(h, capacity, probId));
+            byte state = buffer.get(offset);
+            if (state == EMPTY) {
+                if (free < 0) {
+                    free = offset;
+                }
+                break;
+            }
+            if (state == DELETED) {
+                if (free < 0) {
+                    free = offset;
+                }
+            } else if (matches(offset, value)) {
+                return false;
+            }
+        }
+        if (buffer.get(free) == DELETED) {
+            tombstones--;
+        }
+        write(free, value);
+        size++;
+        modCount++;
+        writeCounters();
+        if (size * 2 >= capacity) {
+            rehash(capacity << 1);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        String value = (String) object;
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        return fits(value) && offsetOf(value) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        String value = (String) object;
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (!fits(value)) {
+            return false;
+        }
+        int offset = offsetOf(value);
+        if (offset < 0) {
+            return false;
+        }
+        removeAt(offset);
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Проходит пробы до строки или до пустой (не удалённой) ячейки
+     *
+     * @return смещение ячейки со строкой или -1, если её нет
+     */
+    private int offsetOf(String value) {
+        int h = value.hashCode();
+        for (int probId = 0; probId < capacity; probId++) {
+            int offset = offset(probe(h, capacity, probId));
+            byte state = buffer.get(offset);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == OCCUPIED && matches(offset, value)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int offset) {
+        buffer.put(offset, DELETED);
+        tombstones++;
+        size--;
+        modCount++;
+        writeCounters();
+    }
+
+    /**
+     * Перестраивает таблицу того же размера, если удалённые ячейки заняли больше её четверти
+     */
+    private void compactIfNeeded() {
+        if (tombstones * 4 > capacity) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Перекладывает строки в таблицу нового размера без удалённых ячеек.
+     * Старые ячейки сначала копируются в отдельный direct-буфер, потому что у файла новая таблица занимает то же место.
+     */
+    private void rehash(int newCapacity) {
+        ByteBuffer slots = buffer.duplicate();
+        slots.position(HEADER_SIZE).limit(HEADER_SIZE + capacity * slotWidth);
+        ByteBuffer old = ByteBuffer.allocateDirect(capacity * slotWidth);
+        old.put(slots);
+        int oldCapacity = capacity;
+        int oldSize = size;
+        if (channel == null) {
+            buffer = ByteBuffer.allocateDirect(bytesFor(newCapacity));
+        } else {
+            buffer = map(newCapacity);
+        }
+        format(newCapacity);
+        for (int idx = 0; idx < oldCapacity; idx++) {
+            int from = idx * slotWidth;
+            if (old.get(from) != OCCUPIED) {
+                continue;
+            }
+            int length = old.get(from + 1) & 0xFF;
+            int h = 0;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + old.get(from + 2 + i); //Тот же String.hashCode(): все символы ASCII
+            }
+            int probId = 0;
+            int to = offset(probe(h, capacity, probId));
+            while (buffer.get(to) != EMPTY) {
+                to = offset(probe(h, capacity, ++probId));
+            }
+            for (int i = 0; i < slotWidth; i++) {
+                buffer.put(to + i, old.get(from + i));
+            }
+        }
+        size = oldSize;
+        writeCounters();
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        format(capacity);
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Обходит ячейки по порядку; строки создаются в куче только при выдаче.
+     * remove() только помечает ячейку удалённой и не перестраивает таблицу;
+     * перестройку выполнит следующий add или remove самой таблицы.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = advance(0);
+            private int lastReturned = -1;
+            private int expectedModCount = modCount;
+
+            private int advance(int idx) {
+                while (idx < capacity && buffer.get(offset(idx)) != OCCUPIED) {
+                    idx++;
+                }
+                return idx;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < capacity;
+            }
+
+            @Override
+            public String next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= capacity) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                next = advance(next + 1);
+                return read(offset(lastReturned));
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(offset(lastReturned));
+                lastReturned = -1;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    /**
+     * Для таблицы в файле сбрасывает отображение на диск и закрывает файл; для direct-буфера ничего не делает.
+     * Сам буфер освобождается сборщиком вместе с объектом таблицы.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            ((MappedByteBuffer) buffer).force();
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapOpenHashTable{" +
+                "size=" + size +
+                ", capacity=" + capacity +
+                ", maxKeyLength=" + maxKeyLength +
+                ", file=" + (channel != null) +
+                '}';
+    }
+
+}
@@ -1,15 +1,37 @@
 package ru.mail.polis;
 
 import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+/**
+ * Хеш-таблица с открытой адресацией и двойным хешированием.
+ * Номер ячейки для пробы считает сам элемент: value.hashCode(tableSize, probId).
+ * <p>
+ * Элементы лежат в плоском массиве table, а удалённые ячейки (tombstone) отмечены
+ * в отдельной битовой маске deleted: null без бита — пустая ячейка, на которой поиск останавливается,
+ * null с битом — удалённая, которую поиск проходит насквозь, а вставка может занять.
+ * Размер таблицы — степень двойки, перехеширование с удвоением при load factor = 1/2.
+ * Когда удалённых ячеек становится больше четверти таблицы, она перестраивается без них,
+ * чтобы после множества удалений поиск промаха не превращался в обход всей таблицы.
+ * Порог проверяют add и remove; удаление через итератор таблицу не трогает, и перестройка
+ * откладывается до следующей вставки или удаления.
+ */
 public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E> implements Set<E> {
 
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Object[] table;
+    private long[] deleted; //Битовая маска удалённых ячеек
     private int size;
+    private int tombstones; //Число удалённых ячеек
+    private int modCount;
 
     public OpenHashTable() {
-        //todo
+        this.table = new Object[INITIAL_CAPACITY];
+        this.deleted = new long[bitmapLength(INITIAL_CAPACITY)];
     }
 
     /**
@@ -21,9 +43,43 @@ public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E>
      */
     @Override
     public boolean add(E value) {
-        //todo: следует реализовать
-        //Используйте value.hashCode(tableSize, probId) для вычисления хеша
-        return false;
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        compactIfNeeded();
+        int length = table.length;
+        int free = -1; //Первая удалённая ячейка на пути пробы
+        for (int probId = 0; probId < length; probId++) {
+            int idx = value.hashCode(length, probId);
+            Object curr = table[idx];
+            if (curr == null) {
+                if (!isDeleted(idx)) {
+                    if (free < 0) {
+                        free = idx;
+                    }
+                    break;
+                }
+                if (free < 0) {
+                    free = idx;
+                }
+            } else if (value.equals(curr)) {
+                return false;
+            }
+        }
+        if (free < 0) {
+            throw new IllegalStateException("Hash function of " + value + " does not visit all cells");
+        }
+        if (isDeleted(free)) {
+            clearDeleted(free);
+            tombstones--;
+        }
+        table[free] = value;
+        size++;
+        modCount++;
+        if (size * 2 >= length) {
+            rehash(length << 1);
+        }
+        return true;
     }
 
     /**
@@ -37,9 +93,13 @@ public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E>
     public boolean remove(Object object) {
         @SuppressWarnings("unchecked")
         E value = (E) object;
-        //todo: следует реализовать
-        //Используйте value.hashCode(tableSize, probId) для вычисления хеша
-        return false;
+        int idx = indexOf(value);
+        if (idx < 0) {
+            return false;
+        }
+        removeAt(idx);
+        compactIfNeeded();
+        return true;
     }
 
     /**
@@ -53,9 +113,90 @@ public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E>
     public boolean contains(Object object) {
         @SuppressWarnings("unchecked")
         E value = (E) object;
-        //todo: следует реализовать
-        //Используйте value.hashCode(tableSize, probId) для вычисления хеша
-        return false;
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Проходит пробы до элемента или до пустой (не удалённой) ячейки
+     *
+     * @return индекс ячейки с элементом или -1, если его нет
+     */
+    private int indexOf(E value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int length = table.length;
+        for (int probId = 0; probId < length; probId++) {
+            int idx = value.hashCode(length, probId);
+            Object curr = table[idx];
+            if (curr == null) {
+                if (!isDeleted(idx)) {
+                    return -1;
+                }
+            } else if (value.equals(curr)) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int idx) {
+        table[idx] = null;
+        setDeleted(idx);
+        tombstones++;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Перестраивает таблицу того же размера, если удалённые ячейки заняли больше её четверти
+     */
+    private void compactIfNeeded() {
+        if (tombstones * 4 > table.length) {
+            rehash(table.length);
+        }
+    }
+
+    /**
+     * Перекладывает элементы в новую таблицу без удалённых ячеек.
+     * Все элементы различны, поэтому сравнения не нужны: каждый занимает первую пустую ячейку своей пробы.
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash(int newLength) {
+        Object[] old = table;
+        table = new Object[newLength];
+        deleted = new long[bitmapLength(newLength)];
+        tombstones = 0;
+        for (Object curr : old) {
+            if (curr != null) {
+                E value = (E) curr;
+                int probId = 0;
+                int idx = value.hashCode(newLength, probId);
+                while (table[idx] != null) {
+                    if (++probId == newLength) {
+                        throw new IllegalStateException("Hash function of " + value + " does not visit all cells");
+                    }
+                    idx = value.hashCode(newLength, probId);
+                }
+                table[idx] = value;
+            }
+        }
+    }
+
+    private static int bitmapLength(int tableLength) {
+        return (tableLength + Long.SIZE - 1) >>> 6;
+    }
+
+    private boolean isDeleted(int idx) {
+        return (deleted[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    private void setDeleted(int idx) {
+        deleted[idx >>> 6] |= 1L << idx;
+    }
+
+    private void clearDeleted(int idx) {
+        deleted[idx >>> 6] &= ~(1L << idx);
     }
 
     @Override
@@ -63,9 +204,57 @@ public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E>
         return size;
     }
 
+    /**
+     * Обходит ячейки таблицы по порядку. remove() только помечает ячейку удалённой
+     * и не перестраивает таблицу, иначе элементы переехали бы под итератором;
+     * перестройку выполнит следующий add или remove самой таблицы.
+     */
     @Override
     public Iterator<E> iterator() {
-        throw new UnsupportedOperationException();
+        return new Iterator<E>() {
+            private int next = advance(0);
+            private int lastReturned = -1;
+            private int expectedModCount = modCount;
+
+            private int advance(int idx) {
+                while (idx < table.length && table[idx] == null) {
+                    idx++;
+                }
+                return idx;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < table.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= table.length) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                next = advance(next + 1);
+                return (E) table[lastReturned];
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(lastReturned);
+                lastReturned = -1;
+                expectedModCount = modCount;
+            }
+        };
     }
 
 }
@@ -19,10 +19,14 @@ public interface OpenHashTableEntity {
      * Если методу поочередно дать на вход все значения probIdx, от 0 до tableSize - 1, при фиксированном tableSize,
      * то на выходе должна получиться последовательности из всех возможных индексов ячеек хеш-таблицы
      *
-     * @param tableSize — текущий размер хеш-таблицы
+     * Размер таблицы — степень двойки (так его выбирают OpenHashTable и OffHeapOpenHashTable),
+     * поэтому индекс можно брать маской, а для обхода всех ячеек достаточно нечётного шага
+     *
+     * @param tableSize — текущий размер хеш-таблицы, степень двойки
      * @param probId — номер пробы. Значение от 0 до tableSize - 1
      * @return значение вычисленного хеша
-     * @throws IllegalArgumentException если probIdx < 0 или probIdx >= tableSize
+     * @throws IllegalArgumentException если probIdx < 0 или probIdx >= tableSize;
+     * реализация может бросить его и для tableSize, не являющегося степенью двойки
      */
     int hashCode(int tableSize, int probId) throws IllegalArgumentException;
 
@@ -0,0 +1,529 @@
+package ru.mail.polis;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Персистентное АВЛ-дерево: узлы неизменяемы, а add / remove копируют только путь от корня до изменённого узла
+ * (O(log n) новых узлов) и ставят новый корень, разделяя с прежней версией все нетронутые поддеревья.
+ * <p>
+ * Поэтому {@link #snapshot()} — O(1): это новое дерево с тем же корнем, которое дальше живёт независимо.
+ * Итераторы и поиск читают корень один раз и работают со своей версией, так что долгий обход снимка
+ * не требует ни блокировок, ни копирования, а изменения, сделанные во время обхода, в него не попадают.
+ * <p>
+ * Корень volatile, изменения синхронизированы: один объект можно менять из нескольких потоков,
+ * а читатели никогда не ждут писателей.
+ */
+public class PersistentAVLTree<E extends Comparable<E>> extends AbstractBalancedSortedSet<E> {
+
+    private final Comparator<E> comparator;
+    private volatile Node<E> root;
+
+    public PersistentAVLTree() {
+        this(null);
+    }
+
+    public PersistentAVLTree(Comparator<E> comparator) {
+        this(comparator, null);
+    }
+
+    private PersistentAVLTree(Comparator<E> comparator, Node<E> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * Неизменяемый узел. Высота и размер поддерева считаются при создании
+     */
+    private static final class Node<E> {
+        final E value;
+        final Node<E> left;
+        final Node<E> right;
+        final int height;
+        final int count;
+
+        Node(E value, Node<E> left, Node<E> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.count = count(left) + count(right) + 1;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" +
+                    "value=" + value +
+                    ", left=" + left +
+                    ", right=" + right +
+                    ", height=" + height +
+                    '}';
+        }
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int count(Node<?> node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Снимок текущей версии за O(1). Снимок и исходное дерево дальше меняются независимо друг от друга
+     */
+    public PersistentAVLTree<E> snapshot() {
+        return new PersistentAVLTree<>(comparator, root);
+    }
+
+    private int compare(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Вставляет элемент в дерево.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в дереве отсутствовал
+     */
+    @Override
+    public synchronized boolean add(E value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        Node<E> oldRoot = root;
+        Node<E> newRoot = insert(oldRoot, value);
+        if (newRoot == oldRoot) {
+            return false;
+        }
+        root = newRoot;
+        return true;
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из дерева.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо удалить
+     * @return true, если элемент содержался в дереве
+     */
+    @Override
+    public synchronized boolean remove(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        Node<E> oldRoot = root;
+        Node<E> newRoot = delete(oldRoot, value);
+        if (newRoot == oldRoot) {
+            return false;
+        }
+        root = newRoot;
+        return true;
+    }
+
+    /**
+     * Удаляет наименьший элемент одним спуском с копированием пути. Корень читается один раз под блокировкой,
+     * поэтому два потока не получат один и тот же элемент, как при first() и затем remove()
+     */
+    @Override
+    public synchronized E pollFirst() {
+        Node<E> oldRoot = root;
+        if (oldRoot == null) {
+            return null;
+        }
+        Node<E> min = oldRoot;
+        while (min.left != null) {
+            min = min.left;
+        }
+        root = deleteMin(oldRoot);
+        return min.value;
+    }
+
+    /**
+     * Удаляет наибольший элемент, как {@link #pollFirst()}
+     */
+    @Override
+    public synchronized E pollLast() {
+        Node<E> oldRoot = root;
+        if (oldRoot == null) {
+            return null;
+        }
+        Node<E> max = oldRoot;
+        while (max.right != null) {
+            max = max.right;
+        }
+        root = deleteMax(oldRoot);
+        return max.value;
+    }
+
+    @Override
+    public synchronized void clear() {
+        root = null;
+    }
+
+    /**
+     * Вставка с копированием пути
+     *
+     * @return новый корень поддерева или тот же node, если элемент уже есть
+     */
+    private Node<E> insert(Node<E> node, E value) {
+        if (node == null) {
+            return new Node<>(value, null, null);
+        }
+        int cmp = compare(value, node.value);
+        if (cmp < 0) {
+            Node<E> left = insert(node.left, value);
+            return left == node.left ? node : balance(node.value, left, node.right);
+        } else if (cmp > 0) {
+            Node<E> right = insert(node.right, value);
+            return right == node.right ? node : balance(node.value, node.left, right);
+        }
+        return node;
+    }
+
+    /**
+     * Удаление с копированием пути. Узел с двумя детьми заменяется копией с наименьшим значением правого поддерева
+     *
+     * @return новый корень поддерева или тот же node, если элемента нет
+     */
+    private Node<E> delete(Node<E> node, E value) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(value, node.value);
+        if (cmp < 0) {
+            Node<E> left = delete(node.left, value);
+            return left == node.left ? node : balance(node.value, left, node.right);
+        } else if (cmp > 0) {
+            Node<E> right = delete(node.right, value);
+            return right == node.right ? node : balance(node.value, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node<E> min = node.right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(min.value, node.left, deleteMin(node.right));
+    }
+
+    private Node<E> deleteMin(Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.value, deleteMin(node.left), node.right);
+    }
+
+    private Node<E> deleteMax(Node<E> node) {
+        if (node.right == null) {
+            return node.left;
+        }
+        return balance(node.value, node.left, deleteMax(node.right));
+    }
+
+    /**
+     * Новый узел (value, left, right) с восстановленной АВЛ-балансировкой.
+     * Поддеревья left и right сбалансированы, а их высоты отличаются не больше чем на 2
+     */
+    private static <E> Node<E> balance(E value, Node<E> left, Node<E> right) {
+        int hl = height(left);
+        int hr = height(right);
+        if (hl > hr + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.value, left.left, new Node<>(value, left.right, right));
+            }
+            Node<E> lr = left.right;
+            return new Node<>(lr.value, new Node<>(left.value, left.left, lr.left), new Node<>(value, lr.right, right));
+        }
+        if (hr > hl + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.value, new Node<>(value, left, right.left), right.right);
+            }
+            Node<E> rl = right.left;
+            return new Node<>(rl.value, new Node<>(value, left, rl.left), new Node<>(right.value, rl.right, right.right));
+        }
+        return new Node<>(value, left, right);
+    }
+
+    /**
+     * Ищет элемент с таким же значением в дереве.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в дереве
+     */
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        Node<E> curr = root;
+        while (curr != null) {
+            int cmp = compare(value, curr.value);
+            if (cmp == 0) {
+                return true;
+            }
+            curr = cmp < 0 ? curr.left : curr.right;
+        }
+        return false;
+    }
+
+    @Override
+    public E first() {
+        Node<E> curr = root;
+        if (curr == null) {
+            throw new NoSuchElementException("first");
+        }
+        while (curr.left != null) {
+            curr = curr.left;
+        }
+        return curr.value;
+    }
+
+    @Override
+    public E last() {
+        Node<E> curr = root;
+        if (curr == null) {
+            throw new NoSuchElementException("last");
+        }
+        while (curr.right != null) {
+            curr = curr.right;
+        }
+        return curr.value;
+    }
+
+    @Override
+    public E lower(E value) {
+        return floor(value, false);
+    }
+
+    @Override
+    public E floor(E value) {
+        return floor(value, true);
+    }
+
+    @Override
+    public E ceiling(E value) {
+        return ceiling(value, true);
+    }
+
+    @Override
+    public E higher(E value) {
+        return ceiling(value, false);
+    }
+
+    private E floor(E value, boolean inclusive) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        E result = null;
+        Node<E> curr = root;
+        while (curr != null) {
+            int cmp = compare(value, curr.value);
+            if (cmp > 0 || cmp == 0 && inclusive) {
+                result = curr.value;
+                if (cmp == 0) {
+                    break;
+                }
+                curr = curr.right;
+            } else {
+                curr = curr.left;
+            }
+        }
+        return result;
+    }
+
+    private E ceiling(E value, boolean inclusive) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        E result = null;
+        Node<E> curr = root;
+        while (curr != null) {
+            int cmp = compare(value, curr.value);
+            if (cmp < 0 || cmp == 0 && inclusive) {
+                result = curr.value;
+                if (cmp == 0) {
+                    break;
+                }
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Число элементов меньше value (не больше, если inclusive) в версии с корнем node
+     */
+    private int rank(Node<E> node, E value, boolean inclusive) {
+        int result = 0;
+        Node<E> curr = node;
+        while (curr != null) {
+            int cmp = compare(value, curr.value);
+            if (cmp < 0) {
+                curr = curr.left;
+            } else if (cmp > 0) {
+                result += count(curr.left) + 1;
+                curr = curr.right;
+            } else {
+                result += count(curr.left) + (inclusive ? 1 : 0);
+                break;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    int rangeSize(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+        Node<E> node = root;
+        int upper = hi == null ? count(node) : rank(node, hi, hiInclusive);
+        int lower = lo == null ? 0 : rank(node, lo, !loInclusive);
+        return Math.max(upper - lower, 0);
+    }
+
+    @Override
+    public int size() {
+        return count(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public String toString() {
+        return "PersistentAVLTree{" +
+                "tree=" + root +
+                '}';
+    }
+
+    @Override
+    Iterator<E> iterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+        return new TreeIterator(root, from, fromInclusive, to, toInclusive, descending);
+    }
+
+    /**
+     * In-order итератор по версии дерева на момент создания. Версия неизменяема, поэтому
+     * ConcurrentModificationException не бывает, а remove() удаляет элемент из дерева, не трогая обход.
+     */
+    private class TreeIterator implements Iterator<E> {
+
+        private final Object[] stack;
+        private int depth;
+        private final E to;
+        private final boolean toInclusive;
+        private final boolean descending;
+        private E lastReturned;
+
+        TreeIterator(Node<E> version, E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+            this.stack = new Object[height(version)];
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+            Node<E> curr = version;
+            while (curr != null) {
+                boolean pending = true;
+                if (from != null) {
+                    int cmp = compare(curr.value, from);
+                    pending = descending ? cmp < 0 : cmp > 0;
+                    pending |= cmp == 0 && fromInclusive;
+                }
+                if (pending) {
+                    stack[depth++] = curr;
+                    curr = descending ? curr.right : curr.left;
+                } else {
+                    curr = descending ? curr.left : curr.right;
+                }
+            }
+            checkBound();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<E> peek() {
+            return (Node<E>) stack[depth - 1];
+        }
+
+        private void checkBound() {
+            if (depth > 0 && to != null) {
+                int cmp = compare(peek().value, to);
+                if ((descending ? cmp < 0 : cmp > 0) || cmp == 0 && !toInclusive) {
+                    depth = 0;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public E next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            Node<E> curr = peek();
+            depth--;
+            for (Node<E> edge = descending ? curr.left : curr.right; edge != null;
+                 edge = descending ? edge.right : edge.left) {
+                stack[depth++] = edge;
+            }
+            checkBound();
+            lastReturned = curr.value;
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            PersistentAVLTree.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Проверяет балансировку, а также сохранённые в узлах высоты и размеры поддеревьев
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        traverseTreeAndCheckBalanced(root);
+    }
+
+    private int traverseTreeAndCheckBalanced(Node<E> curr) throws NotBalancedTreeException {
+        if (curr == null) {
+            return 0;
+        }
+        int leftHeight = traverseTreeAndCheckBalanced(curr.left);
+        int rightHeight = traverseTreeAndCheckBalanced(curr.right);
+        if (Math.abs(leftHeight - rightHeight) > 1) {
+            throw NotBalancedTreeException.create("The heights of the two child subtrees of any node must be differ by at most one",
+                    leftHeight, rightHeight, curr.toString());
+        }
+        if (curr.height != Math.max(leftHeight, rightHeight) + 1 || curr.count != count(curr.left) + count(curr.right) + 1) {
+            throw NotBalancedTreeException.create("Stored height or subtree size is wrong",
+                    leftHeight, rightHeight, curr.toString());
+        }
+        return curr.height;
+    }
+
+}
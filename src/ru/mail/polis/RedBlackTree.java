@@ -2,14 +2,14 @@ package ru.mail.polis;
 
 import java.util.*;
 
-public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implements BalancedSortedSet<E> {
+public class RedBlackTree<E extends Comparable<E>> extends AbstractBalancedSortedSet<E> {
 
     private static final Random RANDOM = new Random();
     private final Comparator<E> comparator;
-    private Node nil = new Node(Color.BLACK, null, null, null, null);
-    private Node root = new Node(Color.BLACK, null, nil, nil, nil);
+    private Node<E> nil = new Node<>(Color.BLACK, null, null, null, null);
+    private Node<E> root = new Node<>(Color.BLACK, null, nil, nil, nil);
     private int size;
-    //todo: добавьте дополнительные переменные и/или методы если нужно
+    private int modCount; //Число структурных изменений, для fail-fast итераторов
 
     public RedBlackTree() {
         this(null);
@@ -28,8 +28,8 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
      * @return true, если элемент в дереве отсутствовал
      */
 
-    private void insertFixup(Node tmp) {
-        Node uncle;
+    private void insertFixup(Node<E> tmp) {
+        Node<E> uncle;
         boolean flag; //Отвечает, левым(0) или правым(1) потомком является узел
         while (tmp.parent.color == Color.RED) {
             if (tmp.parent == tmp.parent.parent.left) {
@@ -46,7 +46,7 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
                 tmp.parent.parent.color = Color.RED;//Деда - красным
                 tmp = tmp.parent.parent;
             } else {
-                Node X;
+                Node<E> X;
                 if (flag) {
                     X = tmp.parent.right;
                 } else {
@@ -68,8 +68,8 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
     }
 
 
-    private void rotateRight(Node tmp) {
-        Node x = tmp.left;
+    private void rotateRight(Node<E> tmp) {
+        Node<E> x = tmp.left;
         tmp.left = x.right;
 
         if (x.right != nil) {
@@ -87,8 +87,8 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         tmp.parent = x;
     }
 
-    private void rotateLeft(Node tmp) {
-        Node x = tmp.right;
+    private void rotateLeft(Node<E> tmp) {
+        Node<E> x = tmp.right;
         tmp.right = x.left;
 
         if (x.left != nil) {
@@ -112,70 +112,209 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         if (value == null) {
             throw new NullPointerException("Value is null");
         }
-        if (contains(value)) return false;
+        return insert(root, value) != null;
+    }
+
+    /**
+     * Строит дерево из строго возрастающей последовательности за O(n) без сравнений и поворотов.
+     * Корнем поддерева становится средний элемент отрезка; все узлы чёрные, кроме самого нижнего
+     * неполного уровня, который красный, — так чёрная высота всех путей одинакова (как в TreeMap.buildFromSorted).
+     *
+     * @param values элементы по возрастанию в порядке comparator
+     * @throws IllegalArgumentException если элементы идут не по возрастанию или повторяются
+     */
+    public static <E extends Comparable<E>> RedBlackTree<E> fromSorted(Iterator<? extends E> values, Comparator<E> comparator) {
+        RedBlackTree<E> tree = new RedBlackTree<>(comparator);
+        tree.rebuild(toSortedArray(values, comparator));
+        return tree;
+    }
+
+    /**
+     * Вставляет элементы коллекции.
+     * Если очередной элемент больше предыдущего вставленного, спуск начинается не от корня,
+     * а от ближайшего предка предыдущего узла, в чьё поддерево попадает новый элемент,
+     * поэтому отсортированные участки входа вставляются почти без сравнений на верхних уровнях.
+     * Если же коллекция отсортирована целиком и достаточно велика относительно дерева,
+     * дерево сливается с ней и собирается заново за O(n + m).
+     *
+     * @param c элементы, которые необходимо вставить
+     * @return true, если дерево изменилось
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if (worthRebuilding(size, c.size())) {
+            Object[] sorted = sortedElements(c);
+            if (sorted != null) {
+                int oldSize = size;
+                rebuild(isEmpty() ? sorted : mergeWith(sorted));
+                return size != oldSize;
+            }
+        }
+        boolean modified = false;
+        Node<E> finger = null; //Последний вставленный узел
+        for (E value : c) {
+            if (value == null) {
+                throw new NullPointerException("Value is null");
+            }
+            Node<E> from = root;
+            if (finger != null && compare(value, finger.value) > 0) {
+                from = climb(finger, value);
+            }
+            Node<E> inserted = insert(from, value);
+            if (inserted != null) {
+                finger = inserted;
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    private void rebuild(Object[] sorted) {
+        if (sorted.length == 0) {
+            root = new Node<>(Color.BLACK, null, nil, nil, nil);
+        } else {
+            root = build(sorted, 0, sorted.length, 0, redLevel(sorted.length), nil);
+        }
+        size = sorted.length;
+        modCount++;
+    }
+
+    /**
+     * Глубина, на которой лежат узлы нижнего неполного уровня (корень на глубине 0)
+     */
+    private static int redLevel(int size) {
+        int level = 0;
+        for (int m = size - 1; m >= 0; m = m / 2 - 1) {
+            level++;
+        }
+        return level;
+    }
+
+    private Node<E> build(Object[] sorted, int from, int to, int level, int redLevel, Node<E> parent) {
+        if (from >= to) {
+            return nil;
+        }
+        int mid = (from + to) >>> 1;
+        @SuppressWarnings("unchecked")
+        E value = (E) sorted[mid];
+        Node<E> node = new Node<>(level == redLevel ? Color.RED : Color.BLACK, value, parent, nil, nil);
+        node.left = build(sorted, from, mid, level + 1, redLevel, node);
+        node.right = build(sorted, mid + 1, to, level + 1, redLevel, node);
+        return node;
+    }
+
+    /**
+     * Ищет самый нижний узел на пути от tmp к корню, поддерево которого накрывает value.
+     * Инвариант: value больше значения tmp, поэтому нижняя граница всегда подходит.
+     * Верхняя граница цепочки правых сыновей — значение родителя, к которому цепочка пришла слева
+     * (у правой границы дерева её нет).
+     */
+    private Node<E> climb(Node<E> tmp, E value) {
+        Node<E> candidate = tmp;
+        while (tmp != root) {
+            Node<E> parent = tmp.parent;
+            if (tmp == parent.left) {
+                if (compare(value, parent.value) < 0) {
+                    break;
+                }
+                candidate = parent;
+            }
+            tmp = parent;
+        }
+        return candidate;
+    }
+
+    /**
+     * Один спуск от узла from: одновременно проверяет наличие элемента и ищет место вставки
+     *
+     * @return вставленный узел или null, если элемент уже был в дереве
+     */
+    private Node<E> insert(Node<E> from, E value) {
         if (root.value == null) {
-            root = new Node(Color.BLACK, value, nil, nil, nil);
+            root = new Node<>(Color.BLACK, value, nil, nil, nil);
             size++;
-            return true;
+            modCount++;
+            return root;
         }
 
-        Node z;
-        Node x = nil;
-        Node tmp = root;
+        Node<E> parent = nil;
+        Node<E> tmp = from;
+        int cmp = 0;
 
-        //Идём от корня до тех пор, пока указатель не станет nil
+        //Идём вниз до тех пор, пока указатель не станет nil
         while (tmp != nil) {
-            x = tmp;
-            if (compare(value, (E) tmp.value) > 0) {
-                tmp = tmp.right;
-            } else {
-                tmp = tmp.left;
+            parent = tmp;
+            cmp = compare(value, tmp.value);
+            if (cmp == 0) {
+                return null;
             }
+            tmp = cmp < 0 ? tmp.left : tmp.right;
         }
 
         //Вставляем вместо него новый элемент с nil-потомками и красным цветом
-        if (compare(value, (E) x.value) < 0) {
-            z = new Node(Color.RED, value, x, nil, nil);
-            x.left = z;
+        Node<E> z = new Node<>(Color.RED, value, parent, nil, nil);
+        if (cmp < 0) {
+            parent.left = z;
         } else {
-            z = new Node(Color.RED, value, x, nil, nil);
-            x.right = z;
+            parent.right = z;
         }
 
         //Проверяем балансировку
         insertFixup(z);
         size++;
-        return true;
-
+        modCount++;
+        return z;
     }
 
-    private Node<E> search(Node tmp, E value) {
-        if (tmp == nil || value == tmp.value) {
-            return tmp;
+    /**
+     * Ищет узел с равным value значением одним спуском от корня без рекурсии.
+     * Равенство определяется только через compare, а не по ссылке: удалить и найти можно
+     * равный, но другой объект
+     *
+     * @return найденный узел или nil
+     */
+    private Node<E> search(E value) {
+        Node<E> curr = size == 0 ? nil : root; //У пустого дерева корень — заглушка без значения
+        while (curr != nil) {
+            int cmp = compare(value, curr.value);
+            if (cmp == 0) {
+                return curr;
+            }
+            curr = cmp < 0 ? curr.left : curr.right;
         }
-        if (compare(value, (E) tmp.value) < 0) {
-            return search(tmp.left, value);
-        } else
-            return search(tmp.right, value);
+        return nil;
     }
 
     /**
      * Удаляет элемент с таким же значением из дерева.
      * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
      *
-     * @param object элемент который необходимо вставить
+     * @param object элемент который необходимо удалить
      * @return true, если элемент содержался в дереве
      */
     @Override
     public boolean remove(Object object) {
         @SuppressWarnings("unchecked")
         E value = (E) object;
+        if (value == null) {
+            throw new NullPointerException("Value is null");
+        }
+        Node<E> rm = search(value);
+        if (rm == nil) {
+            return false;
+        }
+        delete(rm);
+        return true;
+    }
 
-        Node balance, next; //Удаленная вершина, от которой нужно будет балансировать
-        Node rm = search(root, value);
-        boolean wasBlackRemoved = false;
-        if (rm == nil) return false;
-        if (rm.color == Color.BLACK) wasBlackRemoved = true;
+    /**
+     * Удаляет узел из дерева. Если у узла два ребёнка, на его место переставляется
+     * узел со следующим значением (сам узел, а не значение), поэтому остальные узлы
+     * остаются на месте и итераторы могут продолжать обход
+     */
+    private void delete(Node<E> rm) {
+        Node<E> balance; //Вершина, от которой нужно будет балансировать
+        boolean wasBlackRemoved = rm.color == Color.BLACK;
 
         //Если имеет только одного ребенка, присоединяем ребенка к деду
         if (rm.left == nil) {
@@ -186,8 +325,8 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
             changeRelationBetween(rm, rm.left);
         } else {
             //Если имеет обоих детей, то находим вершину со следующим значеним ключа
-            next = findNext(rm.right); //Ищем по правому поддереву
-            if (next.color == Color.BLACK) wasBlackRemoved = true;
+            Node<E> next = findNext(rm.right); //Ищем по правому поддереву
+            wasBlackRemoved = next.color == Color.BLACK;
             balance = next.right;
             //Если следующее значение является ребенком удаляемого
             if (next.parent == rm) {
@@ -195,7 +334,7 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
             } else {
                 changeRelationBetween(next, next.right);
                 next.right = rm.right;
-                rm.right.parent = rm;
+                next.right.parent = next;
             }
             changeRelationBetween(rm, next);
             next.left = rm.left;
@@ -207,63 +346,94 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
             removeFixup(balance);
         }
         size--;
-        return true;
+        modCount++;
+    }
+
+    private Node<E> findNext(Node<E> tmp) {
+        Node<E> curr = tmp;
+        while (curr.left != nil) {
+            curr = curr.left;
+        }
+        return curr;
     }
 
-    private Node findNext(Node tmp) {
-        Node curr = tmp;
+    private Node<E> findPrev(Node<E> tmp) {
+        Node<E> curr = tmp;
         while (curr.right != nil) {
             curr = curr.right;
         }
         return curr;
     }
 
-    private void changeRelationBetween(Node rm, Node rm_child) {
+    /**
+     * Следующий по порядку узел (nil, если tmp — последний)
+     */
+    private Node<E> successor(Node<E> tmp) {
+        if (tmp.right != nil) {
+            return findNext(tmp.right);
+        }
+        Node<E> parent = tmp.parent;
+        while (parent != nil && tmp == parent.right) {
+            tmp = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    /**
+     * Предыдущий по порядку узел (nil, если tmp — первый)
+     */
+    private Node<E> predecessor(Node<E> tmp) {
+        if (tmp.left != nil) {
+            return findPrev(tmp.left);
+        }
+        Node<E> parent = tmp.parent;
+        while (parent != nil && tmp == parent.left) {
+            tmp = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    private void changeRelationBetween(Node<E> rm, Node<E> rm_child) {
         if (rm.parent == nil) {
             root = rm_child;
         } else if (rm == rm.parent.left) {
             rm.parent.left = rm_child;
         } else {
-            rm.parent.left = rm_child;
+            rm.parent.right = rm_child;
         }
         rm_child.parent = rm.parent;
     }
 
-    private void removeFixup(Node tmp) {
+    private void removeFixup(Node<E> tmp) {
         while (tmp != root && tmp.color != Color.RED) {
-            Node sibling;
-            boolean flag;
-            if (tmp == tmp.parent.left) {
-                sibling = tmp.parent.right;
-                flag = true;
-            } else {
-                sibling = tmp.parent.right;
-                flag = false;
-            }
+            boolean flag = tmp == tmp.parent.left; //Отвечает, левым(true) или правым(false) потомком является узел
+            Node<E> sibling = flag ? tmp.parent.right : tmp.parent.left;
             if (sibling.color == Color.RED) {
                 sibling.color = Color.BLACK;
                 tmp.parent.color = Color.RED;
-                rotateLeft(tmp.parent);
-                if (flag) sibling = tmp.parent.right;
-                else sibling = tmp.parent.left;
+                if (flag) rotateLeft(tmp.parent);
+                else rotateRight(tmp.parent);
+                sibling = flag ? tmp.parent.right : tmp.parent.left;
             }
             if (sibling.left.color != Color.RED && sibling.right.color != Color.RED) {
                 sibling.color = Color.RED;
                 tmp = tmp.parent;
             } else {
-                Node wl, wr;
-                wr = flag ? sibling.right : sibling.left;
-                wl = flag ? sibling.right : sibling.left;
-                if (wr.color == Color.BLACK) {
-                    wl.color = Color.BLACK;
+                Node<E> near = flag ? sibling.left : sibling.right; //Ближний к tmp племянник
+                Node<E> far = flag ? sibling.right : sibling.left; //Дальний племянник
+                if (far.color == Color.BLACK) {
+                    near.color = Color.BLACK;
                     sibling.color = Color.RED;
                     if (flag) rotateRight(sibling);
                     else rotateLeft(sibling);
-                    sibling = tmp.parent.right;
+                    sibling = flag ? tmp.parent.right : tmp.parent.left;
+                    far = flag ? sibling.right : sibling.left;
                 }
                 sibling.color = tmp.parent.color;
                 tmp.parent.color = Color.BLACK;
-                wr.color = Color.BLACK;
+                far.color = Color.BLACK;
                 if (flag) rotateLeft(tmp.parent);
                 else rotateRight(tmp.parent);
                 tmp = root;
@@ -287,22 +457,48 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         if (value == null) {
             throw new NullPointerException("Null value!");
         }
-        if (!this.isEmpty()) {
-            Node curr = root;
-            while (curr != nil) {
-                int flag = compare(value, (E) curr.value);
-                if (flag == 0) {
-                    return true;
-                }
-                if (flag < 0) {
-                    curr = curr.left;
-                }
-                if (flag > 0) {
-                    curr = curr.right;
-                }
+        return search(value) != nil;
+    }
+
+    @Override
+    Boolean containsOptimistic(E value) {
+        if (size == 0) {
+            return Boolean.FALSE;
+        }
+        Node<E> curr = root;
+        for (int steps = 0; curr != nil; steps++) {
+            if (steps == MAX_OPTIMISTIC_STEPS) {
+                return null;
+            }
+            int cmp = compare(value, curr.value);
+            if (cmp == 0) {
+                return Boolean.TRUE;
+            }
+            curr = cmp < 0 ? curr.left : curr.right;
+        }
+        return Boolean.FALSE;
+    }
+
+    @Override
+    Object neighbourOptimistic(E value, boolean inclusive, boolean descending) {
+        if (size == 0) {
+            return null;
+        }
+        Node<E> curr = root;
+        Node<E> found = null;
+        for (int steps = 0; curr != nil; steps++) {
+            if (steps == MAX_OPTIMISTIC_STEPS) {
+                return OPTIMISTIC_RETRY;
+            }
+            int cmp = value == null ? (descending ? 1 : -1) : compare(value, curr.value);
+            if (descending ? cmp > 0 || cmp == 0 && inclusive : cmp < 0 || cmp == 0 && inclusive) {
+                found = curr;
+                curr = descending ? curr.right : curr.left;
+            } else {
+                curr = descending ? curr.left : curr.right;
             }
         }
-        return false;
+        return found == null ? null : found.value;
     }
 
     /**
@@ -316,12 +512,12 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         if (this.isEmpty()) {
             throw new NoSuchElementException("first");
         }
-        Node tmp = root;
+        Node<E> tmp = root;
         if (tmp.left != nil)
             while (tmp.left != nil) {
                 tmp = tmp.left;
             }
-        return (E) tmp.value;
+        return tmp.value;
     }
 
     /**
@@ -335,12 +531,12 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         if (this.isEmpty()) {
             throw new NoSuchElementException("last");
         }
-        Node tmp = root;
+        Node<E> tmp = root;
         if (tmp.right != nil)
             while (tmp.right != nil) {
                 tmp = tmp.right;
             }
-        return (E) tmp.value;
+        return tmp.value;
     }
 
     private int compare(E v1, E v2) {
@@ -365,24 +561,186 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
                 '}';
     }
 
+    /**
+     * Наибольший элемент, строго меньший value
+     *
+     * @return элемент или null, если такого нет
+     */
     @Override
-    public SortedSet<E> subSet(E fromElement, E toElement) {
-        throw new UnsupportedOperationException("subSet");
+    public E lower(E value) {
+        return floorNode(value, false).value;
     }
 
+    /**
+     * Наибольший элемент, не превосходящий value
+     *
+     * @return элемент или null, если такого нет
+     */
     @Override
-    public SortedSet<E> headSet(E toElement) {
-        throw new UnsupportedOperationException("headSet");
+    public E floor(E value) {
+        return floorNode(value, true).value;
     }
 
+    /**
+     * Наименьший элемент, не меньший value
+     *
+     * @return элемент или null, если такого нет
+     */
     @Override
-    public SortedSet<E> tailSet(E fromElement) {
-        throw new UnsupportedOperationException("tailSet");
+    public E ceiling(E value) {
+        return ceilingNode(value, true).value;
     }
 
+    /**
+     * Наименьший элемент, строго больший value
+     *
+     * @return элемент или null, если такого нет
+     */
     @Override
-    public Iterator<E> iterator() {
-        throw new UnsupportedOperationException("iterator");
+    public E higher(E value) {
+        return ceilingNode(value, false).value;
+    }
+
+    /**
+     * Узел с наибольшим значением, не превосходящим (при inclusive = false — меньшим) value, или nil
+     */
+    private Node<E> floorNode(E value, boolean inclusive) {
+        if (value == null) {
+            throw new NullPointerException("Null value!");
+        }
+        Node<E> result = nil;
+        Node<E> curr = this.isEmpty() ? nil : root;
+        while (curr != nil) {
+            int flag = compare(value, curr.value);
+            if (flag == 0 && inclusive) {
+                return curr;
+            }
+            if (flag > 0) {
+                result = curr;
+                curr = curr.right;
+            } else {
+                curr = curr.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Узел с наименьшим значением, не меньшим (при inclusive = false — большим) value, или nil
+     */
+    private Node<E> ceilingNode(E value, boolean inclusive) {
+        if (value == null) {
+            throw new NullPointerException("Null value!");
+        }
+        Node<E> result = nil;
+        Node<E> curr = this.isEmpty() ? nil : root;
+        while (curr != nil) {
+            int flag = compare(value, curr.value);
+            if (flag == 0 && inclusive) {
+                return curr;
+            }
+            if (flag < 0) {
+                result = curr;
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public E pollFirst() {
+        if (this.isEmpty()) {
+            return null;
+        }
+        Node<E> tmp = findNext(root);
+        delete(tmp);
+        return tmp.value;
+    }
+
+    @Override
+    public E pollLast() {
+        if (this.isEmpty()) {
+            return null;
+        }
+        Node<E> tmp = findPrev(root);
+        delete(tmp);
+        return tmp.value;
+    }
+
+    @Override
+    Iterator<E> iterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+        return new TreeIterator(from, fromInclusive, to, toInclusive, descending);
+    }
+
+    /**
+     * Итератор по ссылкам на родителя: следующий узел ищется через successor / predecessor.
+     * Удаление переставляет узлы, а не значения, поэтому next остаётся верным и после remove.
+     */
+    private class TreeIterator implements Iterator<E> {
+
+        private Node<E> next;
+        private Node<E> lastReturned = nil;
+        private final E to;
+        private final boolean toInclusive;
+        private final boolean descending;
+        private int expectedModCount = modCount;
+
+        TreeIterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.descending = descending;
+            if (RedBlackTree.this.isEmpty()) {
+                next = nil;
+            } else if (from == null) {
+                next = descending ? findPrev(root) : findNext(root);
+            } else {
+                next = descending ? floorNode(from, fromInclusive) : ceilingNode(from, fromInclusive);
+            }
+            checkBound();
+        }
+
+        private void checkBound() {
+            if (next != nil && to != null) {
+                int cmp = compare(next.value, to);
+                if ((descending ? cmp < 0 : cmp > 0) || cmp == 0 && !toInclusive) {
+                    next = nil;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != nil;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == nil) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = descending ? predecessor(next) : successor(next);
+            checkBound();
+            return lastReturned.value;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == nil) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            delete(lastReturned);
+            lastReturned = nil;
+            expectedModCount = modCount;
+        }
     }
 
     /**
@@ -404,7 +762,7 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         }
     }
 
-    private int traverseTreeAndCheckBalanced(Node node) throws NotBalancedTreeException {
+    private int traverseTreeAndCheckBalanced(Node<E> node) throws NotBalancedTreeException {
         if (node == null) {
             return 1;
         }
@@ -420,7 +778,7 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         return leftBlackHeight + 1;
     }
 
-    private void checkRedNodeRule(Node node) throws NotBalancedTreeException {
+    private void checkRedNodeRule(Node<E> node) throws NotBalancedTreeException {
         if (node.left != null && node.left.color != Color.BLACK) {
             throw new NotBalancedTreeException("If a node is red, then left child must be black.\n" + node.toString());
         }
@@ -459,9 +817,9 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
             this.left = left;
         }
 
-        Node(Node N) {
+        Node(Node<E> N) {
             color = N.color;
-            value = (E) N.value;
+            value = N.value;
             parent = N.parent;
             right = N.right;
             left = N.left;
@@ -470,7 +828,7 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
     }
 
     public static void main(String[] args) {
-        RedBlackTree RB = new RedBlackTree();
+        RedBlackTree<Integer> RB = new RedBlackTree<>();
 
         for (int i = 0; i < 1000; i++) {
             RB.add(RANDOM.nextInt(1000));
@@ -14,30 +14,30 @@ public class SimpleStudentGenerator {
 
     private static SimpleStudentGenerator instance = new SimpleStudentGenerator();
 
-    private final static String URL_PREFIX = "https://polis.mail.ru/photo/id=";
-    private final static LocalDate MIN_YEAR_OF_BIRTHDAY = LocalDate.of(1990, 1, 1);
-    private final static int MAX_YEARS_AFTER_BIRTHDAY = 10;
-    private final static LocalDate MIN_YEAR_OF_ADMISSION = LocalDate.of(2010, 1, 1);
-    private final static int MAX_YEARS_AFTER_ADMISSION = 7;
-    private final static int MIN_GROUP_ID = 1000;
+    final static String URL_PREFIX = "https://polis.mail.ru/photo/id=";
+    final static LocalDate MIN_YEAR_OF_BIRTHDAY = LocalDate.of(1990, 1, 1);
+    final static int MAX_YEARS_AFTER_BIRTHDAY = 10;
+    final static LocalDate MIN_YEAR_OF_ADMISSION = LocalDate.of(2010, 1, 1);
+    final static int MAX_YEARS_AFTER_ADMISSION = 7;
+    final static int MIN_GROUP_ID = 1000;
     private final static int MIN_LETTER_CODE = 'a';
     private final static int MAX_LETTER_CODE = 'z';
-    private final static String EMAIL_SUFFIX = "@polis.mail.ru";
-    private final static int MIN_PHONE_NUMBER = 1000000000;
+    final static String EMAIL_SUFFIX = "@polis.mail.ru";
+    final static int MIN_PHONE_NUMBER = 1000000000;
     private final static Random random = new Random();
 
-    private static final String[] maleFirstNames = {
+    static final String[] maleFirstNames = {
             "Адонис", "Баграт", "Вальтер", "Гелеон", "Дамир", "Жерар", "Измаил", "Камиль", "Лазарь",
             "Марк", "Назар", "Оганес", "Пабло", "Радим", "Севастьян", "Тенгиз", "Фарид", "Христоф",
             "Чарлз", "Шамиль", "Эвальд", "Ювеналий", "Януарий"
     };
-    private static final String[] femaleFirstNames = {
+    static final String[] femaleFirstNames = {
             "Августа", "Бажена", "Валентина", "Габриэлла", "Далида", "Ева", "Жаклин", "Забава", "Ильзира",
             "Камила", "Лада", "Мавиле", "Надежда", "Одетта", "Павлина", "Рада", "Сабина", "Таисия", "Ульяна",
             "Фёкла", "Хадия", "Цагана", "Челси", "Шакира", "Эвелина", "Юлианна", "Ядвига"
     };
 
-    private static final String[] lastNames = {
+    static final String[] lastNames = {
             "АБАИМОВ", "БАБАДЖАНОВ", "ВАВИЛИН", "ГАВЕНДЯЕВ", "ДАЙНЕКО", "ЕВГЕЕВ", "ЖАБЕНКОВ", "ЗАБАВА",
             "ИБРАГИМОВ", "КАБАКОВ", "ЛАБЗИН", "МАВРИН", "НАБАТОВ", "ОБАБКОВ", "ПАВЕЛЕВ", "РАБИН",
             "САБАНЕЕВ", "ТАБАКОВ", "УБАЙДУЛЛАЕВ", "ФАБИШ", "ХАБАЛОВ", "ЦАГАРАЕВ", "ЧААДАЕВ",
@@ -0,0 +1,349 @@
+package ru.mail.polis;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Потокобезопасная обёртка над однопоточным деревом (AVLTree, RedBlackTree) для нагрузки, где почти всё — чтение.
+ * <p>
+ * contains, size и isEmpty сначала выполняются без блокировки под оптимистичной меткой StampedLock
+ * и проверяют её после; только если за это время был писатель, чтение повторяется под блокировкой чтения.
+ * Поиск внутри дерева при этом ограничен по длине пути (см. {@link AbstractBalancedSortedSet#containsOptimistic}),
+ * а исключения на несогласованных полях означают ту же повторную попытку.
+ * Навигация (lower / floor / ceiling / higher, first / last) и checkBalanced идут под блокировкой чтения,
+ * все изменения — под блокировкой записи.
+ * <p>
+ * Итератор не копирует диапазон: каждый следующий элемент он ищет от предыдущего за O(log n), тоже сначала
+ * оптимистично и под блокировкой чтения только при сброшенной метке (см. {@link AbstractBalancedSortedSet#neighbourOptimistic}).
+ * Поэтому обход, в том числе в equals, hashCode и toString, не держит писателей всё время,
+ * а итератор слабо согласован, как у ConcurrentSkipListSet: не бросает ConcurrentModificationException,
+ * отдаёт элементы строго по порядку и может увидеть или не увидеть изменения, сделанные во время обхода.
+ * Его remove() удаляет элемент из множества под блокировкой записи. size() представления
+ * (headSet / subSet / tailSet) под блокировкой чтения вызывает size() такого же представления дерева:
+ * у AVLTree это O(log n) по размерам поддеревьев, у остальных деревьев — обход диапазона за O(n).
+ * <p>
+ * StampedLock не реентерабелен, поэтому под блокировкой записи обёртка не обращается к чужим коллекциям:
+ * они могут оказаться ею самой или её представлением и снова взять блокировку.
+ */
+public class StampedSortedSet<E> extends AbstractBalancedSortedSet<E> {
+
+    private final BalancedSortedSet<E> tree;
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * @param tree дерево, к которому дальше обращаются только через обёртку
+     */
+    public StampedSortedSet(BalancedSortedSet<E> tree) {
+        if (tree == null) {
+            throw new NullPointerException("tree is null");
+        }
+        this.tree = tree;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object object) {
+        if (object == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (tree instanceof AbstractBalancedSortedSet) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Boolean found;
+                try {
+                    found = ((AbstractBalancedSortedSet<E>) tree).containsOptimistic((E) object);
+                } catch (RuntimeException e) {
+                    found = null; //Дерево поменялось на ходу; настоящая ошибка повторится под блокировкой
+                }
+                if (found != null && lock.validate(stamp)) {
+                    return found;
+                }
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            return tree.contains(object);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = tree.size();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = tree.size();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean add(E value) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.add(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean addAll(Collection<? extends E> values) {
+        //Копия до блокировки: values может быть самой обёрткой или её представлением и читать её под readLock
+        List<E> copy = Arrays.asList((E[]) values.toArray());
+        long stamp = lock.writeLock();
+        try {
+            return tree.addAll(copy);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.remove(object);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            tree.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public E pollFirst() {
+        long stamp = lock.writeLock();
+        try {
+            return tree.pollFirst();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public E pollLast() {
+        long stamp = lock.writeLock();
+        try {
+            return tree.pollLast();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public E lower(E value) {
+        long stamp = lock.readLock();
+        try {
+            return tree.lower(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public E floor(E value) {
+        long stamp = lock.readLock();
+        try {
+            return tree.floor(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public E ceiling(E value) {
+        long stamp = lock.readLock();
+        try {
+            return tree.ceiling(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public E higher(E value) {
+        long stamp = lock.readLock();
+        try {
+            return tree.higher(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public E first() {
+        long stamp = lock.readLock();
+        try {
+            return tree.first();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public E last() {
+        long stamp = lock.readLock();
+        try {
+            return tree.last();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return tree.comparator();
+    }
+
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        long stamp = lock.readLock();
+        try {
+            tree.checkBalanced();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    int rangeSize(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+        long stamp = lock.readLock();
+        try {
+            //Всё дерево — O(1); иначе стоимость как у представления дерева (см. описание класса)
+            return lo == null && hi == null ? tree.size() : range(lo, loInclusive, hi, hiInclusive).size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Обходит диапазон по одному элементу, каждый следующий — поиском от предыдущего (см. {@link #neighbour});
+     * remove() итератора идёт обратно в обёртку
+     */
+    @Override
+    Iterator<E> iterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+        return new Iterator<E>() {
+            private E next = bounded(neighbour(from, fromInclusive, descending));
+            private E lastReturned;
+
+            /**
+             * null, если value уже за границей to
+             */
+            private E bounded(E value) {
+                if (value == null || to == null) {
+                    return value;
+                }
+                int cmp = compare(tree.comparator(), value, to);
+                if (descending) {
+                    cmp = -cmp;
+                }
+                return cmp < 0 || cmp == 0 && toInclusive ? value : null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                next = bounded(neighbour(lastReturned, false, descending));
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                StampedSortedSet.this.remove(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    /**
+     * Следующий элемент обхода: ceiling / higher от value (floor / lower при descending), при value == null — первый.
+     * Сначала ищется без блокировки под оптимистичной меткой, как в contains, и под блокировкой чтения — только
+     * если метку сбросил писатель; так что писатели ждут не дольше одного поиска за O(log n)
+     */
+    @SuppressWarnings("unchecked")
+    private E neighbour(E value, boolean inclusive, boolean descending) {
+        if (tree instanceof AbstractBalancedSortedSet) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Object found;
+                try {
+                    found = ((AbstractBalancedSortedSet<E>) tree).neighbourOptimistic(value, inclusive, descending);
+                } catch (RuntimeException e) {
+                    found = OPTIMISTIC_RETRY; //Дерево поменялось на ходу; настоящая ошибка повторится под блокировкой
+                }
+                if (found != OPTIMISTIC_RETRY && lock.validate(stamp)) {
+                    return (E) found;
+                }
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            if (value == null) {
+                return tree.isEmpty() ? null : descending ? tree.last() : tree.first();
+            }
+            if (descending) {
+                return inclusive ? tree.floor(value) : tree.lower(value);
+            }
+            return inclusive ? tree.ceiling(value) : tree.higher(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Представление дерева от lo до hi в порядке дерева (null — без границы)
+     */
+    private NavigableSet<E> range(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+        if (lo == null) {
+            return hi == null ? tree : tree.headSet(hi, hiInclusive);
+        }
+        return hi == null ? tree.tailSet(lo, loInclusive) : tree.subSet(lo, loInclusive, hi, hiInclusive);
+    }
+
+    /**
+     * Элементы через итератор, а не дерево целиком под блокировкой чтения
+     */
+    @Override
+    public String toString() {
+        return "StampedSortedSet" + super.toString();
+    }
+
+}
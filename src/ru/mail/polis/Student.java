@@ -1,6 +1,7 @@
 package ru.mail.polis;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by Nechaev Mikhail
@@ -8,7 +9,7 @@ import java.time.LocalDate;
  */
 public class Student extends CheckedOpenHashTableEntity {
 
-    private static int counter = 0;
+    private static final AtomicLong counter = new AtomicLong(); //Студентов создают и из нескольких потоков
 
     //NotNullable поля
     private long id; //Уникальный идентификатор студента
@@ -22,11 +23,25 @@ public class Student extends CheckedOpenHashTableEntity {
     private String photoReference; //Ссылка на фотографию студента
     private String email;
     private String mobile; //Номер телефона
-
+    //Хеши считаются один раз при создании и при изменении Nullable полей
+    private int hash; //Значение hashCode()
+    private int probeStart; //Ячейка нулевой пробы до маскирования
+    private int probeStep; //Шаг пробирования, всегда нечётный
+
+    /**
+     * Двойное хеширование: (probeStart + probId * probeStep) & (tableSize - 1).
+     * Размер таблицы обязан быть степенью двойки, как в OpenHashTable: тогда маска — это остаток от деления,
+     * а нечётный шаг взаимно прост с размером, поэтому пробы 0..tableSize-1 обходят все ячейки.
+     * Обе части посчитаны заранее, так что проба — одно умножение, сложение и маска
+     *
+     * @throws IllegalArgumentException если probId вне [0, tableSize) или tableSize — не степень двойки
+     */
     @Override
     public int hashCode(int tableSize, int probId) throws IllegalArgumentException {
-        //todo: реализуйте этот метод
-        return 0;
+        if (probId < 0 || probId >= tableSize || (tableSize & (tableSize - 1)) != 0) {
+            throw new IllegalArgumentException("probId = " + probId + ", tableSize = " + tableSize);
+        }
+        return (probeStart + probId * probeStep) & (tableSize - 1);
     }
 
     public enum  Gender {
@@ -34,21 +49,31 @@ public class Student extends CheckedOpenHashTableEntity {
     }
 
     public Student(String firstName, String lastName, Gender gender, LocalDate birthday, int groupId, int yearOfAdmission) {
-        this.id = counter++;
+        this(firstName, lastName, gender, birthday, groupId, yearOfAdmission, null, null, null);
+    }
+
+    public Student(String firstName, String lastName, Gender gender, LocalDate birthday, int groupId,
+                   int yearOfAdmission, String photoReference, String email, String mobile) {
+        this(counter.getAndIncrement(), firstName, lastName, gender, birthday, groupId, yearOfAdmission,
+                photoReference, email, mobile);
+    }
+
+    /**
+     * Студент с заданным идентификатором: StudentGenerator выдаёт номер записи, чтобы результат зависел только от seed
+     */
+    Student(long id, String firstName, String lastName, Gender gender, LocalDate birthday, int groupId,
+            int yearOfAdmission, String photoReference, String email, String mobile) {
+        this.id = id;
         this.firstName = firstName;
         this.lastName = lastName;
         this.gender = gender;
         this.birthday = birthday;
         this.groupId = groupId;
         this.yearOfAdmission = yearOfAdmission;
-    }
-
-    public Student(String firstName, String lastName, Gender gender, LocalDate birthday, int groupId,
-                   int yearOfAdmission, String photoReference, String email, String mobile) {
-        this(firstName, lastName, gender, birthday, groupId, yearOfAdmission);
         this.photoReference = photoReference;
         this.email = email;
         this.mobile = mobile;
+        updateHashes();
     }
 
     public long getId() {
@@ -85,6 +110,7 @@ public class Student extends CheckedOpenHashTableEntity {
 
     public void setPhotoReference(String photoReference) {
         this.photoReference = photoReference;
+        updateHashes();
     }
 
     public String getEmail() {
@@ -93,6 +119,7 @@ public class Student extends CheckedOpenHashTableEntity {
 
     public void setEmail(String email) {
         this.email = email;
+        updateHashes();
     }
 
     public String getMobile() {
@@ -101,6 +128,7 @@ public class Student extends CheckedOpenHashTableEntity {
 
     public void setMobile(String mobile) {
         this.mobile = mobile;
+        updateHashes();
     }
 
     @Override
@@ -125,17 +153,34 @@ public class Student extends CheckedOpenHashTableEntity {
 
     @Override
     public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Пересчитывает hashCode() по всем полям и обе части двойного хеширования.
+     * Вызывается из конструктора и сеттеров: студент, уже лежащий в хеш-таблице, менять нельзя,
+     * как и любой ключ с изменяемым hashCode()
+     */
+    private void updateHashes() {
         int result = (int) (id ^ (id >>> 32));
         result = 31 * result + firstName.hashCode();
         result = 31 * result + lastName.hashCode();
-        result = 31 * result + gender.hashCode();
+        result = 31 * result + gender.ordinal(); //Не hashCode() enum: он свой в каждом запуске JVM
         result = 31 * result + birthday.hashCode();
         result = 31 * result + groupId;
         result = 31 * result + yearOfAdmission;
         result = 31 * result + (photoReference != null ? photoReference.hashCode() : 0);
         result = 31 * result + (email != null ? email.hashCode() : 0);
         result = 31 * result + (mobile != null ? mobile.hashCode() : 0);
-        return result;
+        hash = result;
+        //Полиномиальный хеш плохо перемешивает младшие биты, а маска берёт именно их
+        probeStart = mix(result);
+        probeStep = mix(probeStart) | 1;
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
     }
 
     @Override
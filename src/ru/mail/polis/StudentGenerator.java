@@ -0,0 +1,109 @@
+package ru.mail.polis;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import ru.mail.polis.Student.Gender;
+
+/**
+ * Генератор студентов для бенчмарков и долгих нагрузочных тестов: те же имена и диапазоны, что у SimpleStudentGenerator,
+ * но без общего состояния. Запись с номером index строится своим SplittableRandom, зерно которого — перемешанные
+ * seed и index, поэтому студент зависит только от (seed, index): последовательный и параллельный поток,
+ * а также повторный запуск с тем же seed дают одинаковых студентов.
+ * <p>
+ * id студента — firstId + index. Идентификаторы уникальны только в пределах одного генератора:
+ * у генераторов с одинаковым firstId (по умолчанию 0) они совпадают, и они же могут совпасть с id студентов,
+ * созданных публичными конструкторами Student. Если студенты нескольких генераторов попадают в одну выборку,
+ * генераторам нужно дать непересекающиеся диапазоны firstId.
+ * <p>
+ * На запись создаются только сам Student, его дата рождения, строки email / телефона / фотографии и SplittableRandom;
+ * email собирается в один char[] без IntStream и конкатенаций.
+ */
+public final class StudentGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int USERNAME_LENGTH = 10;
+    private static final long MIN_BIRTHDAY = SimpleStudentGenerator.MIN_YEAR_OF_BIRTHDAY.toEpochDay();
+    private static final int BIRTHDAY_RANGE = (int) (SimpleStudentGenerator.MIN_YEAR_OF_BIRTHDAY
+            .plusYears(SimpleStudentGenerator.MAX_YEARS_AFTER_BIRTHDAY + 1).toEpochDay() - MIN_BIRTHDAY);
+
+    private final long seed;
+    private final long firstId;
+
+    public StudentGenerator(long seed) {
+        this(seed, 0);
+    }
+
+    /**
+     * @param firstId id студента с номером 0; студент с номером index получает id firstId + index
+     */
+    public StudentGenerator(long seed, long firstId) {
+        this.seed = seed;
+        this.firstId = firstId;
+    }
+
+    /**
+     * Студент с номером index и id firstId + index; один и тот же при каждом вызове с тем же index
+     */
+    public Student generate(long index) {
+        SplittableRandom random = new SplittableRandom(mix64(seed + index * GOLDEN_GAMMA));
+        Gender gender = random.nextBoolean() ? Gender.MALE : Gender.FEMALE;
+        String[] firstNames = gender == Gender.MALE
+                ? SimpleStudentGenerator.maleFirstNames
+                : SimpleStudentGenerator.femaleFirstNames;
+        String firstName = firstNames[random.nextInt(firstNames.length)];
+        String lastName = SimpleStudentGenerator.lastNames[random.nextInt(SimpleStudentGenerator.lastNames.length)];
+        LocalDate birthday = LocalDate.ofEpochDay(MIN_BIRTHDAY + random.nextInt(BIRTHDAY_RANGE));
+        int groupId = SimpleStudentGenerator.MIN_GROUP_ID + random.nextInt(100);
+        int yearOfAdmission = SimpleStudentGenerator.MIN_YEAR_OF_ADMISSION.getYear()
+                + random.nextInt(SimpleStudentGenerator.MAX_YEARS_AFTER_ADMISSION + 1);
+        String photoReference = random.nextBoolean()
+                ? SimpleStudentGenerator.URL_PREFIX + (1000000 + random.nextInt(1000000))
+                : null;
+        String email = random.nextBoolean() ? email(random) : null;
+        String mobile = random.nextBoolean()
+                ? Integer.toString(SimpleStudentGenerator.MIN_PHONE_NUMBER + random.nextInt(SimpleStudentGenerator.MIN_PHONE_NUMBER))
+                : null;
+        return new Student(firstId + index, firstName, lastName, gender, birthday, groupId, yearOfAdmission,
+                photoReference, email, mobile);
+    }
+
+    /**
+     * Студенты с номерами 0..count-1 по порядку. Поток можно сделать параллельным (parallel()):
+     * LongStream.range делится на равные части, а состав и порядок студентов от этого не меняются
+     */
+    public Stream<Student> stream(long count) {
+        return LongStream.range(0, count).mapToObj(this::generate);
+    }
+
+    /**
+     * Массив студентов с номерами 0..count-1, заполняется параллельно
+     */
+    public Student[] generateArray(int count) {
+        Student[] students = new Student[count];
+        Arrays.parallelSetAll(students, this::generate);
+        return students;
+    }
+
+    private static String email(SplittableRandom random) {
+        String suffix = SimpleStudentGenerator.EMAIL_SUFFIX;
+        char[] chars = new char[USERNAME_LENGTH + suffix.length()];
+        for (int i = 0; i < USERNAME_LENGTH; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        suffix.getChars(0, suffix.length(), chars, USERNAME_LENGTH);
+        return new String(chars);
+    }
+
+    /**
+     * Перемешивание из SplittableRandom (вариант 13 Стаффорда): соседние index дают независимые зёрна
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -26,6 +26,13 @@ public class AbstractSetTest {
         }
     }
 
+    /**
+     * remove без оглядки на ENABLED_REMOVE: для реализаций, где удаление уже есть и проверяется всегда
+     */
+    protected <E> void checkRemove(Set<E> validSet, Set<E> testSet, E value) {
+        Assert.assertEquals("remove", validSet.remove(value), testSet.remove(value));
+    }
+
     protected  <E> void checkSizeAndContains(Set<E> validSet, Set<E> testSet, E value) {
         Assert.assertTrue("size", validSet.size() == testSet.size());
         Assert.assertTrue("contains", validSet.contains(value) == testSet.contains(value));
@@ -1,12 +1,19 @@
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -15,8 +22,12 @@ import org.junit.runners.MethodSorters;
 import org.junit.runners.Parameterized;
 
 import ru.mail.polis.AVLTree;
+import ru.mail.polis.BTree;
 import ru.mail.polis.BalancedSortedSet;
+import ru.mail.polis.CompactRedBlackTree;
+import ru.mail.polis.ConcurrentSkipList;
 import ru.mail.polis.NotBalancedTreeException;
+import ru.mail.polis.PersistentAVLTree;
 import ru.mail.polis.RedBlackTree;
 
 /**
@@ -42,6 +53,10 @@ public class TestBalancedSortedSet extends AbstractSetTest {
     private static final Class<?>[] testClasses = (Class<?>[]) new Class<?>[]{
             AVLTree.class,
             RedBlackTree.class,
+            ConcurrentSkipList.class,
+            PersistentAVLTree.class,
+            BTree.class,
+            CompactRedBlackTree.class,
     };
 
     @SuppressWarnings("unchecked")
@@ -161,6 +176,377 @@ public class TestBalancedSortedSet extends AbstractSetTest {
         }
     }
 
+    @Test
+    public void test08_iterator() {
+        for (int i = 0; i < 1000; i++) {
+            int value = RANDOM.nextInt(1000);
+            validSortedSet.add(value);
+            testSortedSet.add(value);
+        }
+        Assert.assertEquals("iterator", new ArrayList<>(validSortedSet), new ArrayList<>(testSortedSet));
+        Assert.assertEquals("equals", validSortedSet, testSortedSet);
+        Assert.assertEquals("stream", validSortedSet.stream().mapToLong(v -> v).sum(),
+                testSortedSet.parallelStream().mapToLong(v -> v).sum());
+
+        Iterator<Integer> validIterator = validSortedSet.iterator();
+        Iterator<Integer> testIterator = testSortedSet.iterator();
+        while (validIterator.hasNext()) {
+            Integer value = validIterator.next();
+            Assert.assertEquals("next", value, testIterator.next());
+            if (value % 3 == 0) {
+                validIterator.remove();
+                testIterator.remove();
+                checkBalanced(testSortedSet);
+            }
+        }
+        Assert.assertFalse("hasNext", testIterator.hasNext());
+        Assert.assertEquals("iterator.remove", new ArrayList<>(validSortedSet), new ArrayList<>(testSortedSet));
+        Assert.assertEquals("size", validSortedSet.size(), testSortedSet.size());
+
+        List<Integer> sorted = new ArrayList<>(validSortedSet);
+        List<Integer> parallel = new ArrayList<>();
+        testSortedSet.parallelStream().forEachOrdered(parallel::add);
+        Assert.assertEquals("parallelStream", sorted, parallel);
+
+        if (testClass == ConcurrentSkipList.class || testClass == PersistentAVLTree.class) {
+            return; //Итератор слабо согласован или обходит неизменяемую версию и не бросает ConcurrentModificationException
+        }
+        testIterator = testSortedSet.iterator();
+        testSortedSet.clear();
+        testSortedSet.add(-1);
+        try {
+            testIterator.next();
+            Assert.fail("ConcurrentModificationException");
+        } catch (ConcurrentModificationException e) {
+            /* empty */
+        }
+    }
+
+    @Test
+    public void test09_addAll() {
+        List<Integer> values = new ArrayList<>();
+        for (int run = 0; run < 20; run++) {
+            int start = RANDOM.nextInt(1000);
+            for (int i = 0; i < 50; i++) {
+                values.add(start + i * (1 + RANDOM.nextInt(3)));
+            }
+        }
+        Assert.assertEquals("addAll", validSortedSet.addAll(values), testSortedSet.addAll(values));
+        checkBalanced(testSortedSet);
+        Assert.assertEquals("addAll", validSortedSet.addAll(values), testSortedSet.addAll(values));
+        for (int value = -10; value < 2000; value++) {
+            checkSizeAndContains(validSortedSet, testSortedSet, value);
+        }
+        checkFirstAndLast(validSortedSet, testSortedSet);
+    }
+
+    @Test
+    public void test10_navigable() {
+        for (int i = 0; i < 500; i++) {
+            int value = RANDOM.nextInt(1000);
+            validSortedSet.add(value);
+            testSortedSet.add(value);
+        }
+        NavigableSet<Integer> validSet = (NavigableSet<Integer>) validSortedSet;
+        for (int i = 0; i < 100; i++) {
+            int from = RANDOM.nextInt(1000);
+            int to = from + RANDOM.nextInt(1000 - from);
+            Assert.assertEquals("lower", validSet.lower(from), testSortedSet.lower(from));
+            Assert.assertEquals("floor", validSet.floor(from), testSortedSet.floor(from));
+            Assert.assertEquals("ceiling", validSet.ceiling(from), testSortedSet.ceiling(from));
+            Assert.assertEquals("higher", validSet.higher(from), testSortedSet.higher(from));
+            if (validSet.comparator() == null || validSet.comparator().compare(from, to) <= 0) {
+                checkView(validSet.subSet(from, true, to, false), testSortedSet.subSet(from, true, to, false));
+            }
+            checkView(validSet.headSet(to, true), testSortedSet.headSet(to, true));
+            checkView(validSet.tailSet(from, false), testSortedSet.tailSet(from, false));
+        }
+        checkView(validSet.descendingSet(), testSortedSet.descendingSet());
+        while (!validSet.isEmpty()) {
+            Assert.assertEquals("pollFirst", validSet.pollFirst(), testSortedSet.pollFirst());
+            Assert.assertEquals("pollLast", validSet.pollLast(), testSortedSet.pollLast());
+            checkBalanced(testSortedSet);
+        }
+        Assert.assertNull("pollFirst", testSortedSet.pollFirst());
+        Assert.assertTrue("isEmpty", testSortedSet.isEmpty());
+    }
+
+    @Test
+    public void test11_rankAndSelect() {
+        Assume.assumeTrue(testClass == AVLTree.class);
+        AVLTree<Integer> tree = (AVLTree<Integer>) testSortedSet;
+        for (int i = 0; i < 1000; i++) {
+            check(validSortedSet, testSortedSet, RANDOM.nextInt(1000), TransformOperation.ADD);
+        }
+        for (int i = 0; i < 500; i++) {
+            int value = RANDOM.nextInt(1000);
+            validSortedSet.remove(value);
+            tree.remove(value);
+        }
+        int k = 0;
+        for (Integer value : validSortedSet) {
+            Assert.assertEquals("select", value, tree.select(k));
+            Assert.assertEquals("rank", k, tree.rank(value));
+            k++;
+        }
+        for (int i = 0; i < 100; i++) {
+            int value = RANDOM.nextInt(1000);
+            Assert.assertEquals("rank", validSortedSet.headSet(value).size(), tree.rank(value));
+            Assert.assertEquals("tailSet.size", validSortedSet.tailSet(value).size(), tree.tailSet(value).size());
+        }
+        try {
+            tree.select(tree.size());
+            Assert.fail("IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            /* empty */
+        }
+    }
+
+    @Test
+    public void test12_snapshot() throws NotBalancedTreeException {
+        Assume.assumeTrue(testClass == PersistentAVLTree.class);
+        PersistentAVLTree<Integer> tree = (PersistentAVLTree<Integer>) testSortedSet;
+        for (int i = 0; i < 1000; i++) {
+            int value = RANDOM.nextInt(1000);
+            validSortedSet.add(value);
+            tree.add(value);
+        }
+        List<Integer> frozen = new ArrayList<>(validSortedSet);
+        PersistentAVLTree<Integer> snapshot = tree.snapshot();
+        Iterator<Integer> scan = tree.iterator();
+        for (int i = 0; i < 1000; i++) {
+            int value = RANDOM.nextInt(2000);
+            if (RANDOM.nextBoolean()) {
+                validSortedSet.add(value);
+                tree.add(value);
+            } else {
+                validSortedSet.remove(value);
+                tree.remove(value);
+            }
+        }
+        //Снимок и начатый до изменений обход видят версию на момент снимка
+        Assert.assertEquals("snapshot", frozen, new ArrayList<>(snapshot));
+        List<Integer> scanned = new ArrayList<>();
+        scan.forEachRemaining(scanned::add);
+        Assert.assertEquals("iterator", frozen, scanned);
+        Assert.assertEquals("tree", new ArrayList<>(validSortedSet), new ArrayList<>(tree));
+        snapshot.checkBalanced();
+
+        //Изменения снимка не видны в дереве
+        snapshot.clear();
+        Assert.assertTrue(snapshot.isEmpty());
+        Assert.assertEquals("tree", validSortedSet.size(), tree.size());
+    }
+
+    @Test
+    public void test13_fromSorted() {
+        Assume.assumeTrue(testClass == AVLTree.class || testClass == RedBlackTree.class);
+        for (int n = 0; n < 300; n += 1 + n / 10) {
+            TreeSet<Integer> sorted = new TreeSet<>(comparator);
+            while (sorted.size() < n && (comparator == null || comparator.compare(0, 1) != 0 || sorted.isEmpty())) {
+                sorted.add(RANDOM.nextInt(10000));
+            }
+            BalancedSortedSet<Integer> tree = testClass == AVLTree.class
+                    ? AVLTree.fromSorted(sorted.iterator(), comparator)
+                    : RedBlackTree.fromSorted(sorted.iterator(), comparator);
+            checkBalanced(tree);
+            Assert.assertEquals("fromSorted", new ArrayList<>(sorted), new ArrayList<>(tree));
+            Assert.assertEquals("size", sorted.size(), tree.size());
+            for (Integer value : sorted) {
+                Assert.assertTrue("contains", tree.contains(value));
+            }
+        }
+
+        //addAll отсортированного входа сливает его с деревом
+        for (int i = 0; i < 200; i++) {
+            check(validSortedSet, testSortedSet, RANDOM.nextInt(1000), TransformOperation.ADD);
+        }
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            values.add(RANDOM.nextInt(3000));
+        }
+        values.sort(comparator == null ? Comparator.naturalOrder() : comparator);
+        Assert.assertEquals("addAll", validSortedSet.addAll(values), testSortedSet.addAll(values));
+        checkBalanced(testSortedSet);
+        Assert.assertEquals("addAll", new ArrayList<>(validSortedSet), new ArrayList<>(testSortedSet));
+        check(validSortedSet, testSortedSet, RANDOM.nextInt(3000), TransformOperation.ADD);
+        check(validSortedSet, testSortedSet, validSortedSet.first(), TransformOperation.REMOVE);
+
+        try {
+            AVLTree.fromSorted(Arrays.asList(3, 2, 1).iterator(), Comparator.naturalOrder());
+            Assert.fail("IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            /* empty */
+        }
+    }
+
+    @Test
+    public void test14_setOperations() {
+        Assume.assumeTrue(testClass == AVLTree.class);
+        for (int run = 0; run < 20; run++) {
+            boolean parallel = run % 2 == 1;
+            int n = 1 + RANDOM.nextInt(run < 10 ? 100 : 10000);
+            int m = 1 + RANDOM.nextInt(run < 10 ? 100 : 10000);
+            TreeSet<Integer> valid1 = new TreeSet<>(comparator);
+            TreeSet<Integer> valid2 = new TreeSet<>(comparator);
+            AVLTree<Integer> tree1 = new AVLTree<>(comparator);
+            AVLTree<Integer> tree2 = new AVLTree<>(comparator);
+            for (int i = 0; i < n; i++) {
+                int value = RANDOM.nextInt(2 * n + 1);
+                valid1.add(value);
+                tree1.add(value);
+            }
+            for (int i = 0; i < m; i++) {
+                int value = RANDOM.nextInt(2 * n + 1);
+                valid2.add(value);
+                tree2.add(value);
+            }
+            List<Integer> before2 = new ArrayList<>(tree2);
+
+            AVLTree<Integer> union = copy(tree1);
+            TreeSet<Integer> validUnion = new TreeSet<>(valid1);
+            Assert.assertEquals("union", validUnion.addAll(valid2), parallel ? union.parallelUnion(tree2) : union.addAll(tree2));
+            checkSetOperation("union", validUnion, union);
+
+            AVLTree<Integer> intersection = copy(tree1);
+            TreeSet<Integer> validIntersection = new TreeSet<>(valid1);
+            Assert.assertEquals("intersect", validIntersection.retainAll(valid2),
+                    parallel ? intersection.parallelIntersect(tree2) : intersection.retainAll(tree2));
+            checkSetOperation("intersect", validIntersection, intersection);
+
+            AVLTree<Integer> difference = copy(tree1);
+            TreeSet<Integer> validDifference = new TreeSet<>(valid1);
+            Assert.assertEquals("subtract", validDifference.removeAll(valid2),
+                    parallel ? difference.parallelSubtract(tree2) : difference.removeAll(tree2));
+            checkSetOperation("subtract", validDifference, difference);
+
+            Assert.assertEquals("argument is not changed", before2, new ArrayList<>(tree2));
+            checkBalanced(tree2);
+
+            Integer key = RANDOM.nextInt(2 * n + 1);
+            AVLTree<Integer> greater = tree1.split(key);
+            checkSetOperation("split", valid1.headSet(key, false), tree1);
+            checkSetOperation("split", valid1.tailSet(key, true), greater);
+            tree1.join(greater);
+            checkSetOperation("join", valid1, tree1);
+            Assert.assertTrue("join", greater.isEmpty());
+        }
+
+        AVLTree<Integer> tree = new AVLTree<>(comparator);
+        tree.add(0);
+        AVLTree<Integer> other = new AVLTree<>((a, b) -> Integer.compare(a, b));
+        other.add(1);
+        try {
+            tree.join(other);
+            Assert.fail("IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            /* empty */
+        }
+        Assert.assertEquals("join with another comparator", 1, other.size());
+    }
+
+    @Test
+    public void test15_smallFanout() {
+        Assume.assumeTrue(testClass == BTree.class);
+        //При маленьком fanout даже на сотне элементов дерево в несколько уровней, и все ветки удаления срабатывают
+        for (int fanout = 3; fanout <= 6; fanout++) {
+            TreeSet<Integer> valid = new TreeSet<>(comparator);
+            BTree<Integer> tree = new BTree<>(fanout, comparator);
+            for (int i = 0; i < 3000; i++) {
+                int value = RANDOM.nextInt(300);
+                Assert.assertEquals("add", valid.add(value), tree.add(value));
+                value = RANDOM.nextInt(300);
+                checkRemove(valid, tree, value);
+                checkBalanced(tree);
+            }
+            Assert.assertEquals(new ArrayList<>(valid), new ArrayList<>(tree));
+            Assert.assertEquals(new ArrayList<>(valid.descendingSet()), new ArrayList<>(tree.descendingSet()));
+            for (Iterator<Integer> it = tree.iterator(); it.hasNext(); ) {
+                if (it.next() % 3 == 0) {
+                    it.remove();
+                }
+            }
+            valid.removeIf(value -> value % 3 == 0);
+            checkBalanced(tree);
+            Assert.assertEquals(new ArrayList<>(valid), new ArrayList<>(tree));
+        }
+    }
+
+    @Test
+    public void test16_equalButDistinctValues() {
+        //Значения вне кеша Integer: при каждой упаковке получается новый объект, равный, но не тот же самый
+        for (int i = 0; i < 1000; i++) {
+            check(validSortedSet, testSortedSet, Integer.valueOf(1000 + i * 7), TransformOperation.ADD);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            Integer value = Integer.valueOf(1000 + i * 7);
+            Assert.assertEquals("contains", validSortedSet.contains(value), testSortedSet.contains(value));
+            checkRemove(validSortedSet, testSortedSet, value);
+            checkBalanced(testSortedSet);
+            checkSizeAndContains(validSortedSet, testSortedSet, value);
+        }
+        Assert.assertEquals(new ArrayList<>(validSortedSet), new ArrayList<>(testSortedSet));
+    }
+
+    @Test
+    public void test17_concurrentPoll() throws Exception {
+        Assume.assumeTrue(testClass == PersistentAVLTree.class);
+        for (int i = 0; i < 20000; i++) {
+            validSortedSet.add(i);
+            testSortedSet.add(i);
+        }
+        //Каждый элемент должен достаться ровно одному потоку
+        List<Integer> polled = Collections.synchronizedList(new ArrayList<>());
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            boolean fromLast = t % 2 == 1;
+            threads[t] = new Thread(() -> {
+                for (Integer value = poll(fromLast); value != null; value = poll(fromLast)) {
+                    polled.add(value);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertTrue("isEmpty", testSortedSet.isEmpty());
+        Assert.assertEquals("polled", validSortedSet.size(), polled.size());
+        Assert.assertEquals("polled", validSortedSet, new TreeSet<>(polled));
+        checkBalanced(testSortedSet);
+    }
+
+    private Integer poll(boolean fromLast) {
+        return fromLast ? testSortedSet.pollLast() : testSortedSet.pollFirst();
+    }
+
+    private AVLTree<Integer> copy(AVLTree<Integer> tree) {
+        AVLTree<Integer> copy = new AVLTree<>(comparator);
+        for (Integer value : tree) {
+            copy.add(value);
+        }
+        return copy;
+    }
+
+    private void checkSetOperation(String message, SortedSet<Integer> valid, AVLTree<Integer> tree) {
+        checkBalanced(tree);
+        Assert.assertEquals(message, new ArrayList<>(valid), new ArrayList<>(tree));
+        Assert.assertEquals(message + ".size", valid.size(), tree.size());
+        if (!valid.isEmpty()) {
+            Assert.assertEquals(message + ".rank", valid.headSet(valid.last()).size(), tree.rank(valid.last()));
+        }
+    }
+
+    private void checkView(NavigableSet<Integer> validView, NavigableSet<Integer> testView) {
+        Assert.assertEquals("view", new ArrayList<>(validView), new ArrayList<>(testView));
+        Assert.assertEquals("view.size", validView.size(), testView.size());
+        if (!validView.isEmpty()) {
+            checkFirstAndLast(validView, testView);
+            Assert.assertEquals("view.descendingSet", new ArrayList<>(validView.descendingSet()),
+                    new ArrayList<>(testView.descendingSet()));
+        }
+    }
+
     private <E> void check(SortedSet<E> validSortedSet, BalancedSortedSet<E> testSortedSet, E value, TransformOperation transformOperation) {
         checkFirstAndLast(validSortedSet, testSortedSet);
         checkTransformOperation(validSortedSet, testSortedSet, value, transformOperation);
@@ -174,7 +560,7 @@ public class TestBalancedSortedSet extends AbstractSetTest {
 
     private <E> void checkBalanced(BalancedSortedSet<E> balancedSortedSet) {
         try {
-            testSortedSet.checkBalanced();
+            balancedSortedSet.checkBalanced();
         } catch (NotBalancedTreeException e) {
             Assert.fail(e.getMessage());
         }
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.ConcurrentChainHashTable;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestConcurrentChainHashTable extends AbstractSetTest {
+
+    private static final int THREADS = 8;
+
+    private Set<Integer> validSet;
+    private Set<Integer> testSet;
+
+    @Before //Запускается перед запуском каждого теста
+    public void createSets() {
+        validSet = new HashSet<>();
+        testSet = new ConcurrentChainHashTable<>();
+    }
+
+    @Test
+    public void test01_sequential() {
+        for (int i = 0; i < 10000; i++) {
+            checkTransformOperation(validSet, testSet, RANDOM.nextInt(5000), TransformOperation.ADD);
+            int value = RANDOM.nextInt(5000);
+            checkRemove(validSet, testSet, value);
+            checkSizeAndContains(validSet, testSet, RANDOM.nextInt(5000));
+        }
+        Assert.assertEquals(validSet, new HashSet<>(testSet));
+    }
+
+    @Test
+    public void test02_concurrentAdd() throws Exception {
+        //Потоки добавляют пересекающиеся диапазоны: каждое число должно добавиться ровно один раз
+        int perThread = 50000;
+        List<Future<Integer>> added = runInParallel(thread -> {
+            int count = 0;
+            for (int i = 0; i < perThread; i++) {
+                if (testSet.add(thread * perThread / 2 + i)) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        int total = 0;
+        for (Future<Integer> future : added) {
+            total += future.get();
+        }
+        int expected = (THREADS + 1) * perThread / 2;
+        Assert.assertEquals(expected, total);
+        Assert.assertEquals(expected, testSet.size());
+        for (int i = 0; i < expected; i++) {
+            Assert.assertTrue(testSet.contains(i));
+        }
+        Assert.assertEquals(expected, new HashSet<>(testSet).size());
+    }
+
+    @Test
+    public void test03_concurrentAddRemove() throws Exception {
+        //Каждый поток работает со своими числами, пока другие растят таблицу
+        int perThread = 20000;
+        List<Future<Integer>> results = runInParallel(thread -> {
+            for (int i = 0; i < perThread; i++) {
+                Assert.assertTrue(testSet.add(i * THREADS + thread));
+            }
+            for (int i = 0; i < perThread; i += 2) {
+                Assert.assertTrue(testSet.remove(i * THREADS + thread));
+            }
+            for (int i = 0; i < perThread; i++) {
+                Assert.assertEquals(i % 2 == 1, testSet.contains(i * THREADS + thread));
+            }
+            return 0;
+        });
+        for (Future<Integer> future : results) {
+            future.get();
+        }
+        Assert.assertEquals(THREADS * perThread / 2, testSet.size());
+    }
+
+    private interface Task {
+        Integer run(int thread);
+    }
+
+    private List<Future<Integer>> runInParallel(Task task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                tasks.add(() -> task.run(thread));
+            }
+            return executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.ConcurrentSkipList;
+import ru.mail.polis.NotBalancedTreeException;
+
+/**
+ * Однопоточное поведение ConcurrentSkipList проверяет TestBalancedSortedSet, здесь — одновременные изменения
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestConcurrentSkipList extends AbstractSetTest {
+
+    private static final int THREADS = 8;
+
+    private ConcurrentSkipList<Integer> testSet;
+
+    @Before //Запускается перед запуском каждого теста
+    public void createSet() {
+        testSet = new ConcurrentSkipList<>();
+    }
+
+    @Test
+    public void test01_concurrentAddRemove() throws Exception {
+        //Каждый поток работает со своими числами, которые перемежаются с числами других потоков
+        int perThread = 20000;
+        runInParallel(thread -> {
+            for (int i = 0; i < perThread; i++) {
+                Assert.assertTrue(testSet.add(i * THREADS + thread));
+            }
+            for (int i = 0; i < perThread; i += 2) {
+                Assert.assertTrue(testSet.remove(i * THREADS + thread));
+            }
+            for (int i = 0; i < perThread; i++) {
+                int value = i * THREADS + thread;
+                Assert.assertEquals(i % 2 == 1, testSet.contains(value));
+                if (i % 2 == 1) {
+                    Assert.assertEquals(Integer.valueOf(value), testSet.floor(value));
+                }
+            }
+        });
+        checkLevels();
+        Assert.assertEquals(THREADS * perThread / 2, testSet.size());
+        int expected = 0;
+        for (Integer value : testSet) {
+            while (expected / THREADS % 2 == 0) {
+                expected++;
+            }
+            Assert.assertEquals(Integer.valueOf(expected++), value);
+        }
+    }
+
+    @Test
+    public void test02_sameKeys() throws Exception {
+        //Все потоки добавляют и удаляют одни и те же числа и забирают первый элемент
+        int values = 100;
+        runInParallel(thread -> {
+            for (int i = 0; i < 20000; i++) {
+                int value = (i * 31 + thread) % values;
+                if ((i & 1) == 0) {
+                    testSet.add(value);
+                } else {
+                    testSet.remove(value);
+                }
+                if (i % 1000 == 0) {
+                    testSet.pollFirst();
+                }
+            }
+        });
+        checkLevels();
+        List<Integer> elements = new ArrayList<>(testSet);
+        Assert.assertEquals(elements.size(), testSet.size());
+        for (int i = 1; i < elements.size(); i++) {
+            Assert.assertTrue(elements.get(i - 1) < elements.get(i));
+        }
+    }
+
+    @Test
+    public void test03_sortedSpliterator() {
+        for (int i = 0; i < 5000; i++) {
+            testSet.add(i);
+        }
+        checkSorted(testSet.spliterator(), null);
+
+        Comparator<Integer> reverse = Collections.reverseOrder();
+        ConcurrentSkipList<Integer> reversed = new ConcurrentSkipList<>(reverse);
+        reversed.addAll(testSet);
+        checkSorted(reversed.spliterator(), reverse);
+    }
+
+    private void checkSorted(Spliterator<Integer> spliterator, Comparator<Integer> comparator) {
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+        Assert.assertSame(comparator, spliterator.getComparator());
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        Assert.assertNotNull(prefix);
+        Assert.assertTrue(prefix.hasCharacteristics(Spliterator.SORTED));
+        Assert.assertSame(comparator, prefix.getComparator());
+    }
+
+    private void checkLevels() {
+        try {
+            testSet.checkBalanced();
+        } catch (NotBalancedTreeException e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    private interface Task {
+        void run(int thread);
+    }
+
+    private void runInParallel(Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                tasks.add(() -> {
+                    task.run(thread);
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
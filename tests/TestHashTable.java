@@ -1,6 +1,7 @@
 import java.util.HashSet;
 import java.util.Set;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -56,6 +57,126 @@ public class TestHashTable extends AbstractSetTest {
         }
     }
 
+    @Test
+    public void test04_collisions() {
+        //"Aa" и "BB" имеют одинаковый hashCode, поэтому все их склейки попадают в одну ячейку и она становится деревом
+        for (int i = 0; i < 256; i++) {
+            check(validSet, testSet, collision(i), TransformOperation.ADD);
+        }
+        for (int i = 0; i < 256; i++) {
+            checkSizeAndContains(validSet, testSet, collision(i));
+        }
+        for (int i = 0; i < 256; i += 2) {
+            checkRemove(validSet, testSet, collision(i));
+            checkSizeAndContains(validSet, testSet, collision(i));
+            checkRemove(validSet, testSet, collision(i));
+        }
+        //Дерево уменьшается до порога и снова становится цепочкой
+        for (int i = 0; i < 256; i++) {
+            check(validSet, testSet, gen(), TransformOperation.ADD);
+            checkRemove(validSet, testSet, collision(i));
+            checkSizeAndContains(validSet, testSet, collision(i));
+        }
+        Assert.assertEquals(validSet.size(), testSet.size());
+    }
+
+    @Test
+    public void test05_compareToTies() {
+        //Один хеш у всех и compareTo только по coarse: в ячейке-дереве элементы различает лишь equals
+        Set<Tie> validTies = new HashSet<>();
+        Set<Tie> testTies = new ChainHashTable<>();
+        for (int coarse = 0; coarse < 10; coarse++) {
+            for (int fine = 0; fine < 20; fine++) {
+                Assert.assertEquals("add", validTies.add(new Tie(coarse, fine)), testTies.add(new Tie(coarse, fine)));
+                Assert.assertFalse("add duplicate", testTies.add(new Tie(coarse, fine)));
+            }
+        }
+        for (int i = 0; i < 2000; i++) {
+            Tie tie = new Tie(RANDOM.nextInt(12), RANDOM.nextInt(22));
+            Assert.assertEquals("contains", validTies.contains(tie), testTies.contains(tie));
+            tie = new Tie(RANDOM.nextInt(12), RANDOM.nextInt(22));
+            checkRemove(validTies, testTies, tie);
+            tie = new Tie(RANDOM.nextInt(12), RANDOM.nextInt(22));
+            Assert.assertEquals("add", validTies.add(tie), testTies.add(tie));
+            Assert.assertEquals("size", validTies.size(), testTies.size());
+        }
+    }
+
+    @Test
+    public void test06_comparableToOtherType() {
+        //Comparable, но не с собой: такую ячейку нельзя делать деревом, иначе compareTo узлов бросит ClassCastException
+        Set<Foreign> validForeign = new HashSet<>();
+        Set<Foreign> testForeign = new ChainHashTable<>();
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals("add", validForeign.add(new Foreign(i)), testForeign.add(new Foreign(i)));
+        }
+        for (int i = 0; i < 2000; i++) {
+            Foreign foreign = new Foreign(RANDOM.nextInt(220));
+            Assert.assertEquals("contains", validForeign.contains(foreign), testForeign.contains(foreign));
+            foreign = new Foreign(RANDOM.nextInt(220));
+            checkRemove(validForeign, testForeign, foreign);
+            foreign = new Foreign(RANDOM.nextInt(220));
+            Assert.assertEquals("add", validForeign.add(foreign), testForeign.add(foreign));
+            Assert.assertEquals("size", validForeign.size(), testForeign.size());
+        }
+    }
+
+    private static final class Foreign implements Comparable<String> {
+        final int id;
+
+        Foreign(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(String o) {
+            return Integer.toString(id).compareTo(o);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Foreign && id == ((Foreign) o).id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    private static final class Tie implements Comparable<Tie> {
+        final int coarse;
+        final int fine;
+
+        Tie(int coarse, int fine) {
+            this.coarse = coarse;
+            this.fine = fine;
+        }
+
+        @Override
+        public int compareTo(Tie o) {
+            return Integer.compare(coarse, o.coarse);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Tie && coarse == ((Tie) o).coarse && fine == ((Tie) o).fine;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    private String collision(int bits) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            sb.append((bits & (1 << i)) == 0 ? "Aa" : "BB");
+        }
+        return sb.toString();
+    }
+
     private String gen() {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < 10; i++) {
@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.OffHeapOpenHashTable;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestOffHeapOpenHashTable extends AbstractSetTest {
+
+    private static final int MAX_KEY_LENGTH = 12;
+
+    @Test
+    public void test01_direct() {
+        Set<String> validSet = new HashSet<>();
+        OffHeapOpenHashTable testSet = new OffHeapOpenHashTable(MAX_KEY_LENGTH);
+        for (int i = 0; i < 20000; i++) {
+            String value = gen();
+            Assert.assertEquals("add", validSet.add(value), testSet.add(value));
+            value = gen();
+            checkRemove(validSet, testSet, value);
+            checkSizeAndContains(validSet, testSet, gen());
+        }
+        Assert.assertEquals(validSet, testSet);
+        Assert.assertTrue(testSet.add(""));
+        Assert.assertTrue(testSet.contains(""));
+        Assert.assertFalse(testSet.contains("Abc"));
+        Assert.assertFalse(testSet.contains("abcdefghijklmnopq"));
+        try {
+            testSet.add("abc1");
+            Assert.fail("IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+        }
+        testSet.remove("");
+        for (Iterator<String> it = testSet.iterator(); it.hasNext(); ) {
+            if (it.next().length() % 2 == 0) {
+                it.remove();
+            }
+        }
+        validSet.removeIf(value -> value.length() % 2 == 0);
+        Assert.assertEquals(validSet, testSet);
+    }
+
+    @Test
+    public void test02_mappedFileReopens() throws IOException {
+        Path file = Files.createTempFile("offheap", ".table");
+        try {
+            Set<String> validSet = new HashSet<>();
+            try (OffHeapOpenHashTable testSet = OffHeapOpenHashTable.open(file, MAX_KEY_LENGTH)) {
+                for (int i = 0; i < 5000; i++) {
+                    String value = gen();
+                    Assert.assertEquals("add", validSet.add(value), testSet.add(value));
+                    if (i % 3 == 0) {
+                        value = gen();
+                        checkRemove(validSet, testSet, value);
+                    }
+                }
+                Assert.assertEquals(validSet, testSet);
+            }
+            try (OffHeapOpenHashTable testSet = OffHeapOpenHashTable.open(file, MAX_KEY_LENGTH)) {
+                Assert.assertEquals(validSet.size(), testSet.size());
+                Assert.assertEquals(validSet, testSet);
+                Assert.assertTrue(testSet.add("reopened"));
+            }
+            try (OffHeapOpenHashTable testSet = OffHeapOpenHashTable.open(file, MAX_KEY_LENGTH)) {
+                Assert.assertTrue(testSet.contains("reopened"));
+            }
+            try {
+                OffHeapOpenHashTable.open(file, MAX_KEY_LENGTH + 1).close();
+                Assert.fail("IOException");
+            } catch (IOException e) {
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void test03_probeSequence() {
+        for (String value : new String[]{"", "a", "polis", "zzzzzzzzzzzz"}) {
+            Assert.assertTrue(new OffHeapOpenHashTable.Key(value).isHashFunctionValid(1 << 10));
+        }
+    }
+
+    @Test
+    public void test04_iteratorRemoveAll() throws IOException {
+        Path file = Files.createTempFile("offheap", ".table");
+        try {
+            Set<String> validSet = new HashSet<>();
+            try (OffHeapOpenHashTable testSet = OffHeapOpenHashTable.open(file, MAX_KEY_LENGTH)) {
+                //Каждый круг оставляет удалённые ячейки, которые может убрать только перестройка в add
+                for (int round = 0; round < 20; round++) {
+                    for (int i = 0; i < 3000; i++) {
+                        String value = gen();
+                        Assert.assertEquals("add", validSet.add(value), testSet.add(value));
+                    }
+                    for (Iterator<String> it = testSet.iterator(); it.hasNext(); ) {
+                        validSet.remove(it.next());
+                        it.remove();
+                    }
+                }
+                Assert.assertTrue(testSet.add("last"));
+                validSet.add("last");
+                Assert.assertEquals(validSet, testSet);
+            }
+            //Число ячеек и удалённых ячеек — в заголовке файла, по смещениям 8 и 16
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 32);
+                int capacity = header.getInt(8);
+                int tombstones = header.getInt(16);
+                Assert.assertTrue("tombstones " + tombstones + " of " + capacity, tombstones * 4 <= capacity);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private String gen() {
+        int length = 1 + RANDOM.nextInt(MAX_KEY_LENGTH);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length && (i < 2 || RANDOM.nextInt(4) != 0); i++) {
+            sb.append((char) ('a' + RANDOM.nextInt(26)));
+        }
+        return sb.toString();
+    }
+
+}
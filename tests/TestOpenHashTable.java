@@ -0,0 +1,208 @@
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.CheckedOpenHashTableEntity;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestOpenHashTable extends AbstractSetTest {
+
+    /**
+     * Строка из строчных латинских букв с двойным хешированием
+     */
+    static class Word extends CheckedOpenHashTableEntity {
+
+        final String value;
+
+        Word(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode(int tableSize, int probId) throws IllegalArgumentException {
+            if (probId < 0 || probId >= tableSize) {
+                throw new IllegalArgumentException("probId = " + probId);
+            }
+            int h = value.hashCode();
+            int h1 = h ^ (h >>> 16);
+            int h2 = (h * 31 + value.length()) | 1;
+            return (h1 + probId * h2) & (tableSize - 1);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Word && value.equals(((Word) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    private Set<Word> validSet;
+    private Set<Word> testSet;
+
+    @Before
+    public void createSets() {
+        validSet = new HashSet<>();
+        testSet = new OpenHashTable<>();
+    }
+
+    @Test
+    public void test01_add() {
+        for (int i = 0; i < 1000; i++) {
+            check(gen(3), true);
+        }
+    }
+
+    @Test
+    public void test02_addWithRemove() {
+        for (int i = 0; i < 5000; i++) {
+            check(gen(2), RANDOM.nextBoolean());
+        }
+        for (int i = 0; i < 1000; i++) {
+            check(gen(2), false);
+        }
+    }
+
+    @Test
+    public void test03_deleteHeavy() {
+        //Таблица остаётся маленькой, а удалённых ячеек набирается много
+        for (int i = 0; i < 20000; i++) {
+            Word word = gen(5);
+            check(word, true);
+            check(word, false);
+        }
+        Assert.assertTrue("isEmpty", testSet.isEmpty());
+    }
+
+    @Test
+    public void test04_iterator() {
+        for (int i = 0; i < 1000; i++) {
+            check(gen(3), RANDOM.nextInt(3) > 0);
+        }
+        Assert.assertEquals("iterator", validSet, new HashSet<>(testSet));
+        Iterator<Word> iterator = testSet.iterator();
+        while (iterator.hasNext()) {
+            Word word = iterator.next();
+            if (word.value.charAt(0) < 'n') {
+                iterator.remove();
+                validSet.remove(word);
+            }
+        }
+        Assert.assertEquals("iterator.remove", validSet, new HashSet<>(testSet));
+        Assert.assertEquals("size", validSet.size(), testSet.size());
+    }
+
+    @Test
+    public void test05_hashFunction() {
+        for (int tableSize = 1; tableSize <= 1 << 12; tableSize <<= 1) {
+            Assert.assertTrue("valid", new Word(gen(5).value).isHashFunctionValid(tableSize));
+        }
+    }
+
+    @Test
+    public void test06_student() {
+        SimpleStudentGenerator generator = SimpleStudentGenerator.getInstance();
+        for (int tableSize = 1; tableSize <= 1 << 12; tableSize <<= 1) {
+            Assert.assertTrue("valid", generator.generate().isHashFunctionValid(tableSize));
+        }
+        try {
+            generator.generate().hashCode(100, 0);
+            Assert.fail("IllegalArgumentException: tableSize is not a power of two");
+        } catch (IllegalArgumentException e) {
+            /* empty */
+        }
+        Set<Student> validStudents = new HashSet<>();
+        Set<Student> testStudents = new OpenHashTable<>();
+        for (int i = 0; i < 5000; i++) {
+            Student student = generator.generate();
+            Assert.assertEquals("add", validStudents.add(student), testStudents.add(student));
+        }
+        for (Student student : validStudents) {
+            Assert.assertTrue("contains", testStudents.contains(student));
+        }
+        Student changed = generator.generate();
+        int hash = changed.hashCode();
+        changed.setEmail(changed.getEmail() == null ? "student@polis.mail.ru" : null);
+        Assert.assertNotEquals("hashCode after setEmail", hash, changed.hashCode());
+        Assert.assertFalse("contains", testStudents.contains(changed));
+        Assert.assertEquals("size", validStudents.size(), testStudents.size());
+    }
+
+    @Test
+    public void test07_iteratorRemoveAll() {
+        //Каждый круг оставляет удалённые ячейки, которые может убрать только перестройка в add
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 3000; i++) {
+                check(gen(5), true);
+            }
+            Iterator<Word> iterator = testSet.iterator();
+            while (iterator.hasNext()) {
+                validSet.remove(iterator.next());
+                iterator.remove();
+            }
+        }
+        check(gen(5), true);
+        ProbeCounter.probes = 0;
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse("contains", testSet.contains(new ProbeCounter(gen(5).value)));
+        }
+        Assert.assertTrue("probes " + ProbeCounter.probes, ProbeCounter.probes < 1000);
+        for (int i = 0; i < 1000; i++) {
+            check(gen(3), RANDOM.nextBoolean());
+        }
+        Assert.assertEquals("iterator", validSet, new HashSet<>(testSet));
+    }
+
+    /**
+     * Слово, которое считает вызовы hashCode(tableSize, probId), то есть пробы
+     */
+    static class ProbeCounter extends Word {
+
+        static int probes;
+
+        ProbeCounter(String value) {
+            super(value);
+        }
+
+        @Override
+        public int hashCode(int tableSize, int probId) throws IllegalArgumentException {
+            probes++;
+            return super.hashCode(tableSize, probId);
+        }
+    }
+
+    private Word gen(int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append((char) (RANDOM.nextInt(26) + 'a'));
+        }
+        return new Word(sb.toString());
+    }
+
+    private void check(Word value, boolean add) {
+        checkSizeAndContains(validSet, testSet, value);
+        if (add) {
+            Assert.assertEquals("add", validSet.add(value), testSet.add(value));
+        } else {
+            checkRemove(validSet, testSet, value);
+        }
+        checkSizeAndContains(validSet, testSet, value);
+    }
+}
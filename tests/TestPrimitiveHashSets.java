@@ -0,0 +1,91 @@
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.IntHashSet;
+import ru.mail.polis.LongHashSet;
+
+/**
+ * IntHashSet и LongHashSet против HashSet при разных load factor, включая 0 (он хранится вне таблицы)
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestPrimitiveHashSets extends AbstractSetTest {
+
+    private static final float[] LOAD_FACTORS = {0.25f, 0.5f, 0.75f, 0.95f};
+
+    @Test
+    public void test01_intHashSet() {
+        for (float loadFactor : LOAD_FACTORS) {
+            Set<Integer> validSet = new HashSet<>();
+            IntHashSet testSet = new IntHashSet(loadFactor);
+            for (int i = 0; i < 20000; i++) {
+                int value = RANDOM.nextInt(3000) - 1500;
+                Assert.assertEquals("addInt", validSet.add(value), testSet.addInt(value));
+                value = RANDOM.nextInt(3000) - 1500;
+                Assert.assertEquals("removeInt", validSet.remove(value), testSet.removeInt(value));
+                value = RANDOM.nextInt(3000) - 1500;
+                Assert.assertEquals("containsInt", validSet.contains(value), testSet.containsInt(value));
+                checkTransformOperation(validSet, testSet, value, TransformOperation.ADD);
+                checkSizeAndContains(validSet, testSet, value);
+            }
+            Assert.assertEquals(validSet, testSet);
+
+            //Удаление через итератор сдвигает элементы кластеров, но каждый элемент выдаётся ровно один раз
+            Set<Integer> seen = new HashSet<>();
+            for (PrimitiveIterator.OfInt it = testSet.iterator(); it.hasNext(); ) {
+                int value = it.nextInt();
+                Assert.assertTrue("duplicate " + value, seen.add(value));
+                if (value % 3 != 0) {
+                    it.remove();
+                }
+            }
+            Assert.assertEquals(validSet, seen);
+            validSet.removeIf(value -> value % 3 != 0);
+            Assert.assertEquals(validSet, testSet);
+            Assert.assertEquals(validSet.size(), testSet.size());
+        }
+    }
+
+    @Test
+    public void test02_longHashSet() {
+        for (float loadFactor : LOAD_FACTORS) {
+            Set<Long> validSet = new HashSet<>();
+            LongHashSet testSet = new LongHashSet(loadFactor);
+            for (int i = 0; i < 20000; i++) {
+                //Значения различаются только старшими битами
+                long value = (long) (RANDOM.nextInt(3000) - 1500) << 32;
+                Assert.assertEquals("addLong", validSet.add(value), testSet.addLong(value));
+                value = (long) (RANDOM.nextInt(3000) - 1500) << 32;
+                Assert.assertEquals("removeLong", validSet.remove(value), testSet.removeLong(value));
+                value = (long) (RANDOM.nextInt(3000) - 1500) << 32;
+                Assert.assertEquals("containsLong", validSet.contains(value), testSet.containsLong(value));
+                checkTransformOperation(validSet, testSet, value, TransformOperation.ADD);
+                checkSizeAndContains(validSet, testSet, value);
+            }
+            Assert.assertEquals(validSet, testSet);
+
+            Set<Long> seen = new HashSet<>();
+            for (PrimitiveIterator.OfLong it = testSet.iterator(); it.hasNext(); ) {
+                long value = it.nextLong();
+                Assert.assertTrue("duplicate " + value, seen.add(value));
+                if ((value >> 32) % 3 != 0) {
+                    it.remove();
+                }
+            }
+            Assert.assertEquals(validSet, seen);
+            validSet.removeIf(value -> (value >> 32) % 3 != 0);
+            Assert.assertEquals(validSet, testSet);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test03_invalidLoadFactor() {
+        new IntHashSet(1f);
+    }
+
+}
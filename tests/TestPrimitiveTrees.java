@@ -0,0 +1,135 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.PrimitiveIterator;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.BalancedSortedSet;
+import ru.mail.polis.IntAVLTree;
+import ru.mail.polis.LongRedBlackTree;
+import ru.mail.polis.NotBalancedTreeException;
+
+/**
+ * IntAVLTree и LongRedBlackTree против TreeSet: примитивные методы, методы NavigableSet и представления
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestPrimitiveTrees extends AbstractSetTest {
+
+    @Test
+    public void test01_intAVLTree() {
+        TreeSet<Integer> validSet = new TreeSet<>();
+        IntAVLTree testSet = new IntAVLTree();
+        for (int i = 0; i < 20000; i++) {
+            int value = RANDOM.nextInt(2000) - 1000;
+            Assert.assertEquals("addInt", validSet.add(value), testSet.addInt(value));
+            value = RANDOM.nextInt(2000) - 1000;
+            Assert.assertEquals("removeInt", validSet.remove(value), testSet.removeInt(value));
+            value = RANDOM.nextInt(2000) - 1000;
+            Assert.assertEquals("containsInt", validSet.contains(value), testSet.containsInt(value));
+            checkTransformOperation(validSet, testSet, value, TransformOperation.ADD);
+            checkSizeAndContains(validSet, testSet, value);
+        }
+        checkBalanced(testSet);
+        Assert.assertEquals(validSet.first().intValue(), testSet.firstInt());
+        Assert.assertEquals(validSet.last().intValue(), testSet.lastInt());
+        checkNavigation(validSet, testSet, -1001, 1001);
+
+        List<Integer> values = new ArrayList<>();
+        for (PrimitiveIterator.OfInt it = testSet.iterator(); it.hasNext(); ) {
+            int value = it.nextInt();
+            values.add(value);
+            if (value % 2 == 0) {
+                it.remove();
+            }
+        }
+        Assert.assertEquals(new ArrayList<>(validSet), values);
+        validSet.removeIf(value -> value % 2 == 0);
+        Assert.assertEquals(new ArrayList<>(validSet), new ArrayList<>(testSet));
+        checkBalanced(testSet);
+
+        //Сравнение не переполняется на краях диапазона
+        testSet.clear();
+        Assert.assertTrue(testSet.addInt(Integer.MIN_VALUE));
+        Assert.assertTrue(testSet.addInt(Integer.MAX_VALUE));
+        Assert.assertTrue(testSet.addInt(0));
+        Assert.assertEquals(Integer.MIN_VALUE, testSet.firstInt());
+        Assert.assertEquals(Integer.MAX_VALUE, testSet.lastInt());
+        Assert.assertEquals(Integer.valueOf(0), testSet.higher(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void test02_longRedBlackTree() {
+        TreeSet<Long> validSet = new TreeSet<>();
+        LongRedBlackTree testSet = new LongRedBlackTree();
+        for (int i = 0; i < 20000; i++) {
+            long value = (RANDOM.nextInt(2000) - 1000) * (1L << 40);
+            Assert.assertEquals("addLong", validSet.add(value), testSet.addLong(value));
+            value = (RANDOM.nextInt(2000) - 1000) * (1L << 40);
+            Assert.assertEquals("removeLong", validSet.remove(value), testSet.removeLong(value));
+            value = (RANDOM.nextInt(2000) - 1000) * (1L << 40);
+            Assert.assertEquals("containsLong", validSet.contains(value), testSet.containsLong(value));
+            checkTransformOperation(validSet, testSet, value, TransformOperation.ADD);
+            checkSizeAndContains(validSet, testSet, value);
+        }
+        checkBalanced(testSet);
+        Assert.assertEquals(validSet.first().longValue(), testSet.firstLong());
+        Assert.assertEquals(validSet.last().longValue(), testSet.lastLong());
+        checkNavigation(validSet, testSet, -1001L << 40, 1001L << 40);
+
+        List<Long> values = new ArrayList<>();
+        for (PrimitiveIterator.OfLong it = testSet.iterator(); it.hasNext(); ) {
+            long value = it.nextLong();
+            values.add(value);
+            if ((value >> 40) % 2 == 0) {
+                it.remove();
+            }
+        }
+        Assert.assertEquals(new ArrayList<>(validSet), values);
+        validSet.removeIf(value -> (value >> 40) % 2 == 0);
+        Assert.assertEquals(new ArrayList<>(validSet), new ArrayList<>(testSet));
+        Assert.assertEquals(validSet.pollFirst(), testSet.pollFirst());
+        Assert.assertEquals(validSet.pollLast(), testSet.pollLast());
+        checkBalanced(testSet);
+
+        testSet.clear();
+        Assert.assertTrue(testSet.addLong(Long.MIN_VALUE));
+        Assert.assertTrue(testSet.addLong(Long.MAX_VALUE));
+        Assert.assertTrue(testSet.addLong(0));
+        Assert.assertEquals(Long.MIN_VALUE, testSet.firstLong());
+        Assert.assertEquals(Long.MAX_VALUE, testSet.lastLong());
+        Assert.assertEquals(Long.valueOf(0), testSet.lower(Long.MAX_VALUE));
+    }
+
+    private <E extends Comparable<E>> void checkNavigation(NavigableSet<E> validSet, NavigableSet<E> testSet, E lo, E hi) {
+        for (E value : new ArrayList<>(validSet)) {
+            Assert.assertEquals("lower", validSet.lower(value), testSet.lower(value));
+            Assert.assertEquals("floor", validSet.floor(value), testSet.floor(value));
+            Assert.assertEquals("ceiling", validSet.ceiling(value), testSet.ceiling(value));
+            Assert.assertEquals("higher", validSet.higher(value), testSet.higher(value));
+        }
+        Assert.assertNull(testSet.lower(lo));
+        Assert.assertNull(testSet.higher(hi));
+        Assert.assertEquals(new ArrayList<>(validSet.descendingSet()), new ArrayList<>(testSet.descendingSet()));
+        E from = validSet.higher(validSet.first());
+        E to = validSet.lower(validSet.last());
+        Assert.assertEquals(new ArrayList<>(validSet.subSet(from, false, to, true)),
+                new ArrayList<>(testSet.subSet(from, false, to, true)));
+        Assert.assertEquals(new ArrayList<>(validSet.headSet(to, false).descendingSet()),
+                new ArrayList<>(testSet.headSet(to, false).descendingSet()));
+        Assert.assertEquals(validSet.tailSet(from).size(), testSet.tailSet(from).size());
+    }
+
+    private void checkBalanced(BalancedSortedSet<?> testSet) {
+        try {
+            testSet.checkBalanced();
+        } catch (NotBalancedTreeException e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+}
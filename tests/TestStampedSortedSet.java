@@ -0,0 +1,209 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.junit.runners.Parameterized;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BalancedSortedSet;
+import ru.mail.polis.CompactRedBlackTree;
+import ru.mail.polis.IntAVLTree;
+import ru.mail.polis.NotBalancedTreeException;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.StampedSortedSet;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+@RunWith(value = Parameterized.class)
+public class TestStampedSortedSet extends AbstractSetTest {
+
+    private static final int THREADS = 8;
+
+    @Parameterized.Parameter
+    public String name;
+
+    @Parameterized.Parameter(1)
+    public Supplier<BalancedSortedSet<Integer>> factory;
+
+    private TreeSet<Integer> validSet;
+    private StampedSortedSet<Integer> testSet;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        Supplier<BalancedSortedSet<Integer>> avl = AVLTree::new;
+        Supplier<BalancedSortedSet<Integer>> redBlack = RedBlackTree::new;
+        Supplier<BalancedSortedSet<Integer>> compactRedBlack = CompactRedBlackTree::new;
+        Supplier<BalancedSortedSet<Integer>> intAvl = IntAVLTree::new;
+        return Arrays.asList(new Object[][]{
+                {"AVLTree", avl},
+                {"RedBlackTree", redBlack},
+                {"CompactRedBlackTree", compactRedBlack},
+                {"IntAVLTree", intAvl},
+        });
+    }
+
+    @Before //Запускается перед запуском каждого теста
+    public void createSets() {
+        validSet = new TreeSet<>();
+        testSet = new StampedSortedSet<>(factory.get());
+    }
+
+    @Test
+    public void test01_sequential() {
+        for (int i = 0; i < 5000; i++) {
+            checkTransformOperation(validSet, testSet, RANDOM.nextInt(2000), TransformOperation.ADD);
+            int value = RANDOM.nextInt(2000);
+            checkRemove(validSet, testSet, value);
+            checkSizeAndContains(validSet, testSet, RANDOM.nextInt(2000));
+        }
+        Assert.assertEquals(new ArrayList<>(validSet), new ArrayList<>(testSet));
+        Assert.assertEquals(validSet.first(), testSet.first());
+        Assert.assertEquals(validSet.floor(1000), testSet.floor(1000));
+        Assert.assertEquals(new ArrayList<>(validSet.subSet(100, true, 900, false).descendingSet()),
+                new ArrayList<>(testSet.subSet(100, true, 900, false).descendingSet()));
+
+        //Итератор слабо согласован: изменения во время обхода не ломают его, меньшие элементы он уже не увидит
+        for (Iterator<Integer> it = testSet.iterator(); it.hasNext(); ) {
+            Integer value = it.next();
+            testSet.add(-value - 1);
+            if (value % 2 == 0) {
+                it.remove();
+            }
+        }
+        for (Integer value : validSet) {
+            Assert.assertEquals(value % 2 != 0, testSet.contains(value));
+            Assert.assertTrue(testSet.contains(-value - 1));
+        }
+        checkLevels();
+    }
+
+    @Test
+    public void test02_readersAndWriters() throws Exception {
+        //Чётные числа всегда лежат в множестве, нечётные писатели добавляют и удаляют
+        int range = 10000;
+        for (int i = 0; i < range; i += 2) {
+            testSet.add(i);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            tasks.add(() -> {
+                for (int j = 0; j < 50000; j++) {
+                    int value = (j * 7919 + thread) % range;
+                    if (thread < 2) {
+                        if (value % 2 == 1) {
+                            if ((j & 1) == 0) {
+                                testSet.add(value);
+                            } else {
+                                testSet.remove(value);
+                            }
+                        }
+                    } else if (value % 2 == 0) {
+                        Assert.assertTrue(testSet.contains(value));
+                    } else {
+                        Assert.assertFalse(testSet.contains(value + range));
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        checkLevels();
+    }
+
+    @Test(timeout = 10000)
+    public void test03_addAllOfItself() {
+        //Блокировка не реентерабельна: addAll своего представления не должен ждать сам себя
+        for (int i = 0; i < 100; i++) {
+            testSet.add(i);
+        }
+        Assert.assertFalse(testSet.addAll(testSet.headSet(10)));
+        Assert.assertFalse(testSet.addAll(testSet));
+        Assert.assertEquals(100, testSet.size());
+        Assert.assertEquals(10, testSet.headSet(10).size());
+        Assert.assertEquals(Integer.valueOf(0), testSet.first());
+    }
+
+    @Test
+    public void test04_iterateWhileWriting() throws Exception {
+        //Чётные числа всегда лежат в множестве: обход идёт строго по возрастанию и видит каждое из них
+        int range = 10000;
+        for (int i = 0; i < range; i += 2) {
+            testSet.add(i);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            tasks.add(() -> {
+                for (int j = 0; j < (thread < 2 ? 100000 : 20); j++) {
+                    if (thread < 2) {
+                        int value = (j * 7919 + thread) % range | 1;
+                        if ((j & 1) == 0) {
+                            testSet.add(value);
+                        } else {
+                            testSet.remove(value);
+                        }
+                        continue;
+                    }
+                    boolean descending = (j & 1) == 1;
+                    int expectedEven = descending ? range - 2 : 0;
+                    Integer prev = null;
+                    for (Integer value : descending ? testSet.descendingSet() : testSet) {
+                        if (prev != null) {
+                            Assert.assertTrue("order", descending ? value < prev : value > prev);
+                        }
+                        if (value % 2 == 0) {
+                            Assert.assertEquals("even", expectedEven, (int) value);
+                            expectedEven += descending ? -2 : 2;
+                        }
+                        prev = value;
+                    }
+                    Assert.assertEquals("all evens", descending ? -2 : range, expectedEven);
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        checkLevels();
+        TreeSet<Integer> copy = new TreeSet<>(testSet);
+        Assert.assertEquals(copy, testSet);
+        Assert.assertEquals(testSet, copy);
+        Assert.assertEquals(copy.hashCode(), testSet.hashCode());
+    }
+
+    private void checkLevels() {
+        try {
+            testSet.checkBalanced();
+        } catch (NotBalancedTreeException e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+}
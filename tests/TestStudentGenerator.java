@@ -0,0 +1,78 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentGenerator;
+
+/**
+ * StudentGenerator: студент зависит только от seed и номера, а не от порядка и числа потоков
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestStudentGenerator extends AbstractSetTest {
+
+    private static final int COUNT = 20000;
+
+    @Test
+    public void test01_reproducible() {
+        long seed = RANDOM.nextLong();
+        List<Student> sequential = new StudentGenerator(seed).stream(COUNT).collect(Collectors.toList());
+        List<Student> parallel = new StudentGenerator(seed).stream(COUNT).parallel().collect(Collectors.toList());
+        Assert.assertEquals("parallel stream", sequential, parallel);
+        Assert.assertEquals("array", sequential, Arrays.asList(new StudentGenerator(seed).generateArray(COUNT)));
+        StudentGenerator generator = new StudentGenerator(seed);
+        for (int i = 0; i < 100; i++) {
+            int index = RANDOM.nextInt(COUNT);
+            Student student = generator.generate(index);
+            Assert.assertEquals("generate(index)", sequential.get(index), student);
+            Assert.assertEquals("hashCode", sequential.get(index).hashCode(), student.hashCode());
+            Assert.assertEquals("id", index, student.getId());
+        }
+        Assert.assertNotEquals("other seed", sequential, new StudentGenerator(seed + 1).stream(COUNT).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void test02_firstId() {
+        long seed = RANDOM.nextLong();
+        Student[] first = new StudentGenerator(seed, 0).generateArray(COUNT);
+        Student[] second = new StudentGenerator(seed, COUNT).generateArray(COUNT);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < COUNT; i++) {
+            Assert.assertEquals("id", i, first[i].getId());
+            Assert.assertEquals("id", COUNT + i, second[i].getId());
+            Assert.assertEquals("firstName", first[i].getFirstName(), second[i].getFirstName());
+            ids.add(first[i].getId());
+            ids.add(second[i].getId());
+        }
+        //Непересекающиеся диапазоны firstId дают разные id и, значит, разных студентов при одном seed
+        Assert.assertEquals("ids", 2 * COUNT, ids.size());
+        Assert.assertNotEquals("equals", first[0], second[0]);
+    }
+
+    @Test
+    public void test03_fields() {
+        int withEmail = 0;
+        for (Student student : new StudentGenerator(RANDOM.nextLong()).generateArray(COUNT)) {
+            Assert.assertNotNull(student.getFirstName());
+            Assert.assertNotNull(student.getLastName());
+            Assert.assertTrue("birthday", student.getBirthday().getYear() >= 1990 && student.getBirthday().getYear() <= 2000);
+            Assert.assertTrue("yearOfAdmission", student.getYearOfAdmission() >= 2010 && student.getYearOfAdmission() <= 2017);
+            if (student.getEmail() != null) {
+                withEmail++;
+                Assert.assertTrue(student.getEmail(), student.getEmail().matches("[a-z]{10}@polis\\.mail\\.ru"));
+            }
+            if (student.getMobile() != null) {
+                Assert.assertEquals(student.getMobile(), 10, student.getMobile().length());
+            }
+        }
+        //Каждое Nullable поле заполнено примерно у половины студентов
+        Assert.assertTrue("email " + withEmail, withEmail > COUNT / 3 && withEmail < COUNT * 2 / 3);
+    }
+}